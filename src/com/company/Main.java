@@ -1,10 +1,38 @@
 package com.company;
 
+import comparison.BaseComparator;
+import comparison.Compression;
+import comparison.DiffPlan;
+import comparison.DiffStat;
+import comparison.DiffSummary;
+import comparison.DiffWatcher;
+import comparison.DifferenceMarker;
+import comparison.KeyExtractor;
+import comparison.KeyedDiff;
+import comparison.LineSimilarity;
+import comparison.ListLineStore;
+import comparison.SimilarityStrategy;
 import comparison.TextsComparator;
+import html.DiffPage;
+import html.Template;
+import output.BinaryDiffWriter;
+import output.DiffWriter;
+import output.JsonLinesWriter;
+import output.KeyedJsonLinesWriter;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.PatternSyntaxException;
 
 /**
  * Main class of texts comparator program.
@@ -16,26 +44,351 @@ public class Main {
      * Finds difference between 2 texts and saves result to the output file.
      */
     public static void main(String[] args) throws IOException {
-        if (!checkPaths(args)) {
+        String[] paths = getPaths(args);
+        if (args != null && getOption(args, "base") != null) {
+            compareWithBase(args, paths);
             return;
         }
+        if (args != null && hasFlag(args, "stat")) {
+            printStat(args, paths);
+            return;
+        }
+
+        String format = args == null ? null : getOption(args, "format");
+        if (format == null) {
+            format = "html";
+        }
+        DiffWriter writer;
+        switch (format) {
+            case "html":
+                writer = null;
+                break;
+            case "jsonl":
+                writer = new JsonLinesWriter();
+                break;
+            case "bin":
+                writer = new BinaryDiffWriter(hasFlag(args, "with-text"));
+                break;
+            default:
+                System.out.println("Unknown format \"" + format + "\". Supported formats: html, jsonl, bin.");
+                return;
+        }
+
+        if (!checkPaths(paths, "." + format)) {
+            return;
+        }
+
+        String templatePath = getOption(args, "template");
+        if (templatePath != null && !Files.exists(Path.of(templatePath))) {
+            System.out.println("Template at \"" + templatePath + "\" not found.");
+            return;
+        }
+        Template template = templatePath == null ? Template.getDefault() : Template.getFile(Path.of(templatePath));
+
+        Path outPath = paths.length < 3 ? Path.of("diff." + format) : Path.of(paths[2]);
+
+        if (getOption(args, "key") != null || getOption(args, "key-pattern") != null) {
+            compareByKeys(args, paths, format, template, outPath);
+            return;
+        }
+
+        if (hasFlag(args, "watch")) {
+            watch(paths, hasFlag(args, "words"), writer, templatePath == null ? null : Path.of(templatePath), outPath);
+            return;
+        }
+
+        try (TextsComparator tc = new TextsComparator(Path.of(paths[0]), Path.of(paths[1]),
+                hasFlag(args, "off-heap"), hasFlag(args, "words"))) {
+            if (writer == null) {
+                tc.saveDifferenceAsHTML(outPath, template);
+            } else {
+                tc.saveDifference(outPath, writer);
+            }
+            System.out.println("The result is at: " + outPath.toAbsolutePath());
+
+            if (hasFlag(args, "plan")) {
+                for (DiffPlan plan : tc.getPlans()) {
+                    System.out.println("Plan: " + plan);
+                }
+            }
+
+            var strategies = tc.getUsedStrategies();
+            if (strategies.contains(SimilarityStrategy.CHUNKED) || strategies.contains(SimilarityStrategy.MIN_HASH)) {
+                System.out.println("Very long lines were compared approximately using: " + strategies);
+            }
+        }
+    }
+
+    /**
+     * Saves the result, then saves it again every time any of the texts changes, until the program is stopped.
+     * The template is read again for every save, so it can be edited too.
+     */
+    private static void watch(String[] paths, boolean tokenLevel, DiffWriter writer, Path templatePath, Path outPath)
+            throws IOException {
+        LineSimilarity similarity = tokenLevel ? LineSimilarity.byTokens() : new LineSimilarity();
+        DiffWatcher watcher = new DiffWatcher(Path.of(paths[0]), Path.of(paths[1]), similarity,
+                (oldText, oldMarkers, newText, newMarkers) -> {
+                    if (writer == null) {
+                        DiffPage.Builder builder = DiffPage.getBuilder()
+                                .addOld(oldText, oldMarkers)
+                                .addNew(newText, newMarkers)
+                                .setTemplate(templatePath == null
+                                        ? Template.getDefault() : Template.getFile(templatePath));
+                        if (tokenLevel) {
+                            // Copies of the similarity used by the watcher share kept token diffs.
+                            builder.setTokenLevel(similarity);
+                        }
+                        builder.build().save(outPath);
+                    } else {
+                        try (OutputStream out = Compression.create(outPath)) {
+                            writer.write(oldText, oldMarkers, newText, newMarkers, out);
+                        }
+                    }
+                    System.out.println(LocalTime.now().withNano(0) + " The result is updated: "
+                            + DiffSummary.of(new DifferenceMarker[][]{oldMarkers, newMarkers}));
+                });
+
+        System.out.println("The result is at: " + outPath.toAbsolutePath());
+        System.out.println("Watching the files for changes, press Ctrl+C to stop.");
+        try {
+            watcher.watch();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Counts differences of 2 texts without saving a report and prints them.
+     * Exits with status 1 if the texts differ, like diff does, so it can be used in scripts.
+     */
+    private static void printStat(String[] args, String[] paths) throws IOException {
+        // An output file is not needed.
+        if (!checkPaths(paths == null || paths.length < 3 ? paths : Arrays.copyOf(paths, 2), ".html")) {
+            return;
+        }
+
+        DiffStat stat = DiffStat.of(Path.of(paths[0]), Path.of(paths[1]), hasFlag(args, "changed"));
+        System.out.println(stat);
+        if (hasFlag(args, "plan") && stat.getPlan() != null) {
+            System.out.println("Plan: " + stat.getPlan());
+        }
+        if (stat.hasDifferences()) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Compares the base text passed as "--base=file" with every passed variant file
+     * (or every file of a passed directory) and saves reports and a summary table.
+     */
+    private static void compareWithBase(String[] args, String[] paths) throws IOException {
+        Path basePath = Path.of(getOption(args, "base"));
+        if (!Files.exists(basePath)) {
+            System.out.println("File at \"" + basePath + "\" not found.");
+            return;
+        }
+
+        List<Path> variants = new ArrayList<>();
+        for (String path : paths) {
+            Path variant = Path.of(path);
+            if (Files.isDirectory(variant)) {
+                try (var files = Files.list(variant)) {
+                    files.filter(Files::isRegularFile).sorted().forEach(variants::add);
+                }
+            } else if (Files.exists(variant)) {
+                variants.add(variant);
+            } else {
+                System.out.println("File at \"" + path + "\" not found.");
+                return;
+            }
+        }
+        if (variants.isEmpty()) {
+            System.out.println("Please provide at least 1 variant to compare with the base text.");
+            return;
+        }
+
+        int threads = Runtime.getRuntime().availableProcessors();
+        String threadsOption = getOption(args, "threads");
+        if (threadsOption != null) {
+            try {
+                threads = Integer.parseInt(threadsOption);
+            } catch (NumberFormatException e) {
+                threads = 0;
+            }
+            if (threads <= 0) {
+                System.out.println("Amount of threads must be a positive number.");
+                return;
+            }
+        }
+
+        String outOption = getOption(args, "out");
+        Path outDir = Path.of(outOption == null ? "diff-reports" : outOption);
+
+        var summaries = new BaseComparator(basePath).compareAll(variants, threads, outDir);
+        for (int i = 0; i < variants.size(); i++) {
+            System.out.println(variants.get(i) + ": " + summaries.get(i));
+        }
+        System.out.println("The results are at: " + outDir.toAbsolutePath());
+    }
 
-        TextsComparator tc = new TextsComparator(Path.of(args[0]), Path.of(args[1]));
+    /**
+     * Compares texts of keyed records, matching records by keys passed as "--key=column number"
+     * or "--key-pattern=regex", and saves the result as HTML or JSON Lines.
+     */
+    private static void compareByKeys(String[] args, String[] paths, String format, Template template,
+                                      Path outPath) throws IOException {
+        if ("bin".equals(format)) {
+            System.out.println("Keyed records can be saved as html or jsonl only.");
+            return;
+        }
+
+        String delimiterOption = getOption(args, "delimiter");
+        if (delimiterOption != null && delimiterOption.length() != 1) {
+            System.out.println("Delimiter must be a single character.");
+            return;
+        }
+        char delimiter = delimiterOption == null ? ',' : delimiterOption.charAt(0);
+
+        KeyExtractor extractor;
+        String keyOption = getOption(args, "key");
+        if (keyOption != null) {
+            int column;
+            try {
+                column = Integer.parseInt(keyOption);
+            } catch (NumberFormatException e) {
+                column = 0;
+            }
+            if (column <= 0) {
+                System.out.println("Key column must be a positive number.");
+                return;
+            }
+            extractor = KeyExtractor.byColumn(column - 1, delimiter);
+        } else {
+            try {
+                extractor = KeyExtractor.byPattern(getOption(args, "key-pattern"), delimiter);
+            } catch (PatternSyntaxException e) {
+                System.out.println("Key pattern is not valid: " + e.getDescription());
+                return;
+            }
+        }
+
+        boolean sorted = hasFlag(args, "sorted");
+        if (sorted && !"jsonl".equals(format)) {
+            System.out.println("Records of an HTML page are kept in memory, "
+                    + "use --format=jsonl to stream sorted files.");
+        }
+
+        KeyedDiff keyedDiff = new KeyedDiff(extractor);
+        Path oldPath = Path.of(paths[0]);
+        Path newPath = Path.of(paths[1]);
+        DiffSummary summary;
+
+        try {
+            summary = saveKeyedDifference(keyedDiff, oldPath, newPath, sorted, format, template,
+                    hasFlag(args, "words"), outPath);
+        } catch (IllegalArgumentException e) {
+            // Thrown when the files are not sorted by keys.
+            System.out.println(e.getMessage());
+            return;
+        }
 
-        Path outPath = args.length < 3 ? Path.of("diff.html") : Path.of(args[2]);
-        tc.saveDifferenceAsHTML(outPath);
         System.out.println("The result is at: " + outPath.toAbsolutePath());
+        System.out.println("Records: " + summary);
+    }
+
+    /**
+     * Compares texts of keyed records and saves the result as HTML or JSON Lines.
+     */
+    private static DiffSummary saveKeyedDifference(KeyedDiff keyedDiff, Path oldPath, Path newPath, boolean sorted,
+                                                   String format, Template template, boolean tokenLevel, Path outPath)
+            throws IOException {
+        DiffSummary summary;
+        if ("jsonl".equals(format)) {
+            try (Writer out = new BufferedWriter(new OutputStreamWriter(Compression.create(outPath),
+                    StandardCharsets.UTF_8))) {
+                summary = keyedDiff.compare(oldPath, newPath, sorted, new KeyedJsonLinesWriter(out));
+            }
+        } else {
+            // Records are placed side by side in the order they are found.
+            List<String> oldLines = new ArrayList<>();
+            List<String> newLines = new ArrayList<>();
+            List<DifferenceMarker> oldMarkers = new ArrayList<>();
+            List<DifferenceMarker> newMarkers = new ArrayList<>();
+            summary = keyedDiff.compare(oldPath, newPath, sorted, record -> {
+                if (record.getOldLine() != null) {
+                    oldLines.add(record.getOldLine());
+                    oldMarkers.add(record.getMarker());
+                }
+                if (record.getNewLine() != null) {
+                    newLines.add(record.getNewLine());
+                    newMarkers.add(record.getMarker());
+                }
+            });
+
+            DiffPage.getBuilder()
+                    .addOld(new ListLineStore(oldLines), oldMarkers.toArray(new DifferenceMarker[0]))
+                    .addNew(new ListLineStore(newLines), newMarkers.toArray(new DifferenceMarker[0]))
+                    .setTemplate(template)
+                    .setTokenLevel(tokenLevel)
+                    .build()
+                    .save(outPath);
+        }
+        return summary;
+    }
+
+    /**
+     * Returns arguments that are not options, i.e. do not start with "--".
+     */
+    private static String[] getPaths(String[] args) {
+        if (args == null) {
+            return null;
+        }
+
+        List<String> paths = new ArrayList<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                paths.add(arg);
+            }
+        }
+        return paths.toArray(new String[0]);
+    }
+
+    /**
+     * Returns value of the option passed as "--name=value", or null if the option is absent.
+     */
+    private static String getOption(String[] args, String name) {
+        String prefix = "--" + name + "=";
+        for (String arg : args) {
+            if (arg.startsWith(prefix)) {
+                return arg.substring(prefix.length());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Shows if the flag "--name" is passed.
+     */
+    private static boolean hasFlag(String[] args, String name) {
+        String flag = "--" + name;
+        for (String arg : args) {
+            if (arg.equals(flag)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
      * Checks if passed array of string contains at least 2 valid paths to the input files
-     * and, if 3rd path is present, it is a path to a .html output file.
+     * and, if 3rd path is present, it is a path to an output file with the passed extension
+     * (or a compressed one, with ".gz" after the extension).
      */
-    private static boolean checkPaths(String[] paths) {
+    private static boolean checkPaths(String[] paths, String extension) {
         if (paths == null || paths.length < 2) {
             System.out.println("Not enough input arguments. " +
                     "Please provide at least 2 paths: to an old text, to a new one." +
-                    "Optionally, provide an output .HTML file.");
+                    "Optionally, provide an output " + extension.toUpperCase() + " file.");
             return false;
         }
 
@@ -47,11 +400,13 @@ public class Main {
             System.out.println("File at \"" + paths[1] + "\" not found.");
             return false;
         }
-        if (paths.length >= 3 && !paths[2].toLowerCase().endsWith(".html")) {
-            System.out.println("Please, provide .HTML file as an output file.");
+        if (paths.length >= 3 && !paths[2].toLowerCase().endsWith(extension)
+                && !paths[2].toLowerCase().endsWith(extension + Compression.GZIP_EXTENSION)) {
+            System.out.println("Please, provide " + extension.toUpperCase() + " or "
+                    + (extension + Compression.GZIP_EXTENSION).toUpperCase() + " file as an output file.");
             return false;
         }
 
         return true;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,229 @@
+package comparison;
+
+import java.util.Arrays;
+
+/**
+ * <p>Finds equal lines coarsely, for texts too different or too big for exact engines.</p>
+ * <p>Lines occurring exactly once in both ranges are taken as anchors, the longest
+ * sequence of anchors going in the same order in both texts is matched, and ranges
+ * between anchors are processed the same way (like patience diff does). Ranges without
+ * anchors are compared with {@link MyersDiff}, which is given up if it takes more than
+ * {@link DiffPlanner#MYERS_MAX_COST} steps in total: then the rest of their lines are left
+ * unmatched.</p>
+ * <p>Apart from that, every range is scanned to find its anchors, so it takes O((N + M) D) time,
+ * where D is the depth of nesting of ranges. D is about log(N + M) when anchors are spread over
+ * the texts, but a chain of ranges with a single anchor at the edge each makes it up to N + M.</p>
+ */
+final class AnchoredDiff {
+    /**
+     * Ids of lines of an old text.
+     */
+    private final int[] oldIds;
+    /**
+     * Ids of lines of a new text.
+     */
+    private final int[] newIds;
+    /**
+     * Markers of lines of the old text, EQUAL ones are set.
+     */
+    private final DifferenceMarker[] oldMarkers;
+    /**
+     * Markers of lines of the new text, EQUAL ones are set.
+     */
+    private final DifferenceMarker[] newMarkers;
+
+    /**
+     * Engine comparing small ranges without anchors.
+     */
+    private final MyersDiff exact;
+
+    /**
+     * Amount of occurrences of every id in the old range, zero outside of counting.
+     */
+    private final int[] oldCounts;
+    /**
+     * Amount of occurrences of every id in the new range, zero outside of counting.
+     */
+    private final int[] newCounts;
+    /**
+     * Index of the last occurrence of every id in the old range.
+     */
+    private final int[] oldPositions;
+    /**
+     * Ids not less than this are absent in the old text.
+     */
+    private final int idLimit;
+    /**
+     * Indices of anchors in the old text, filled for every range.
+     */
+    private final int[] oldAnchors;
+    /**
+     * Indices of anchors in the new text, filled for every range.
+     */
+    private final int[] newAnchors;
+    /**
+     * Indices of anchors forming the longest sequence going in the same order, filled for every range.
+     */
+    private final int[] sequence;
+    /**
+     * Links between anchors used to find the sequence.
+     */
+    private final int[] links;
+
+    /**
+     * Ranges left to compare.
+     */
+    private final RangeStack ranges;
+    /**
+     * Range being compared: old start, old end, new start, new end.
+     */
+    private final int[] range = new int[4];
+
+    /**
+     * Creates a new instance comparing passed ids. Negative ids never match any line.
+     */
+    AnchoredDiff(int[] oldIds, int[] newIds, DifferenceMarker[] oldMarkers, DifferenceMarker[] newMarkers) {
+        this(oldIds, newIds, oldMarkers, newMarkers, null);
+    }
+
+    /**
+     * Creates a new instance comparing passed ids with scratch arrays taken from the workspace,
+     * if it is not null. Id arrays may be longer than arrays of markers.
+     */
+    AnchoredDiff(int[] oldIds, int[] newIds, DifferenceMarker[] oldMarkers, DifferenceMarker[] newMarkers,
+                 Workspace workspace) {
+        this.oldIds = oldIds;
+        this.newIds = newIds;
+        this.oldMarkers = oldMarkers;
+        this.newMarkers = newMarkers;
+        this.exact = new MyersDiff(oldIds, newIds, oldMarkers, newMarkers, workspace);
+        this.exact.setBudget(DiffPlanner.MYERS_MAX_COST);
+        this.ranges = new RangeStack(workspace, Workspace.COARSE_RANGES);
+
+        int maxId = -1;
+        for (int i = 0; i < oldMarkers.length; i++) {
+            maxId = Math.max(maxId, oldIds[i]);
+        }
+        idLimit = maxId + 1;
+        int maxAnchors = Math.min(oldMarkers.length, newMarkers.length);
+        if (workspace == null) {
+            oldCounts = new int[maxId + 1];
+            newCounts = new int[maxId + 1];
+            oldPositions = new int[maxId + 1];
+            oldAnchors = new int[maxAnchors];
+            newAnchors = new int[maxAnchors];
+            sequence = new int[maxAnchors];
+            links = new int[maxAnchors];
+        } else {
+            oldCounts = workspace.getInts(Workspace.OLD_COUNTS, maxId + 1);
+            newCounts = workspace.getInts(Workspace.NEW_COUNTS, maxId + 1);
+            oldPositions = workspace.getInts(Workspace.POSITIONS, maxId + 1);
+            oldAnchors = workspace.getInts(Workspace.OLD_ANCHORS, maxAnchors);
+            newAnchors = workspace.getInts(Workspace.NEW_ANCHORS, maxAnchors);
+            sequence = workspace.getInts(Workspace.SEQUENCE, maxAnchors);
+            links = workspace.getInts(Workspace.LINKS, maxAnchors);
+            Arrays.fill(oldCounts, 0, maxId + 1, 0);
+            Arrays.fill(newCounts, 0, maxId + 1, 0);
+        }
+    }
+
+    /**
+     * Marks matched lines of ranges [oldFrom, oldTo) of the old text and [newFrom, newTo) of the new one as EQUAL.
+     */
+    void markEqual(int oldFrom, int oldTo, int newFrom, int newTo) {
+        ranges.clear();
+        ranges.push(oldFrom, oldTo, newFrom, newTo);
+
+        while (!ranges.isEmpty()) {
+            ranges.pop(range);
+            int i = range[0];
+            int iEnd = range[1];
+            int j = range[2];
+            int jEnd = range[3];
+
+            while (i < iEnd && j < jEnd && oldIds[i] == newIds[j]) {
+                mark(i++, j++);
+            }
+            while (i < iEnd && j < jEnd && oldIds[iEnd - 1] == newIds[jEnd - 1]) {
+                mark(--iEnd, --jEnd);
+            }
+            if (i == iEnd || j == jEnd) {
+                continue;
+            }
+
+            int anchors = findAnchors(i, iEnd, j, jEnd);
+            if (anchors == 0) {
+                exact.markEqual(i, iEnd, j, jEnd);
+                continue;
+            }
+
+            // Ranges are pushed in reverse order, so they are processed from the start of the texts.
+            int nextOld = iEnd;
+            int nextNew = jEnd;
+            for (int k = anchors - 1; k >= 0; k--) {
+                int oldAnchor = oldAnchors[sequence[k]];
+                int newAnchor = newAnchors[sequence[k]];
+                mark(oldAnchor, newAnchor);
+                ranges.push(oldAnchor + 1, nextOld, newAnchor + 1, nextNew);
+                nextOld = oldAnchor;
+                nextNew = newAnchor;
+            }
+            ranges.push(i, nextOld, j, nextNew);
+        }
+    }
+
+    /**
+     * Finds lines occurring exactly once in both ranges, keeping the longest sequence
+     * of them going in the same order in both ranges.
+     *
+     * @return Amount of anchors in the sequence. Their indices in {@link #oldAnchors} and {@link #newAnchors}
+     * are put into {@link #sequence}.
+     */
+    private int findAnchors(int oldFrom, int oldTo, int newFrom, int newTo) {
+        for (int i = oldFrom; i < oldTo; i++) {
+            int id = oldIds[i];
+            if (id >= 0) {
+                ++oldCounts[id];
+                oldPositions[id] = i;
+            }
+        }
+        for (int j = newFrom; j < newTo; j++) {
+            int id = newIds[j];
+            if (id >= 0 && id < idLimit) {
+                ++newCounts[id];
+            }
+        }
+
+        int maxCount = Math.min(oldTo - oldFrom, newTo - newFrom);
+        int count = 0;
+        for (int j = newFrom; j < newTo && count < maxCount; j++) {
+            int id = newIds[j];
+            if (id >= 0 && id < idLimit && newCounts[id] == 1 && oldCounts[id] == 1) {
+                oldAnchors[count] = oldPositions[id];
+                newAnchors[count] = j;
+                ++count;
+            }
+        }
+
+        for (int i = oldFrom; i < oldTo; i++) {
+            if (oldIds[i] >= 0) {
+                oldCounts[oldIds[i]] = 0;
+            }
+        }
+        for (int j = newFrom; j < newTo; j++) {
+            if (newIds[j] >= 0 && newIds[j] < idLimit) {
+                newCounts[newIds[j]] = 0;
+            }
+        }
+
+        return Utils.getLongestIncreasingSubsequence(oldAnchors, count, sequence, links);
+    }
+
+    /**
+     * Marks a pair of lines as EQUAL.
+     */
+    private void mark(int i, int j) {
+        oldMarkers[i] = DifferenceMarker.EQUAL;
+        newMarkers[j] = DifferenceMarker.EQUAL;
+    }
+}
@@ -0,0 +1,354 @@
+package comparison;
+
+import html.DiffPage;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * <p>Compares one base text with many variants of it.</p>
+ * <p>The base is read and indexed only once: its lines are interned, and the lines occurring
+ * in it exactly once are remembered. A variant is then split by the lines unique in both texts
+ * (the longest sequence of them going in the same order in both texts) and only the parts
+ * between them are compared line by line.</p>
+ * <p>Index of the base is never modified after creation, so variants can be compared from
+ * several threads at once.</p>
+ */
+public class BaseComparator {
+    /**
+     * Name of the file the summary of comparisons is saved to.
+     */
+    public static final String SUMMARY_FILE = "summary.csv";
+
+    /**
+     * Path to the file with the base text.
+     */
+    private final Path pathToBase;
+    /**
+     * Lines of the base text.
+     */
+    private final LineStore base;
+    /**
+     * Interner containing all lines of the base text.
+     */
+    private final LineInterner interner;
+    /**
+     * Ids of lines of the base text.
+     */
+    private final int[] baseIds;
+    /**
+     * For every id, index of the line with it, if the line occurs in the base exactly once, or -1.
+     */
+    private final int[] uniquePositions;
+
+    /**
+     * Per-thread scratch space: amounts of occurrences of base lines in a variant.
+     */
+    private final ThreadLocal<int[]> occurrences;
+
+    /**
+     * Reads and indexes the base text from the file at the passed path.
+     *
+     * @throws NullPointerException If path is null.
+     * @throws IOException          If I/O errors occurs while reading the file.
+     */
+    public BaseComparator(Path pathToBase) throws IOException {
+        Objects.requireNonNull(pathToBase, "Path to the base file cannot be null.");
+
+        this.pathToBase = pathToBase;
+        this.base = new ListLineStore(Utils.readLines(pathToBase));
+        this.interner = new LineInterner();
+        this.baseIds = interner.intern(base);
+
+        int[] counts = new int[interner.size()];
+        uniquePositions = new int[interner.size()];
+        for (int i = 0; i < baseIds.length; i++) {
+            ++counts[baseIds[i]];
+            uniquePositions[baseIds[i]] = i;
+        }
+        for (int id = 0; id < counts.length; id++) {
+            if (counts[id] != 1) {
+                uniquePositions[id] = -1;
+            }
+        }
+
+        int distinct = interner.size();
+        this.occurrences = ThreadLocal.withInitial(() -> new int[distinct]);
+    }
+
+    /**
+     * Returns the path to the file with the base text.
+     */
+    public Path getPathToBase() {
+        return pathToBase;
+    }
+
+    /**
+     * Compares the base text with the variant from the file at the passed path.
+     *
+     * @return Lines of the variant and markers of lines of the base and the variant.
+     * @throws NullPointerException If path is null.
+     * @throws IOException          If I/O errors occurs while reading the file.
+     */
+    public Comparison compare(Path pathToVariant) throws IOException {
+        Objects.requireNonNull(pathToVariant, "Path to the variant file cannot be null.");
+
+        LineStore variant = new ListLineStore(Utils.readLines(pathToVariant));
+
+        // Lines absent in the base get negative ids different from each other: they cannot be equal to any base line.
+        int[] variantIds = new int[variant.size()];
+        for (int j = 0; j < variantIds.length; j++) {
+            int id = interner.find(variant, j);
+            variantIds[j] = id >= 0 ? id : -1 - j;
+        }
+
+        DifferenceMarker[] baseMarkers = new DifferenceMarker[base.size()];
+        DifferenceMarker[] variantMarkers = new DifferenceMarker[variant.size()];
+        LineSimilarity similarity = new LineSimilarity();
+
+        int baseFrom = 0;
+        int variantFrom = 0;
+        int[] anchors = findAnchors(variantIds);
+        for (int k = 0; k < anchors.length; k += 2) {
+            compareRange(baseFrom, anchors[k], variant, variantIds, variantFrom, anchors[k + 1],
+                    baseMarkers, variantMarkers, similarity);
+            baseMarkers[anchors[k]] = DifferenceMarker.EQUAL;
+            variantMarkers[anchors[k + 1]] = DifferenceMarker.EQUAL;
+            baseFrom = anchors[k] + 1;
+            variantFrom = anchors[k + 1] + 1;
+        }
+        compareRange(baseFrom, base.size(), variant, variantIds, variantFrom, variant.size(),
+                baseMarkers, variantMarkers, similarity);
+
+        return new Comparison(pathToVariant, variant, new DifferenceMarker[][]{baseMarkers, variantMarkers});
+    }
+
+    /**
+     * Finds lines occurring exactly once in both texts, keeping the longest sequence
+     * of them going in the same order in both texts.
+     *
+     * @return Pairs of indices in the base and in the variant, flattened.
+     */
+    private int[] findAnchors(int[] variantIds) {
+        int[] counts = occurrences.get();
+        for (int id : variantIds) {
+            if (id >= 0) {
+                ++counts[id];
+            }
+        }
+
+        int[] basePositions = new int[variantIds.length];
+        int[] variantPositions = new int[variantIds.length];
+        int candidates = 0;
+        for (int j = 0; j < variantIds.length; j++) {
+            int id = variantIds[j];
+            if (id >= 0 && counts[id] == 1 && uniquePositions[id] >= 0) {
+                basePositions[candidates] = uniquePositions[id];
+                variantPositions[candidates] = j;
+                ++candidates;
+            }
+        }
+
+        for (int id : variantIds) {
+            if (id >= 0) {
+                counts[id] = 0;
+            }
+        }
+
+        int[] sequence = Utils.getLongestIncreasingSubsequence(basePositions, candidates);
+        int[] anchors = new int[sequence.length * 2];
+        for (int k = 0; k < sequence.length; k++) {
+            anchors[2 * k] = basePositions[sequence[k]];
+            anchors[2 * k + 1] = variantPositions[sequence[k]];
+        }
+        return anchors;
+    }
+
+    /**
+     * Compares lines [baseFrom, baseTo) of the base with lines [variantFrom, variantTo) of the variant.
+     */
+    private void compareRange(int baseFrom, int baseTo, LineStore variant, int[] variantIds, int variantFrom,
+                              int variantTo, DifferenceMarker[] baseMarkers, DifferenceMarker[] variantMarkers,
+                              LineSimilarity similarity) {
+        if (baseFrom == baseTo && variantFrom == variantTo) {
+            return;
+        }
+
+        var markers = new DiffAlgorithm(new SubLineStore(base, baseFrom, baseTo),
+                new SubLineStore(variant, variantFrom, variantTo),
+                Arrays.copyOfRange(baseIds, baseFrom, baseTo),
+                Arrays.copyOfRange(variantIds, variantFrom, variantTo), similarity).getMarkers();
+        System.arraycopy(markers[0], 0, baseMarkers, baseFrom, markers[0].length);
+        System.arraycopy(markers[1], 0, variantMarkers, variantFrom, markers[1].length);
+    }
+
+    /**
+     * <p>Compares the base text with all the passed variants using passed amount of threads.</p>
+     * <p>If the report directory is not null, the difference with every variant is saved there
+     * as an HTML page named after the variant file, and the summary of all comparisons is saved
+     * to {@link #SUMMARY_FILE}. Names taken by previous variants get suffixes "-2", "-3" and so on,
+     * until they differ from all other names, ignoring case.</p>
+     *
+     * @param variants  Paths to the files with variants.
+     * @param threads   Amount of threads.
+     * @param reportDir Directory for the reports, or null if reports are not needed.
+     * @return Summaries of comparisons in order of variants.
+     * @throws NullPointerException     If variants are null.
+     * @throws IllegalArgumentException If amount of threads is not positive.
+     * @throws IOException              If I/O errors occurs while reading files or writing reports.
+     */
+    public List<DiffSummary> compareAll(List<Path> variants, int threads, Path reportDir) throws IOException {
+        Objects.requireNonNull(variants, "Variants cannot be null.");
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Amount of threads must be positive.");
+        }
+
+        List<Path> reports = new ArrayList<>();
+        if (reportDir != null) {
+            Files.createDirectories(reportDir);
+            // Names are compared ignoring case, like file systems of Windows and macOS do.
+            Set<String> taken = new HashSet<>();
+            Map<String, Integer> suffixes = new HashMap<>();
+            for (Path variant : variants) {
+                String name = variant.getFileName().toString();
+                String report = name;
+                // A suffixed name may be the name of another variant, so reports never share a file.
+                while (!taken.add(report.toLowerCase(Locale.ROOT))) {
+                    report = name + "-" + suffixes.merge(name, 2, (suffix, first) -> suffix + 1);
+                }
+                reports.add(reportDir.resolve(report + ".html"));
+            }
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<DiffSummary>> futures = new ArrayList<>();
+            for (int i = 0; i < variants.size(); i++) {
+                Path variant = variants.get(i);
+                Path report = reportDir == null ? null : reports.get(i);
+                futures.add(executor.submit(() -> {
+                    Comparison comparison = compare(variant);
+                    if (report != null) {
+                        comparison.saveAsHTML(report);
+                    }
+                    return comparison.getSummary();
+                }));
+            }
+
+            List<DiffSummary> summaries = new ArrayList<>();
+            for (Future<DiffSummary> future : futures) {
+                summaries.add(future.get());
+            }
+
+            if (reportDir != null) {
+                saveSummary(variants, summaries, reportDir.resolve(SUMMARY_FILE));
+            }
+            return summaries;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Comparison was interrupted.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Cannot compare variants.", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Saves summaries of comparisons as a CSV table with a row per variant.
+     *
+     * @throws IOException If I/O errors occurs while writing the file.
+     */
+    public static void saveSummary(List<Path> variants, List<DiffSummary> summaries, Path path) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            writer.write("variant,equal,inserted,deleted,changed\n");
+            for (int i = 0; i < variants.size(); i++) {
+                DiffSummary summary = summaries.get(i);
+                writer.write("\"" + variants.get(i).toString().replace("\"", "\"\"") + "\","
+                        + summary.getEqual() + "," + summary.getInserted() + ","
+                        + summary.getDeleted() + "," + summary.getChanged() + "\n");
+            }
+        }
+    }
+
+
+    /**
+     * Describes the result of comparing the base text with one variant.
+     */
+    public class Comparison {
+        /**
+         * Path to the file with the variant.
+         */
+        private final Path pathToVariant;
+        /**
+         * Lines of the variant.
+         */
+        private final LineStore variant;
+        /**
+         * Markers of lines of the base and the variant.
+         */
+        private final DifferenceMarker[][] markers;
+
+        /**
+         * Private constructor to prevent creation outside of the comparator.
+         */
+        private Comparison(Path pathToVariant, LineStore variant, DifferenceMarker[][] markers) {
+            this.pathToVariant = pathToVariant;
+            this.variant = variant;
+            this.markers = markers;
+        }
+
+        /**
+         * Returns the path to the file with the variant.
+         */
+        public Path getPathToVariant() {
+            return pathToVariant;
+        }
+
+        /**
+         * Returns an array of two arrays with markers of lines of the base and the variant respectively.
+         */
+        public DifferenceMarker[][] getMarkers() {
+            return new DifferenceMarker[][]{markers[0].clone(), markers[1].clone()};
+        }
+
+        /**
+         * Returns amounts of equal, inserted, deleted and changed lines.
+         */
+        public DiffSummary getSummary() {
+            return DiffSummary.of(markers);
+        }
+
+        /**
+         * Saves the difference as an HTML page.
+         *
+         * @throws IOException If I/O errors occurs while writing the page.
+         */
+        public void saveAsHTML(Path path) throws IOException {
+            DiffPage.getBuilder()
+                    .addOld(base, markers[0])
+                    .addNew(variant, markers[1])
+                    .build()
+                    .write(path);
+        }
+    }
+}
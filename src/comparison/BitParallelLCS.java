@@ -0,0 +1,125 @@
+package comparison;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <p>Computes the length of the longest common subsequence of two strings using
+ * the bit-parallel algorithm by Allison-Dix and Hyyro.</p>
+ * <p>Every row of the classic LCS table is encoded as a bit vector, so one
+ * {@code long} operation processes 64 cells at once. The algorithm needs
+ * O(|x| * |y| / 64) time and O(s * |x| / 64) memory, where s is the number of
+ * distinct characters of the shorter string.</p>
+ */
+final class BitParallelLCS {
+    /**
+     * Characters below this value are looked up in an array instead of a map.
+     */
+    private static final int DIRECT_LOOKUP_SIZE = 128;
+
+    /**
+     * Private constructor to prevent instance creation.
+     */
+    private BitParallelLCS() {
+    }
+
+    /**
+     * Finds the length of the longest common subsequence of two passed strings.
+     *
+     * @return LCS length.
+     */
+    static int length(CharSequence x, CharSequence y) {
+        // Match masks are built for the shorter string to keep them small.
+        if (x.length() > y.length()) {
+            CharSequence tmp = x;
+            x = y;
+            y = tmp;
+        }
+        int m = x.length();
+        if (m == 0) {
+            return 0;
+        }
+        int words = (m + 63) >>> 6;
+
+        int[] directSlots = new int[DIRECT_LOOKUP_SIZE];
+        Map<Character, Integer> otherSlots = new HashMap<>();
+        long[][] masks = buildMasks(x, words, directSlots, otherSlots);
+
+        long[] vector = new long[words];
+        Arrays.fill(vector, -1L);
+
+        for (int j = 0; j < y.length(); j++) {
+            char c = y.charAt(j);
+            int slot;
+            if (c < DIRECT_LOOKUP_SIZE) {
+                slot = directSlots[c] - 1;
+            } else {
+                Integer boxed = otherSlots.get(c);
+                slot = boxed == null ? -1 : boxed;
+            }
+            // A character absent from x leaves the row unchanged.
+            if (slot < 0) {
+                continue;
+            }
+
+            long[] mask = masks[slot];
+            long carry = 0;
+            for (int w = 0; w < words; w++) {
+                long v = vector[w];
+                long u = v & mask[w];
+                long sum = v + u + carry;
+                carry = ((v & u) | ((v | u) & ~sum)) >>> 63;
+                vector[w] = sum | (v & ~mask[w]);
+            }
+        }
+
+        int zeros = 0;
+        for (int w = 0; w < words - 1; w++) {
+            zeros += Long.bitCount(~vector[w]);
+        }
+        int tail = m & 63;
+        long lastMask = tail == 0 ? -1L : (1L << tail) - 1;
+        zeros += Long.bitCount(~vector[words - 1] & lastMask);
+        return zeros;
+    }
+
+    /**
+     * Builds a bit mask of positions for every distinct character of the passed string.
+     */
+    private static long[][] buildMasks(CharSequence x, int words, int[] directSlots,
+                                       Map<Character, Integer> otherSlots) {
+        long[][] masks = new long[Math.min(x.length(), 16)][];
+        int count = 0;
+
+        for (int i = 0; i < x.length(); i++) {
+            char c = x.charAt(i);
+            int slot;
+            if (c < DIRECT_LOOKUP_SIZE) {
+                if (directSlots[c] == 0) {
+                    directSlots[c] = count + 1;
+                    slot = count++;
+                } else {
+                    slot = directSlots[c] - 1;
+                }
+            } else {
+                Integer boxed = otherSlots.get(c);
+                if (boxed == null) {
+                    otherSlots.put(c, count);
+                    slot = count++;
+                } else {
+                    slot = boxed;
+                }
+            }
+
+            if (slot >= masks.length) {
+                masks = Arrays.copyOf(masks, masks.length * 2);
+            }
+            if (masks[slot] == null) {
+                masks[slot] = new long[words];
+            }
+            masks[slot][i >>> 6] |= 1L << (i & 63);
+        }
+        return masks;
+    }
+}
@@ -0,0 +1,349 @@
+package comparison;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Splits a file into content-defined chunks and finds chunks two files have in common.</p>
+ * <p>A chunk ends at a line break where the gear rolling hash of the last bytes has specific
+ * bits equal to zero, so an edit changes only the chunks around it, and the chunks after it
+ * are the same as in the unchanged file (like rsync does). Chunks always consist of whole lines.
+ * Files are read through memory mapping without decoding.</p>
+ * <p>Chunks are matched by 64-bit hashes and lengths, and bytes of matched chunks are compared
+ * before they are taken for identical, since different chunks may have the same hash.</p>
+ */
+final class BlockFingerprint {
+    /**
+     * Minimal length of a chunk in bytes.
+     */
+    private static final int MIN_CHUNK = 2 * 1024;
+    /**
+     * Chunks longer than this end at the next line break regardless of the hash.
+     */
+    private static final int MAX_CHUNK = 64 * 1024;
+    /**
+     * Chunk ends when the rolling hash has all these bits equal to zero,
+     * which gives chunks of about 8 KB on average.
+     */
+    private static final long CHUNK_MASK = 8 * 1024 - 1;
+    /**
+     * Size of the part of a file mapped at once.
+     */
+    private static final long MAP_WINDOW = 256L * 1024 * 1024;
+
+    /**
+     * Path to the file.
+     */
+    private final Path path;
+    /**
+     * Offsets of chunk starts. The last element is the size of the file.
+     */
+    private final long[] offsets;
+    /**
+     * Hashes of chunks.
+     */
+    private final long[] hashes;
+    /**
+     * Amount of chunks.
+     */
+    private final int count;
+
+    /**
+     * Creates a new fingerprint from chunk arrays.
+     */
+    private BlockFingerprint(Path path, long[] offsets, long[] hashes, int count) {
+        this.path = path;
+        this.offsets = offsets;
+        this.hashes = hashes;
+        this.count = count;
+    }
+
+    /**
+     * Splits the file at the passed path into chunks.
+     *
+     * @throws IOException If I/O errors occurs.
+     */
+    static BlockFingerprint of(Path path) throws IOException {
+        long[] offsets = new long[1024];
+        long[] hashes = new long[1024];
+        int count = 0;
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long rolling = 0;
+            long hash = Hashing.FNV_OFFSET;
+            long start = 0;
+
+            for (long windowStart = 0; windowStart < size; windowStart += MAP_WINDOW) {
+                long windowSize = Math.min(MAP_WINDOW, size - windowStart);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowSize);
+
+                for (int i = 0; i < windowSize; i++) {
+                    byte b = buffer.get(i);
+                    rolling = (rolling << 1) + Hashing.GEAR[b & 0xFF];
+                    hash = (hash ^ b) * Hashing.FNV_PRIME;
+
+                    long position = windowStart + i;
+                    long length = position - start + 1;
+                    if (b == '\n' && length >= MIN_CHUNK && ((rolling & CHUNK_MASK) == 0 || length >= MAX_CHUNK)) {
+                        if (count + 1 >= offsets.length) {
+                            offsets = Arrays.copyOf(offsets, offsets.length * 2);
+                            hashes = Arrays.copyOf(hashes, hashes.length * 2);
+                        }
+                        offsets[count] = start;
+                        hashes[count] = hash;
+                        ++count;
+                        hash = Hashing.FNV_OFFSET;
+                        start = position + 1;
+                    }
+                }
+            }
+
+            if (count + 2 > offsets.length) {
+                offsets = Arrays.copyOf(offsets, count + 2);
+                hashes = Arrays.copyOf(hashes, count + 2);
+            }
+            if (start < size) {
+                offsets[count] = start;
+                hashes[count] = hash;
+                ++count;
+            }
+            offsets[count] = size;
+        }
+
+        return new BlockFingerprint(path, offsets, hashes, count);
+    }
+
+    /**
+     * Shows if the i-th chunk of this file equals to the j-th chunk of the other file.
+     */
+    private boolean chunkEquals(int i, BlockFingerprint other, int j) {
+        return hashes[i] == other.hashes[j]
+                && offsets[i + 1] - offsets[i] == other.offsets[j + 1] - other.offsets[j];
+    }
+
+    /**
+     * <p>Splits both files into consecutive pairs of regions.</p>
+     * <p>Common chunks are found by trimming the common prefix and suffix and by anchoring
+     * on chunks that occur exactly once in both files: the longest increasing sequence of such
+     * anchors is taken, and every anchor is extended with neighbouring equal chunks.
+     * Chunks with equal hashes whose bytes differ get into compared regions.</p>
+     *
+     * @return Regions in order of the files. Identical regions contain the same bytes,
+     * other regions contain the rest of the files.
+     * @throws IOException If I/O errors occurs while comparing bytes of the files.
+     */
+    static List<Region> match(BlockFingerprint old, BlockFingerprint neu) throws IOException {
+        int n = old.count;
+        int m = neu.count;
+
+        int prefix = 0;
+        while (prefix < n && prefix < m && old.chunkEquals(prefix, neu, prefix)) {
+            ++prefix;
+        }
+        int suffix = 0;
+        while (suffix < n - prefix && suffix < m - prefix && old.chunkEquals(n - 1 - suffix, neu, m - 1 - suffix)) {
+            ++suffix;
+        }
+
+        // Runs of equal chunks as triples: start in old, start in new, length.
+        List<int[]> runs = new ArrayList<>();
+        if (prefix > 0) {
+            runs.add(new int[]{0, 0, prefix});
+        }
+        for (int[] run : matchMiddle(old, prefix, n - suffix, neu, prefix, m - suffix)) {
+            runs.add(run);
+        }
+        if (suffix > 0) {
+            runs.add(new int[]{n - suffix, m - suffix, suffix});
+        }
+
+        List<Region> regions = new ArrayList<>();
+        try (FileChannel oldChannel = FileChannel.open(old.path, StandardOpenOption.READ);
+             FileChannel newChannel = FileChannel.open(neu.path, StandardOpenOption.READ)) {
+            int i = 0;
+            int j = 0;
+            for (int[] run : runs) {
+                addCompared(regions, old.offsets[i], old.offsets[run[0]], neu.offsets[j], neu.offsets[run[1]]);
+                addIdentical(regions, old, run[0], neu, run[1], run[2], oldChannel, newChannel);
+                i = run[0] + run[2];
+                j = run[1] + run[2];
+            }
+            addCompared(regions, old.offsets[i], old.offsets[n], neu.offsets[j], neu.offsets[m]);
+        }
+        return regions;
+    }
+
+    /**
+     * Adds regions of a run of chunks with equal hashes starting from the i-th chunk of the old file
+     * and the j-th chunk of the new one. Bytes of the chunks are compared, and a chunk whose bytes
+     * differ is added as a compared region.
+     */
+    private static void addIdentical(List<Region> regions, BlockFingerprint old, int i, BlockFingerprint neu, int j,
+                                     int length, FileChannel oldChannel, FileChannel newChannel) throws IOException {
+        // Chunks of the run have equal lengths, so chunk k starts at the same distance from the start of the run.
+        long shift = neu.offsets[j] - old.offsets[i];
+        long start = old.offsets[i];
+        long end = old.offsets[i + length];
+
+        while (start < end) {
+            long mismatch = mismatch(oldChannel, start, newChannel, start + shift, end - start);
+            if (mismatch < 0) {
+                regions.add(new Region(start, end, start + shift, end + shift, true));
+                return;
+            }
+
+            int chunk = Arrays.binarySearch(old.offsets, i, i + length + 1, start + mismatch);
+            if (chunk < 0) {
+                // The chunk before the insertion point contains the position.
+                chunk = -chunk - 2;
+            }
+            long chunkStart = old.offsets[chunk];
+            long chunkEnd = old.offsets[chunk + 1];
+            if (chunkStart > start) {
+                regions.add(new Region(start, chunkStart, start + shift, chunkStart + shift, true));
+            }
+            addCompared(regions, chunkStart, chunkEnd, chunkStart + shift, chunkEnd + shift);
+            start = chunkEnd;
+        }
+    }
+
+    /**
+     * Adds a compared region with passed ranges, merging it with the last region if that is compared too.
+     * Does nothing if both ranges are empty.
+     */
+    private static void addCompared(List<Region> regions, long oldStart, long oldEnd, long newStart, long newEnd) {
+        if (oldStart == oldEnd && newStart == newEnd) {
+            return;
+        }
+
+        Region last = regions.isEmpty() ? null : regions.get(regions.size() - 1);
+        if (last != null && !last.identical) {
+            regions.set(regions.size() - 1, new Region(last.oldStart, oldEnd, last.newStart, newEnd, false));
+        } else {
+            regions.add(new Region(oldStart, oldEnd, newStart, newEnd, false));
+        }
+    }
+
+    /**
+     * Compares passed amount of bytes of the files starting from passed positions.
+     *
+     * @return Distance from the start to the first different byte, or -1 if the bytes are the same.
+     */
+    private static long mismatch(FileChannel oldChannel, long oldStart, FileChannel newChannel, long newStart,
+                                 long size) throws IOException {
+        for (long position = 0; position < size; position += MAP_WINDOW) {
+            long length = Math.min(MAP_WINDOW, size - position);
+            MappedByteBuffer oldBytes = oldChannel.map(FileChannel.MapMode.READ_ONLY, oldStart + position, length);
+            MappedByteBuffer newBytes = newChannel.map(FileChannel.MapMode.READ_ONLY, newStart + position, length);
+            int mismatch = oldBytes.mismatch(newBytes);
+            if (mismatch >= 0) {
+                return position + mismatch;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Finds runs of equal chunks between chunks [oldFrom, oldTo) of the old file
+     * and [newFrom, newTo) of the new one.
+     */
+    private static List<int[]> matchMiddle(BlockFingerprint old, int oldFrom, int oldTo,
+                                           BlockFingerprint neu, int newFrom, int newTo) {
+        // Occurrences of every hash: count in old, count in new, last index in old, last index in new.
+        Map<Long, int[]> occurrences = new HashMap<>();
+        for (int i = oldFrom; i < oldTo; i++) {
+            int[] occurrence = occurrences.computeIfAbsent(old.hashes[i], hash -> new int[4]);
+            ++occurrence[0];
+            occurrence[2] = i;
+        }
+        for (int j = newFrom; j < newTo; j++) {
+            int[] occurrence = occurrences.get(neu.hashes[j]);
+            if (occurrence != null) {
+                ++occurrence[1];
+                occurrence[3] = j;
+            }
+        }
+
+        int[] anchorsNew = new int[oldTo - oldFrom];
+        int anchorCount = 0;
+        int[] anchorsOld = new int[oldTo - oldFrom];
+        for (int i = oldFrom; i < oldTo; i++) {
+            int[] occurrence = occurrences.get(old.hashes[i]);
+            if (occurrence[0] == 1 && occurrence[1] == 1 && old.chunkEquals(i, neu, occurrence[3])) {
+                anchorsOld[anchorCount] = i;
+                anchorsNew[anchorCount] = occurrence[3];
+                ++anchorCount;
+            }
+        }
+
+        List<int[]> runs = new ArrayList<>();
+        int oldEnd = oldFrom;
+        int newEnd = newFrom;
+        for (int anchor : Utils.getLongestIncreasingSubsequence(anchorsNew, anchorCount)) {
+            int i = anchorsOld[anchor];
+            int j = anchorsNew[anchor];
+            if (i < oldEnd || j < newEnd) {
+                continue;
+            }
+
+            int start = 0;
+            while (i - start - 1 >= oldEnd && j - start - 1 >= newEnd
+                    && old.chunkEquals(i - start - 1, neu, j - start - 1)) {
+                ++start;
+            }
+            int end = 1;
+            while (i + end < oldTo && j + end < newTo && old.chunkEquals(i + end, neu, j + end)) {
+                ++end;
+            }
+
+            runs.add(new int[]{i - start, j - start, start + end});
+            oldEnd = i + end;
+            newEnd = j + end;
+        }
+        return runs;
+    }
+
+
+    /**
+     * Describes a pair of byte ranges of the old and the new file.
+     */
+    static final class Region {
+        /**
+         * Start of the range in the old file.
+         */
+        final long oldStart;
+        /**
+         * End of the range in the old file, exclusive.
+         */
+        final long oldEnd;
+        /**
+         * Start of the range in the new file.
+         */
+        final long newStart;
+        /**
+         * End of the range in the new file, exclusive.
+         */
+        final long newEnd;
+        /**
+         * Flag shows if both ranges contain the same bytes.
+         */
+        final boolean identical;
+
+        private Region(long oldStart, long oldEnd, long newStart, long newEnd, boolean identical) {
+            this.oldStart = oldStart;
+            this.oldEnd = oldEnd;
+            this.newStart = newStart;
+            this.newEnd = newEnd;
+            this.identical = identical;
+        }
+    }
+}
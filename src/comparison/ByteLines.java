@@ -0,0 +1,141 @@
+package comparison;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Splits raw bytes of a file into lines on '\n' and '\r' bytes, without decoding them.
+ * Lines are trimmed and blank lines are skipped, which for UTF-8 gives the same lines
+ * as {@link Utils#readLines(java.nio.file.Path)}.
+ */
+final class ByteLines {
+    /**
+     * Size of the buffer used to read files.
+     */
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Receives lines of a file.
+     */
+    @FunctionalInterface
+    interface Consumer {
+        /**
+         * Accepts a trimmed non-blank line. The array is reused for the next lines.
+         */
+        void accept(byte[] bytes, int offset, int length);
+    }
+
+    /**
+     * Private constructor to prevent instance creation.
+     */
+    private ByteLines() {
+    }
+
+    /**
+     * Reads lines from the byte range [start, end) of the channel.
+     *
+     * @throws IOException If I/O errors occurs.
+     */
+    static void read(FileChannel channel, long start, long end, Consumer consumer) throws IOException {
+        Splitter splitter = new Splitter(consumer);
+        ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+
+        long position = start;
+        while (position < end) {
+            buffer.limit((int) Math.min(buffer.capacity(), end - position));
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                break;
+            }
+            position += read;
+
+            splitter.split(buffer.array(), buffer.position());
+            buffer.clear();
+        }
+        splitter.finish();
+    }
+
+    /**
+     * Reads lines from the stream until its end.
+     *
+     * @throws IOException If I/O errors occurs.
+     */
+    static void read(InputStream in, Consumer consumer) throws IOException {
+        Splitter splitter = new Splitter(consumer);
+        byte[] buffer = new byte[READ_BUFFER_SIZE];
+
+        for (int read; (read = in.read(buffer)) >= 0; ) {
+            splitter.split(buffer, read);
+        }
+        splitter.finish();
+    }
+
+    /**
+     * Trims the line and passes it to the consumer if it is not blank.
+     */
+    private static void accept(byte[] line, int length, Consumer consumer) {
+        int start = 0;
+        int end = length;
+        while (start < end && (line[start] & 0xFF) <= ' ') {
+            ++start;
+        }
+        while (end > start && (line[end - 1] & 0xFF) <= ' ') {
+            --end;
+        }
+        if (start < end) {
+            consumer.accept(line, start, end - start);
+        }
+    }
+
+
+    /**
+     * Collects bytes of the current line between reads.
+     */
+    private static final class Splitter {
+        /**
+         * Receives split lines.
+         */
+        private final Consumer consumer;
+        /**
+         * Bytes of the current line.
+         */
+        private byte[] line = new byte[256];
+        /**
+         * Amount of bytes of the current line.
+         */
+        private int lineLength;
+
+        private Splitter(Consumer consumer) {
+            this.consumer = consumer;
+        }
+
+        /**
+         * Splits the first bytes of the array, passing every completed line to the consumer.
+         */
+        private void split(byte[] bytes, int length) {
+            for (int i = 0; i < length; i++) {
+                byte b = bytes[i];
+                if (b == '\n' || b == '\r') {
+                    accept(line, lineLength, consumer);
+                    lineLength = 0;
+                    continue;
+                }
+                if (lineLength == line.length) {
+                    line = Arrays.copyOf(line, line.length * 2);
+                }
+                line[lineLength++] = b;
+            }
+        }
+
+        /**
+         * Passes the last line to the consumer.
+         */
+        private void finish() {
+            accept(line, lineLength, consumer);
+            lineLength = 0;
+        }
+    }
+}
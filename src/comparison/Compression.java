@@ -0,0 +1,167 @@
+package comparison;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * <p>Opens files that may be compressed.</p>
+ * <p>Compressed input is detected by its first bytes rather than by the file name: gzip
+ * (including concatenated members) and zlib deflate streams are supported. Compressed
+ * input is decompressed while being read and is never written to disk; decompression
+ * runs on a separate thread a few buffers ahead of the reader, so it overlaps with
+ * splitting the text into lines.</p>
+ */
+public final class Compression {
+    /**
+     * Name extension of files written compressed with gzip.
+     */
+    public static final String GZIP_EXTENSION = ".gz";
+
+    /**
+     * Size of buffers used to read and write files.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+    /**
+     * Amount of first bytes of a file used to detect its format.
+     */
+    private static final int HEADER_SIZE = 512;
+
+    /**
+     * Private constructor to prevent instance creation.
+     */
+    private Compression() {
+    }
+
+    /**
+     * Describes a format of a file.
+     */
+    private enum Format {
+        PLAIN, GZIP, ZLIB
+    }
+
+    /**
+     * Shows if the file at the passed path is compressed with gzip or zlib.
+     *
+     * @throws NullPointerException  If passed path is null.
+     * @throws FileNotFoundException If file at the passed path does not exist.
+     * @throws IOException           If I/O errors occurs.
+     */
+    public static boolean isCompressed(Path path) throws IOException {
+        return detect(path) != Format.PLAIN;
+    }
+
+    /**
+     * Opens the file at the passed path for reading, decompressing it if it is compressed.
+     *
+     * @throws NullPointerException  If passed path is null.
+     * @throws FileNotFoundException If file at the passed path does not exist.
+     * @throws IOException           If I/O errors occurs.
+     */
+    public static InputStream open(Path path) throws IOException {
+        Format format = detect(path);
+        InputStream in = new BufferedInputStream(Files.newInputStream(path), BUFFER_SIZE);
+        try {
+            switch (format) {
+                case GZIP:
+                    return new ReadAheadInputStream(new GZIPInputStream(in, BUFFER_SIZE), BUFFER_SIZE);
+                case ZLIB:
+                    return new ReadAheadInputStream(new InflaterInputStream(in), BUFFER_SIZE);
+                default:
+                    return in;
+            }
+        } catch (IOException | RuntimeException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens the file at the passed path for writing. If the name of the file ends with
+     * {@link #GZIP_EXTENSION}, written data is compressed with gzip.
+     *
+     * @throws NullPointerException If passed path is null.
+     * @throws IOException          If I/O errors occurs.
+     */
+    public static OutputStream create(Path path) throws IOException {
+        Objects.requireNonNull(path, "Path cannot be null.");
+
+        OutputStream out = Files.newOutputStream(path);
+        if (path.getFileName().toString().toLowerCase().endsWith(GZIP_EXTENSION)) {
+            try {
+                return new GZIPOutputStream(out, BUFFER_SIZE);
+            } catch (IOException | RuntimeException e) {
+                out.close();
+                throw e;
+            }
+        }
+        return new BufferedOutputStream(out, BUFFER_SIZE);
+    }
+
+    /**
+     * Detects the format of the file by its first bytes.
+     */
+    private static Format detect(Path path) throws IOException {
+        Objects.requireNonNull(path, "Path cannot be null.");
+
+        if (!Files.exists(path)) {
+            throw new FileNotFoundException("File " + path + " does not exist.");
+        }
+
+        byte[] header = new byte[HEADER_SIZE];
+        int length = 0;
+        try (InputStream in = Files.newInputStream(path)) {
+            for (int read; length < header.length && (read = in.read(header, length, header.length - length)) > 0; ) {
+                length += read;
+            }
+        }
+        if (length < 2) {
+            return Format.PLAIN;
+        }
+
+        int first = header[0] & 0xFF;
+        int second = header[1] & 0xFF;
+        if (first == 0x1F && second == 0x8B) {
+            return Format.GZIP;
+        }
+        // zlib header of a deflate stream with a 32K window and no preset dictionary.
+        // Plain text may start with such bytes too, so the beginning is also inflated on trial.
+        if (first == 0x78 && (second & 0x20) == 0 && ((first << 8) | second) % 31 == 0
+                && inflates(header, length)) {
+            return Format.ZLIB;
+        }
+        return Format.PLAIN;
+    }
+
+    /**
+     * Shows if the passed beginning of a file is a valid start of a zlib stream.
+     */
+    private static boolean inflates(byte[] header, int length) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(header, 0, length);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (!inflater.finished() && !inflater.needsInput()) {
+                if (inflater.inflate(buffer) == 0 && inflater.needsDictionary()) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (DataFormatException e) {
+            return false;
+        } finally {
+            inflater.end();
+        }
+    }
+}
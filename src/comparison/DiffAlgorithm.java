@@ -2,6 +2,7 @@ package comparison;
 
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 
 /**
  * Provides functionality for comparing 2 texts line by line.
@@ -10,19 +11,61 @@ import java.util.Objects;
  */
 public class DiffAlgorithm {
     /**
-     * Lines of old text and changes occurred to them.
+     * Lines of old text.
      */
-    private final Difference[] oldLines;
+    private final LineStore oldLines;
     /**
-     * Lines of new text and changes occurred to them.
+     * Lines of new text.
      */
-    private final Difference[] newLines;
+    private final LineStore newLines;
+
+    /**
+     * Changes occurred to the lines of old text.
+     */
+    private final DifferenceMarker[] oldMarkers;
+    /**
+     * Changes occurred to the lines of new text.
+     */
+    private final DifferenceMarker[] newMarkers;
 
     /**
      * Position in texts while the algorithm is running.
      */
     private final DiffPosition position;
 
+    /**
+     * Decides which lines can be considered changed.
+     */
+    private final LineSimilarity similarity;
+
+    /**
+     * Ids of lines of old text, or null if they should be found by the algorithm.
+     */
+    private int[] oldIds;
+    /**
+     * Ids of lines of new text, or null if they should be found by the algorithm.
+     */
+    private int[] newIds;
+
+    /**
+     * Workspace scratch arrays are taken from, or null if they are allocated.
+     */
+    private final Workspace workspace;
+    /**
+     * Engine finding equal lines, or null if it is chosen by the planner.
+     */
+    private final DiffEngine engine;
+
+    /**
+     * Plan of the comparison, null until the difference is found.
+     */
+    private DiffPlan plan;
+
+    /**
+     * Flag shows if the difference has already been found.
+     */
+    private boolean found = false;
+
     /**
      * Creates a new DiffAlgorithm instance to compare passed texts.
      *
@@ -31,20 +74,99 @@ public class DiffAlgorithm {
      * @throws NullPointerException If any of the passed texts is null.
      */
     public DiffAlgorithm(List<String> oldLines, List<String> newLines) {
-        Objects.requireNonNull(oldLines, "Cannot work with null list. oldLines was null.");
-        Objects.requireNonNull(newLines, "Cannot work with null list. newLines was null.");
+        this(oldLines, newLines, new LineSimilarity());
+    }
 
-        this.oldLines = new Difference[oldLines.size()];
-        this.newLines = new Difference[newLines.size()];
+    /**
+     * Creates a new DiffAlgorithm instance to compare passed texts.
+     *
+     * @param oldLines   Lines of an old text.
+     * @param newLines   Lines of a new text.
+     * @param similarity Decides which lines can be considered changed.
+     * @throws NullPointerException If any of the passed arguments is null.
+     */
+    public DiffAlgorithm(List<String> oldLines, List<String> newLines, LineSimilarity similarity) {
+        this(new ListLineStore(Objects.requireNonNull(oldLines, "Cannot work with null list. oldLines was null.")),
+                new ListLineStore(Objects.requireNonNull(newLines, "Cannot work with null list. newLines was null.")),
+                similarity);
+    }
 
-        for (int i = 0; i < oldLines.size(); i++) {
-            this.oldLines[i] = new Difference(oldLines.get(i));
-        }
-        for (int i = 0; i < newLines.size(); i++) {
-            this.newLines[i] = new Difference(newLines.get(i));
+    /**
+     * Creates a new DiffAlgorithm instance to compare passed texts with the passed engine,
+     * which overrides {@link DiffPlanner#ENGINE_PROPERTY}.
+     *
+     * @param oldLines   Lines of an old text.
+     * @param newLines   Lines of a new text.
+     * @param similarity Decides which lines can be considered changed.
+     * @param engine     Engine finding equal lines, or null if it should be chosen by {@link DiffPlanner}.
+     * @throws NullPointerException If any of the texts or the similarity is null.
+     * @see DiffPlanner
+     */
+    public DiffAlgorithm(List<String> oldLines, List<String> newLines, LineSimilarity similarity,
+                         DiffEngine engine) {
+        this(new ListLineStore(Objects.requireNonNull(oldLines, "Cannot work with null list. oldLines was null.")),
+                new ListLineStore(Objects.requireNonNull(newLines, "Cannot work with null list. newLines was null.")),
+                similarity, engine, null);
+    }
+
+    /**
+     * Creates a new DiffAlgorithm instance to compare texts kept in passed stores.
+     * Lines are not copied, so the stores must stay open while the algorithm is used.
+     *
+     * @param oldLines   Lines of an old text.
+     * @param newLines   Lines of a new text.
+     * @param similarity Decides which lines can be considered changed.
+     * @throws NullPointerException     If any of the passed arguments is null.
+     * @throws IllegalArgumentException If the stores are of different classes.
+     */
+    public DiffAlgorithm(LineStore oldLines, LineStore newLines, LineSimilarity similarity) {
+        this(oldLines, newLines, similarity, null, null);
+    }
+
+    /**
+     * Creates a new DiffAlgorithm instance with the passed engine, or the one chosen by the planner if it is null,
+     * taking ids and scratch arrays from the workspace, if it is not null. The workspace must not be used
+     * by others until the difference is found.
+     */
+    DiffAlgorithm(LineStore oldLines, LineStore newLines, LineSimilarity similarity, DiffEngine engine,
+                  Workspace workspace) {
+        Objects.requireNonNull(oldLines, "Cannot work with null store. oldLines was null.");
+        Objects.requireNonNull(newLines, "Cannot work with null store. newLines was null.");
+        Objects.requireNonNull(similarity, "Line similarity cannot be null.");
+        if (oldLines.getClass() != newLines.getClass()) {
+            throw new IllegalArgumentException("Cannot compare texts kept in stores of different classes.");
         }
 
+        this.oldLines = oldLines;
+        this.newLines = newLines;
+
+        this.oldMarkers = new DifferenceMarker[oldLines.size()];
+        this.newMarkers = new DifferenceMarker[newLines.size()];
+
         this.position = new DiffPosition();
+        this.similarity = similarity;
+        this.workspace = workspace;
+        this.engine = engine;
+    }
+
+    /**
+     * Creates a new DiffAlgorithm instance to compare texts with already interned lines.
+     * Equal lines must have equal ids and different lines must have different ids.
+     *
+     * @param oldLines   Lines of an old text.
+     * @param newLines   Lines of a new text.
+     * @param oldIds     Ids of lines of the old text.
+     * @param newIds     Ids of lines of the new text.
+     * @param similarity Decides which lines can be considered changed.
+     */
+    DiffAlgorithm(LineStore oldLines, LineStore newLines, int[] oldIds, int[] newIds, LineSimilarity similarity) {
+        this(oldLines, newLines, similarity);
+        if (oldIds.length != oldLines.size() || newIds.length != newLines.size()) {
+            throw new IllegalArgumentException("Amounts of lines and ids differ.");
+        }
+
+        this.oldIds = oldIds;
+        this.newIds = newIds;
     }
 
     /**
@@ -53,51 +175,155 @@ public class DiffAlgorithm {
      * @return 2 arrays with lines of an old and a new texts (respectively) with changes occurred to them.
      */
     public Difference[][] getDiff() {
-        var LCSTable = Utils.getLCSTable(oldLines, newLines);
-        findEqual(oldLines.length, newLines.length, LCSTable);
-        findNotEqual();
+        getMarkers();
 
-        return new Difference[][]{oldLines, newLines};
+        return new Difference[][]{Utils.toDifferences(oldLines, oldMarkers), Utils.toDifferences(newLines, newMarkers)};
     }
 
     /**
-     * Recursively finds all the unchanged lines of texts and sets EQUAL markers to those lines.
+     * <p>Finds a difference between texts, comparing them line by line.</p>
+     * <p>Unlike {@link #getDiff()} does not create an object per line, so should be preferred for large texts.</p>
+     *
+     * @return 2 arrays with markers of lines of an old and a new texts (respectively).
      */
-    private void findEqual(int i, int j, int[][] LCSTable) {
-        if (LCSTable[i][j] == 0) {
-            return;
+    public DifferenceMarker[][] getMarkers() {
+        if (!found) {
+            matchEqual();
+            findNotEqual();
+            found = true;
         }
-        if (oldLines[i - 1].getLine().equals(newLines[j - 1].getLine())) {
-            oldLines[i - 1].setMarker(DifferenceMarker.EQUAL);
-            newLines[j - 1].setMarker(DifferenceMarker.EQUAL);
-            findEqual(i - 1, j - 1, LCSTable);
+
+        return new DifferenceMarker[][]{oldMarkers, newMarkers};
+    }
+
+    /**
+     * Finds only the unchanged lines of texts, without deciding which of the others were changed.
+     * Markers of the others stay null until {@link #getMarkers()} is called.
+     *
+     * @return 2 arrays with markers of lines of an old and a new texts (respectively), EQUAL or null.
+     */
+    DifferenceMarker[][] getEqualMarkers() {
+        matchEqual();
+        return new DifferenceMarker[][]{oldMarkers, newMarkers};
+    }
+
+    /**
+     * Interns lines, if they have no ids yet, plans the comparison and sets EQUAL markers
+     * with the chosen engine, unless it has already been done.
+     */
+    private void matchEqual() {
+        if (plan != null) {
             return;
         }
-        if (LCSTable[i - 1][j] < LCSTable[i][j - 1]) {
-            findEqual(i, j - 1, LCSTable);
-            return;
+
+        if (oldIds == null && workspace == null) {
+            LineInterner interner = new LineInterner();
+            oldIds = interner.intern(oldLines);
+            newIds = interner.intern(newLines);
+        } else if (oldIds == null) {
+            // Pooled arrays may be longer than the texts.
+            LineInterner interner = workspace.getInterner();
+            oldIds = workspace.getInts(Workspace.OLD_IDS, oldMarkers.length);
+            newIds = workspace.getInts(Workspace.NEW_IDS, newMarkers.length);
+            interner.intern(oldLines, oldIds);
+            interner.intern(newLines, newIds);
+        }
+
+        DiffPlan plan = DiffPlanner.plan(oldIds, newIds, oldLines, newLines, similarity, engine, workspace);
+        switch (plan.getEngine()) {
+            case LCS_TABLE:
+                findEqual(plan.getCommonSuffix());
+                break;
+            case MYERS:
+                new MyersDiff(oldIds, newIds, oldMarkers, newMarkers, workspace)
+                        .markEqual(0, oldMarkers.length, 0, newMarkers.length);
+                break;
+            case HISTOGRAM:
+                new HistogramDiff(oldIds, newIds, oldMarkers, newMarkers, workspace)
+                        .markEqual(0, oldMarkers.length, 0, newMarkers.length);
+                break;
+            default:
+                new AnchoredDiff(oldIds, newIds, oldMarkers, newMarkers, workspace)
+                        .markEqual(0, oldMarkers.length, 0, newMarkers.length);
+                break;
+        }
+        this.plan = plan;
+    }
+
+    /**
+     * Returns strategies used to decide which lines were changed.
+     *
+     * @see LineSimilarity
+     */
+    public Set<SimilarityStrategy> getUsedStrategies() {
+        return similarity.getUsedStrategies();
+    }
+
+    /**
+     * Returns the plan the difference was found by: the chosen engine and its estimated cost.
+     *
+     * @see DiffPlanner
+     */
+    public DiffPlan getPlan() {
+        getMarkers();
+        return plan;
+    }
+
+    /**
+     * Finds all the unchanged lines of texts using the LCS table and sets EQUAL markers to those lines.
+     * The common suffix is matched without the table, which gives the same result as going
+     * through the table from its last cell.
+     *
+     * @param suffix Amount of equal lines at the end of both texts.
+     */
+    private void findEqual(int suffix) {
+        int i = oldMarkers.length - suffix;
+        int j = newMarkers.length - suffix;
+        for (int k = 0; k < suffix; k++) {
+            oldMarkers[i + k] = DifferenceMarker.EQUAL;
+            newMarkers[j + k] = DifferenceMarker.EQUAL;
+        }
+
+        // The table is flattened, so a pooled one can be reused for texts of any shape.
+        int width = j + 1;
+        int cells = Math.multiplyExact(i + 1, width);
+        int[] LCSTable = workspace == null ? new int[cells] : workspace.getInts(Workspace.TABLE, cells);
+        Utils.fillLCSTable(oldIds, i, newIds, j, LCSTable);
+        while (LCSTable[i * width + j] != 0) {
+            if (oldIds[i - 1] == newIds[j - 1]) {
+                oldMarkers[i - 1] = DifferenceMarker.EQUAL;
+                newMarkers[j - 1] = DifferenceMarker.EQUAL;
+                --i;
+                --j;
+            } else if (LCSTable[(i - 1) * width + j] < LCSTable[i * width + j - 1]) {
+                --j;
+            } else {
+                --i;
+            }
         }
-        findEqual(i - 1, j, LCSTable);
     }
 
     /**
      * Goes through all the changed lines deciding if they were inserted, deleted or changed.
      */
     private void findNotEqual() {
-        for (int i = 0; i < oldLines.length; i++) {
-            if (oldLines[i].getMarker() != null) {
-                if (oldLines[i].getMarker() == DifferenceMarker.EQUAL) {
+        for (int i = 0; i < oldMarkers.length; i++) {
+            if (oldMarkers[i] != null) {
+                if (oldMarkers[i] == DifferenceMarker.EQUAL) {
                     position.moveEPO();
                 }
                 continue;
             }
 
             position.findNextSPN();
-            findMatch(i);
+            // A changed line can only be found between the same EQUAL lines in both texts.
+            if (position.equalPositionNew == position.equalPositionOld) {
+                findMatch(i);
+            }
 
             // If changed line was not found, line is deleted.
-            if (oldLines[i].getMarker() == null) {
-                oldLines[i].setMarker(DifferenceMarker.DELETED);
+            if (oldMarkers[i] == null) {
+                oldMarkers[i] = DifferenceMarker.DELETED;
             }
         }
 
@@ -111,10 +337,12 @@ public class DiffAlgorithm {
      * @param i Index in an old text.
      */
     private void findMatch(int i) {
-        for (int j = position.startPositionNew; j < newLines.length; j++) {
+        String oldLine = oldLines.getLine(i);
+        int end = (int) Math.min(newMarkers.length, (long) position.startPositionNew + plan.getMatchWindow());
+        for (int j = position.startPositionNew; j < end; j++) {
             // If the line equals to some other line in an old text, it (or any line after)
             // cannot be the changed version of an old i-th line.
-            if (newLines[j].getMarker() == DifferenceMarker.EQUAL) {
+            if (newMarkers[j] == DifferenceMarker.EQUAL) {
                 position.moveEPN();
                 position.startPositionNew = j + 1;
                 break;
@@ -122,13 +350,9 @@ public class DiffAlgorithm {
 
             // If the length of the longest common subsequence is at least 2/3 of each line (old and new)
             // lines can be considered as changed.
-            int LCSLength = Utils
-                    .getLCSTable(oldLines[i].getLine(), newLines[j].getLine())
-                    [oldLines[i].getLine().length()][newLines[j].getLine().length()];
-            if (LCSLength >= oldLines[i].getLine().length() / 1.5 &&
-                    LCSLength >= newLines[j].getLine().length() / 1.5) {
-                oldLines[i].setMarker(DifferenceMarker.CHANGED);
-                newLines[j].setMarker(DifferenceMarker.CHANGED);
+            if (similarity.areSimilar(oldLine, newLines.getLine(j))) {
+                oldMarkers[i] = DifferenceMarker.CHANGED;
+                newMarkers[j] = DifferenceMarker.CHANGED;
                 position.startPositionNew = j + 1;
                 break;
             }
@@ -139,11 +363,11 @@ public class DiffAlgorithm {
      * Sets all the new lines that were not classified as EQUAL or CHANGED to INSERTED.
      */
     private void fillRemainingNew() {
-        for (Difference newLine : newLines) {
-            if (newLine.getMarker() != null) {
+        for (int j = 0; j < newMarkers.length; j++) {
+            if (newMarkers[j] != null) {
                 continue;
             }
-            newLine.setMarker(DifferenceMarker.INSERTED);
+            newMarkers[j] = DifferenceMarker.INSERTED;
         }
     }
 
@@ -185,13 +409,15 @@ public class DiffAlgorithm {
         /**
          * <p>Finds the next position in a new text starting from which to search for a match.</p>
          * <p>The next position is the position where marker is not yet set and
-         * the amount of EQUALs met in a new text is not less the the amount of EQUALs met in an old one.</p>
+         * the amount of EQUALs met in a new text is not less the the amount of EQUALs met in an old one.
+         * EQUAL lines are not skipped once the amounts are the same, so that the search does not
+         * cross an EQUAL line.</p>
          */
         public void findNextSPN() {
-            while (startPositionNew < DiffAlgorithm.this.newLines.length &&
-                    (DiffAlgorithm.this.newLines[startPositionNew].getMarker() != null ||
-                            equalPositionNew < equalPositionOld)) {
-                if (DiffAlgorithm.this.newLines[startPositionNew].getMarker() == DifferenceMarker.EQUAL) {
+            while (startPositionNew < DiffAlgorithm.this.newMarkers.length &&
+                    (equalPositionNew < equalPositionOld ||
+                            DiffAlgorithm.this.newMarkers[startPositionNew] == DifferenceMarker.CHANGED)) {
+                if (DiffAlgorithm.this.newMarkers[startPositionNew] == DifferenceMarker.EQUAL) {
                     ++equalPositionNew;
                 }
                 ++startPositionNew;
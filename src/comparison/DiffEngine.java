@@ -0,0 +1,29 @@
+package comparison;
+
+/**
+ * Engines finding equal lines of two texts.
+ *
+ * @see DiffPlan
+ */
+public enum DiffEngine {
+    /**
+     * Full LCS table. Exact, takes O(NM) time and memory, so is used only for small texts.
+     */
+    LCS_TABLE,
+    /**
+     * Linear space Myers algorithm. Exact, takes O((N + M) D) time and O(N + M) memory,
+     * where D is the amount of inserted and deleted lines.
+     */
+    MYERS,
+    /**
+     * Matching of lines unique in both texts, recursively. Coarse: may leave some equal lines
+     * unmatched, but is fast for texts of any size however different they are.
+     */
+    ANCHORED,
+    /**
+     * Matching of runs of lines rarest in the old text, recursively, like histogram diff of git.
+     * Coarse, but aligns texts with many repeated lines, like lockfiles or SQL dumps, around their
+     * distinctive lines instead of braces and separators.
+     */
+    HISTOGRAM
+}
@@ -0,0 +1,17 @@
+package comparison;
+
+import java.io.IOException;
+
+/**
+ * Receives every new difference found by {@link DiffWatcher}.
+ */
+public interface DiffListener {
+    /**
+     * Handles the difference. Lines and markers must not be modified and may be changed
+     * by the next comparison, so they should not be kept after the call.
+     *
+     * @throws IOException If the difference cannot be written.
+     */
+    void onDiff(LineStore oldText, DifferenceMarker[] oldMarkers, LineStore newText, DifferenceMarker[] newMarkers)
+            throws IOException;
+}
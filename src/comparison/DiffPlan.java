@@ -0,0 +1,180 @@
+package comparison;
+
+import java.util.Locale;
+
+/**
+ * <p>Describes how two texts are compared: the chosen engine, the facts it was chosen
+ * by and the estimated cost of the comparison.</p>
+ * <p>Only lines between the common prefix and the common suffix of the texts are compared
+ * by the engine, the others are equal. The prefix is not skipped by {@link DiffEngine#LCS_TABLE}
+ * to keep its results the same as they always were.</p>
+ *
+ * @see DiffPlanner
+ */
+public final class DiffPlan {
+    /**
+     * Chosen engine.
+     */
+    private final DiffEngine engine;
+    /**
+     * Amount of lines of an old text.
+     */
+    private final int oldLines;
+    /**
+     * Amount of lines of a new text.
+     */
+    private final int newLines;
+    /**
+     * Amount of equal lines at the start of both texts.
+     */
+    private final int commonPrefix;
+    /**
+     * Amount of equal lines at the end of both texts.
+     */
+    private final int commonSuffix;
+    /**
+     * Estimated share of compared lines of the new text present in the old one in the same order.
+     */
+    private final double overlap;
+    /**
+     * Length of the longest line among sampled ones.
+     */
+    private final int maxLineLength;
+    /**
+     * Strategy expected to be used for the longest lines.
+     */
+    private final SimilarityStrategy similarity;
+    /**
+     * Amount of lines after an unmatched old line searched for its changed version.
+     */
+    private final int matchWindow;
+    /**
+     * Free heap memory in bytes at the moment of planning.
+     */
+    private final long availableHeap;
+    /**
+     * Estimated amount of elementary steps of the engine.
+     */
+    private final long estimatedCost;
+    /**
+     * Estimated memory used by the engine in bytes.
+     */
+    private final long estimatedMemory;
+
+    /**
+     * Creates a new plan. Plans are created by {@link DiffPlanner}.
+     */
+    DiffPlan(DiffEngine engine, int oldLines, int newLines, int commonPrefix, int commonSuffix, double overlap,
+             int maxLineLength, SimilarityStrategy similarity, int matchWindow, long availableHeap,
+             long estimatedCost, long estimatedMemory) {
+        this.engine = engine;
+        this.oldLines = oldLines;
+        this.newLines = newLines;
+        this.commonPrefix = commonPrefix;
+        this.commonSuffix = commonSuffix;
+        this.overlap = overlap;
+        this.maxLineLength = maxLineLength;
+        this.similarity = similarity;
+        this.matchWindow = matchWindow;
+        this.availableHeap = availableHeap;
+        this.estimatedCost = estimatedCost;
+        this.estimatedMemory = estimatedMemory;
+    }
+
+    /**
+     * Returns the chosen engine.
+     */
+    public DiffEngine getEngine() {
+        return engine;
+    }
+
+    /**
+     * Returns the amount of lines of the old text.
+     */
+    public int getOldLines() {
+        return oldLines;
+    }
+
+    /**
+     * Returns the amount of lines of the new text.
+     */
+    public int getNewLines() {
+        return newLines;
+    }
+
+    /**
+     * Returns the amount of equal lines at the start of both texts.
+     */
+    public int getCommonPrefix() {
+        return commonPrefix;
+    }
+
+    /**
+     * Returns the amount of equal lines at the end of both texts.
+     */
+    public int getCommonSuffix() {
+        return commonSuffix;
+    }
+
+    /**
+     * Returns the estimated share of compared lines of the new text present in the old one
+     * in the same order, from 0 to 1.
+     */
+    public double getOverlap() {
+        return overlap;
+    }
+
+    /**
+     * Returns the length of the longest line among sampled ones.
+     */
+    public int getMaxLineLength() {
+        return maxLineLength;
+    }
+
+    /**
+     * Returns the strategy expected to be used to compare the longest lines.
+     */
+    public SimilarityStrategy getSimilarity() {
+        return similarity;
+    }
+
+    /**
+     * Returns the amount of lines after an unmatched old line searched for its changed version,
+     * {@link Integer#MAX_VALUE} if the search is not limited.
+     */
+    public int getMatchWindow() {
+        return matchWindow;
+    }
+
+    /**
+     * Returns free heap memory in bytes at the moment of planning.
+     */
+    public long getAvailableHeap() {
+        return availableHeap;
+    }
+
+    /**
+     * Returns the estimated amount of elementary steps of the engine.
+     */
+    public long getEstimatedCost() {
+        return estimatedCost;
+    }
+
+    /**
+     * Returns the estimated memory used by the engine in bytes.
+     */
+    public long getEstimatedMemory() {
+        return estimatedMemory;
+    }
+
+    @Override
+    public String toString() {
+        return "engine: " + engine + ", lines: " + oldLines + "/" + newLines
+                + ", common prefix: " + commonPrefix + ", common suffix: " + commonSuffix
+                + ", overlap: " + String.format(Locale.ROOT, "%.2f", overlap) + ", max line length: " + maxLineLength
+                + ", similarity: " + similarity
+                + (matchWindow == Integer.MAX_VALUE ? "" : ", match window: " + matchWindow)
+                + ", available heap: " + availableHeap / (1024 * 1024) + " MB"
+                + ", estimated cost: " + estimatedCost + ", estimated memory: " + estimatedMemory + " bytes";
+    }
+}
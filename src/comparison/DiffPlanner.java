@@ -0,0 +1,349 @@
+package comparison;
+
+import java.util.Arrays;
+
+/**
+ * <p>Chooses an engine for comparing two texts.</p>
+ * <p>The planner trims the common prefix and suffix of the texts, samples the rest to estimate
+ * which share of new lines is present in the old text in the same order and how long the lines are,
+ * and checks how much heap memory is free. Then it picks the cheapest engine that is exact:</p>
+ * <ul>
+ *     <li>{@link DiffEngine#LCS_TABLE} if the table fits into {@link #TABLE_MAX_CELLS} cells
+ *     and into a half of free heap memory;</li>
+ *     <li>{@link DiffEngine#HISTOGRAM} if at least {@link #REPEATED_SHARE} of sampled new lines occur
+ *     at least {@link #REPEATED_MIN_OCCURRENCES} times in the old text, since exact engines align such texts
+ *     by their repeated lines, like braces, which is both slow and hard to read;</li>
+ *     <li>{@link DiffEngine#MYERS} if its estimated cost is not greater than {@link #MYERS_MAX_COST};</li>
+ *     <li>{@link DiffEngine#ANCHORED} otherwise.</li>
+ * </ul>
+ * <p>With coarse engines the search for changed lines is also limited to {@link #COARSE_MATCH_WINDOW} lines,
+ * because heavily rewritten texts have few equal lines to stop it.</p>
+ * <p>The engine may also be forced for a comparison, see
+ * {@link DiffAlgorithm#DiffAlgorithm(java.util.List, java.util.List, LineSimilarity, DiffEngine)},
+ * or for all comparisons by default with the {@link #ENGINE_PROPERTY} system property.</p>
+ */
+public final class DiffPlanner {
+    /**
+     * <p>Name of the system property selecting the default engine, read once.</p>
+     * <p>Supported values are {@code auto} (default), {@code table}, {@code myers}, {@code anchored}
+     * and {@code histogram}. Forced {@code table} is ignored if the table cannot be allocated: it has more
+     * cells than an array can hold or takes more memory than is free. The engine is then chosen as usual.</p>
+     */
+    public static final String ENGINE_PROPERTY = "comparison.engine";
+
+    /**
+     * Maximum amount of cells of an LCS table.
+     */
+    public static final long TABLE_MAX_CELLS = 25_000_000L;
+    /**
+     * Maximum estimated amount of steps of the Myers algorithm.
+     */
+    public static final long MYERS_MAX_COST = 2_000_000_000L;
+    /**
+     * Amount of lines searched for a changed version of an old line when the engine is coarse.
+     */
+    public static final int COARSE_MATCH_WINDOW = 256;
+    /**
+     * Amount of occurrences in the old text starting from which a line is counted as repeated.
+     */
+    public static final int REPEATED_MIN_OCCURRENCES = 8;
+    /**
+     * Share of sampled new lines that are repeated in the old text, starting from which
+     * texts too big for the LCS table are compared by {@link DiffEngine#HISTOGRAM}.
+     */
+    public static final double REPEATED_SHARE = 0.25;
+
+    /**
+     * Maximum amount of lines of each text sampled.
+     */
+    private static final int SAMPLE_SIZE = 4096;
+    /**
+     * Maximum length of an array, some virtual machines reserve a few words of it.
+     */
+    private static final long MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+    /**
+     * Engine set by {@link #ENGINE_PROPERTY}, or null if it should be chosen.
+     */
+    private static final DiffEngine DEFAULT_ENGINE = parseEngine(System.getProperty(ENGINE_PROPERTY, "auto"));
+
+    /**
+     * Private constructor to prevent instance creation.
+     */
+    private DiffPlanner() {
+    }
+
+    /**
+     * Plans the comparison of texts with the passed line ids. Id arrays may be longer than the texts.
+     * The passed engine, if it is not null, overrides {@link #ENGINE_PROPERTY}. Scratch arrays are taken
+     * from the workspace, if it is not null, from slots of engines, which are not used yet.
+     */
+    static DiffPlan plan(int[] oldIds, int[] newIds, LineStore oldLines, LineStore newLines,
+                         LineSimilarity similarity, DiffEngine forced, Workspace workspace) {
+        int n = oldLines.size();
+        int m = newLines.size();
+
+        int prefix = getCommonPrefix(oldIds, n, newIds, m);
+        int suffix = getCommonSuffix(oldIds, n, newIds, m, prefix);
+        int oldMiddle = n - prefix - suffix;
+        int newMiddle = m - prefix - suffix;
+
+        double overlap = estimateOverlap(oldIds, newIds, prefix, n - suffix, prefix, m - suffix, workspace);
+        int maxLineLength = Math.max(sampleMaxLength(oldLines, prefix, n - suffix),
+                sampleMaxLength(newLines, prefix, m - suffix));
+        Runtime runtime = Runtime.getRuntime();
+        long availableHeap = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+
+        // The table does not skip the prefix, see DiffPlan.
+        long tableCells = (long) (n - suffix + 1) * (m - suffix + 1);
+        long tableMemory = tableCells * Integer.BYTES + (long) (n - suffix + 1) * 16;
+
+        long myersCost = estimateMyersCost(oldMiddle, newMiddle, overlap);
+        long myersMemory = 2L * (oldMiddle + newMiddle + 3) * Integer.BYTES;
+
+        long anchoredCost = (long) (oldMiddle + newMiddle)
+                * (64 - Long.numberOfLeadingZeros(oldMiddle + newMiddle + 1));
+        long anchoredMemory = 5L * (n + m) * Integer.BYTES;
+
+        DiffEngine engine = forced != null ? forced : DEFAULT_ENGINE;
+        if (engine == DiffEngine.LCS_TABLE && (tableCells > MAX_ARRAY_LENGTH || tableMemory > availableHeap)) {
+            engine = null;
+        }
+        if (engine == null) {
+            if (tableCells <= TABLE_MAX_CELLS && tableMemory <= availableHeap / 2) {
+                engine = DiffEngine.LCS_TABLE;
+            } else if (estimateRepeatedShare(oldIds, newIds, prefix, n - suffix, prefix, m - suffix, workspace)
+                    >= REPEATED_SHARE) {
+                engine = DiffEngine.HISTOGRAM;
+            } else if (myersCost <= MYERS_MAX_COST) {
+                engine = DiffEngine.MYERS;
+            } else {
+                engine = DiffEngine.ANCHORED;
+            }
+        }
+
+        long cost;
+        long memory;
+        switch (engine) {
+            case LCS_TABLE:
+                cost = tableCells;
+                memory = tableMemory;
+                break;
+            case MYERS:
+                cost = myersCost;
+                memory = myersMemory;
+                break;
+            default:
+                // Coarse engines take about the same time and memory.
+                cost = anchoredCost;
+                memory = anchoredMemory;
+                break;
+        }
+
+        boolean coarse = engine == DiffEngine.ANCHORED || engine == DiffEngine.HISTOGRAM;
+        int matchWindow = coarse ? COARSE_MATCH_WINDOW : Integer.MAX_VALUE;
+        return new DiffPlan(engine, n, m, prefix, suffix, overlap, maxLineLength,
+                similarity.getStrategy(maxLineLength), matchWindow, availableHeap, cost, memory);
+    }
+
+    /**
+     * Chooses an engine for comparing tokens of two lines: {@link DiffEngine#MYERS} if its estimated cost
+     * is not greater than {@link #MYERS_MAX_COST}, {@link DiffEngine#ANCHORED} otherwise, unless a coarse engine
+     * is forced. The LCS table is never used, since lines of a few tokens are compared as fast by the other engines.
+     */
+    static DiffEngine chooseTokenEngine(int[] oldIds, int[] newIds) {
+        DiffEngine engine = DEFAULT_ENGINE;
+        if (engine == DiffEngine.MYERS || engine == DiffEngine.ANCHORED || engine == DiffEngine.HISTOGRAM) {
+            return engine;
+        }
+
+        int prefix = getCommonPrefix(oldIds, oldIds.length, newIds, newIds.length);
+        int suffix = getCommonSuffix(oldIds, oldIds.length, newIds, newIds.length, prefix);
+        double overlap = estimateOverlap(oldIds, newIds, prefix, oldIds.length - suffix,
+                prefix, newIds.length - suffix, null);
+        long cost = estimateMyersCost(oldIds.length - prefix - suffix, newIds.length - prefix - suffix, overlap);
+        return cost <= MYERS_MAX_COST ? DiffEngine.MYERS : DiffEngine.ANCHORED;
+    }
+
+    /**
+     * Returns the amount of equal ids at the start of the first n old and m new ids.
+     */
+    private static int getCommonPrefix(int[] oldIds, int n, int[] newIds, int m) {
+        int prefix = 0;
+        while (prefix < n && prefix < m && oldIds[prefix] == newIds[prefix]) {
+            ++prefix;
+        }
+        return prefix;
+    }
+
+    /**
+     * Returns the amount of equal ids at the end of the first n old and m new ids,
+     * not overlapping the common prefix.
+     */
+    private static int getCommonSuffix(int[] oldIds, int n, int[] newIds, int m, int prefix) {
+        int suffix = 0;
+        while (suffix < n - prefix && suffix < m - prefix && oldIds[n - 1 - suffix] == newIds[m - 1 - suffix]) {
+            ++suffix;
+        }
+        return suffix;
+    }
+
+    /**
+     * Estimates the amount of steps of the Myers algorithm by the estimated share of new lines
+     * in the longest common subsequence: D squared steps between diagonals and about N + M steps
+     * along them at every level of splitting, where D is the amount of inserted and deleted lines.
+     */
+    private static long estimateMyersCost(int oldMiddle, int newMiddle, double overlap) {
+        long common = Math.min((long) Math.ceil(overlap * newMiddle), oldMiddle);
+        long editLength = oldMiddle + newMiddle - 2 * common;
+        long levels = 64 - Long.numberOfLeadingZeros(editLength + 1);
+        return (oldMiddle + newMiddle) * levels + editLength * editLength;
+    }
+
+    /**
+     * Returns the engine named by a value of {@link #ENGINE_PROPERTY}, or null if it should be chosen.
+     */
+    private static DiffEngine parseEngine(String name) {
+        switch (name) {
+            case "table":
+                return DiffEngine.LCS_TABLE;
+            case "myers":
+                return DiffEngine.MYERS;
+            case "anchored":
+                return DiffEngine.ANCHORED;
+            case "histogram":
+                return DiffEngine.HISTOGRAM;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * <p>Estimates the share of lines of the new range that are in the longest common subsequence.</p>
+     * <p>Lines of the new range are sampled, and every sampled line present in the old range is mapped
+     * to its occurrence there closest to the proportional position. Lines going in the same order in both
+     * texts form an increasing sequence of positions, so the share is estimated by the longest increasing
+     * subsequence of positions. This tells a shuffled text from a slightly edited one, though both consist
+     * of the same lines.</p>
+     */
+    private static double estimateOverlap(int[] oldIds, int[] newIds, int oldFrom, int oldTo,
+                                          int newFrom, int newTo, Workspace workspace) {
+        if (newFrom == newTo) {
+            return 1;
+        }
+
+        // Occurrences of every id in the old range, grouped by id: ids[first[id]..first[id + 1]).
+        int maxId = -1;
+        for (int i = oldFrom; i < oldTo; i++) {
+            maxId = Math.max(maxId, oldIds[i]);
+        }
+        int[] first = getInts(workspace, Workspace.OLD_COUNTS, maxId + 2);
+        Arrays.fill(first, 0, maxId + 2, 0);
+        for (int i = oldFrom; i < oldTo; i++) {
+            if (oldIds[i] >= 0) {
+                ++first[oldIds[i] + 1];
+            }
+        }
+        for (int id = 0; id <= maxId; id++) {
+            first[id + 1] += first[id];
+        }
+        int[] occurrences = getInts(workspace, Workspace.POSITIONS, first[maxId + 1]);
+        int[] filled = getInts(workspace, Workspace.NEW_COUNTS, maxId + 1);
+        System.arraycopy(first, 0, filled, 0, maxId + 1);
+        for (int i = oldFrom; i < oldTo; i++) {
+            if (oldIds[i] >= 0) {
+                occurrences[filled[oldIds[i]]++] = i;
+            }
+        }
+
+        double scale = (double) (oldTo - oldFrom) / (newTo - newFrom);
+        int step = Math.max(1, (newTo - newFrom) / SAMPLE_SIZE);
+        int samples = (newTo - newFrom + step - 1) / step;
+        int[] sample = getInts(workspace, Workspace.CHAIN, samples);
+        int sampled = 0;
+        int found = 0;
+        for (int j = newFrom; j < newTo; j += step) {
+            ++sampled;
+            int id = newIds[j];
+            if (id < 0 || id > maxId || first[id] == first[id + 1]) {
+                continue;
+            }
+            int expected = oldFrom + (int) ((j - newFrom) * scale);
+            sample[found++] = findClosest(occurrences, first[id], first[id + 1], expected);
+        }
+        int sequence = Utils.getLongestIncreasingSubsequence(sample, found,
+                getInts(workspace, Workspace.SEQUENCE, found), getInts(workspace, Workspace.LINKS, found));
+        return (double) sequence / sampled;
+    }
+
+    /**
+     * Estimates the share of lines of the new range occurring at least {@link #REPEATED_MIN_OCCURRENCES} times
+     * in the old range by a sample.
+     */
+    private static double estimateRepeatedShare(int[] oldIds, int[] newIds, int oldFrom, int oldTo,
+                                                int newFrom, int newTo, Workspace workspace) {
+        if (newFrom == newTo) {
+            return 0;
+        }
+
+        int maxId = -1;
+        for (int i = oldFrom; i < oldTo; i++) {
+            maxId = Math.max(maxId, oldIds[i]);
+        }
+        int[] counts = getInts(workspace, Workspace.OLD_COUNTS, maxId + 1);
+        Arrays.fill(counts, 0, maxId + 1, 0);
+        for (int i = oldFrom; i < oldTo; i++) {
+            if (oldIds[i] >= 0) {
+                ++counts[oldIds[i]];
+            }
+        }
+
+        int step = Math.max(1, (newTo - newFrom) / SAMPLE_SIZE);
+        int sampled = 0;
+        int repeated = 0;
+        for (int j = newFrom; j < newTo; j += step) {
+            ++sampled;
+            int id = newIds[j];
+            if (id >= 0 && id <= maxId && counts[id] >= REPEATED_MIN_OCCURRENCES) {
+                ++repeated;
+            }
+        }
+        return (double) repeated / sampled;
+    }
+
+    /**
+     * Returns an array of at least the passed length from the slot of the workspace, or a new one if it is null.
+     */
+    private static int[] getInts(Workspace workspace, int slot, int length) {
+        return workspace == null ? new int[length] : workspace.getInts(slot, length);
+    }
+
+    /**
+     * Finds the value closest to the passed one in the sorted range [from, to) of the array.
+     */
+    private static int findClosest(int[] values, int from, int to, int value) {
+        int index = Arrays.binarySearch(values, from, to, value);
+        if (index >= 0) {
+            return values[index];
+        }
+        int insertion = -index - 1;
+        if (insertion == from) {
+            return values[from];
+        }
+        if (insertion == to) {
+            return values[to - 1];
+        }
+        return value - values[insertion - 1] <= values[insertion] - value ? values[insertion - 1] : values[insertion];
+    }
+
+    /**
+     * Finds the length of the longest line among evenly sampled lines of the range.
+     */
+    private static int sampleMaxLength(LineStore lines, int from, int to) {
+        int step = Math.max(1, (to - from) / SAMPLE_SIZE);
+        int max = 0;
+        for (int i = from; i < to; i += step) {
+            max = Math.max(max, lines.getLine(i).length());
+        }
+        return max;
+    }
+}
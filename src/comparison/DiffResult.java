@@ -0,0 +1,102 @@
+package comparison;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * <p>Difference between two texts found by {@link TextDiffer}.</p>
+ * <p>Instances are immutable, so they may be shared between threads.</p>
+ */
+public final class DiffResult {
+    /**
+     * Changes occurred to the lines of an old text.
+     */
+    private final DifferenceMarker[] oldMarkers;
+    /**
+     * Changes occurred to the lines of a new text.
+     */
+    private final DifferenceMarker[] newMarkers;
+    /**
+     * Plan the difference was found by.
+     */
+    private final DiffPlan plan;
+    /**
+     * Strategies used to decide which lines were changed.
+     */
+    private final Set<SimilarityStrategy> usedStrategies;
+
+    /**
+     * Creates a new result taking ownership of the marker arrays.
+     */
+    DiffResult(DifferenceMarker[] oldMarkers, DifferenceMarker[] newMarkers, DiffPlan plan,
+               Set<SimilarityStrategy> usedStrategies) {
+        this.oldMarkers = oldMarkers;
+        this.newMarkers = newMarkers;
+        this.plan = plan;
+        this.usedStrategies = usedStrategies.isEmpty()
+                ? Collections.emptySet()
+                : Collections.unmodifiableSet(EnumSet.copyOf(usedStrategies));
+    }
+
+    /**
+     * Returns the amount of lines of the old text.
+     */
+    public int getOldSize() {
+        return oldMarkers.length;
+    }
+
+    /**
+     * Returns the amount of lines of the new text.
+     */
+    public int getNewSize() {
+        return newMarkers.length;
+    }
+
+    /**
+     * Returns the marker of the line of the old text.
+     *
+     * @throws IndexOutOfBoundsException If there is no line with the passed index.
+     */
+    public DifferenceMarker getOldMarker(int index) {
+        return oldMarkers[index];
+    }
+
+    /**
+     * Returns the marker of the line of the new text.
+     *
+     * @throws IndexOutOfBoundsException If there is no line with the passed index.
+     */
+    public DifferenceMarker getNewMarker(int index) {
+        return newMarkers[index];
+    }
+
+    /**
+     * Returns copies of markers of lines of the old and the new text, in the form
+     * returned by {@link DiffAlgorithm#getMarkers()}.
+     */
+    public DifferenceMarker[][] getMarkers() {
+        return new DifferenceMarker[][]{oldMarkers.clone(), newMarkers.clone()};
+    }
+
+    /**
+     * Counts lines by their markers.
+     */
+    public DiffSummary getSummary() {
+        return DiffSummary.of(new DifferenceMarker[][]{oldMarkers, newMarkers});
+    }
+
+    /**
+     * Returns the plan the difference was found by.
+     */
+    public DiffPlan getPlan() {
+        return plan;
+    }
+
+    /**
+     * Returns strategies used to decide which lines were changed.
+     */
+    public Set<SimilarityStrategy> getUsedStrategies() {
+        return usedStrategies;
+    }
+}
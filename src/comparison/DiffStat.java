@@ -0,0 +1,267 @@
+package comparison;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+
+/**
+ * <p>Counts differences of texts from two files without building a report. It is done in tiers,
+ * each of them only if the previous one has not answered:</p>
+ * <ol>
+ *     <li>files with identical bytes are identical, which is checked comparing mapped files in bulk;</li>
+ *     <li>EQUAL lines are found by the engine chosen by {@link DiffPlanner}, and the other lines are counted
+ *     as inserted or deleted. Lines are not paired, so it takes a fraction of a full comparison;</li>
+ *     <li>optionally, the amount of CHANGED pairs is estimated by checking a sample of lines that
+ *     could be paired: lines at the same places between the same EQUAL lines of both texts.</li>
+ * </ol>
+ * <p>No tier creates an object per line: lines are kept in {@link LineArena}s, and only sampled lines
+ * become strings. Amounts of EQUAL lines are the same as in a full comparison, as are the sums of
+ * inserted and changed lines and of deleted and changed lines.</p>
+ */
+public final class DiffStat {
+    /**
+     * Amount of pairs of lines checked to estimate the amount of CHANGED pairs.
+     */
+    private static final int CHANGED_SAMPLE_SIZE = 1024;
+    /**
+     * Amount of bytes of a file mapped at once.
+     */
+    private static final long MAP_CHUNK = 1L << 28;
+
+    /**
+     * Flag shows if the files have identical bytes.
+     */
+    private final boolean identical;
+    /**
+     * Amount of lines present in both texts, or -1 if lines were not counted.
+     */
+    private final int equal;
+    /**
+     * Amount of lines of the new text absent in the old one and not counted as changed.
+     */
+    private final int inserted;
+    /**
+     * Amount of lines of the old text absent in the new one and not counted as changed.
+     */
+    private final int deleted;
+    /**
+     * Estimated amount of pairs of changed lines, or -1 if it was not estimated.
+     */
+    private final int changed;
+    /**
+     * Plan the texts were compared by, or null if lines were not compared.
+     */
+    private final DiffPlan plan;
+
+    private DiffStat(boolean identical, int equal, int inserted, int deleted, int changed, DiffPlan plan) {
+        this.identical = identical;
+        this.equal = equal;
+        this.inserted = inserted;
+        this.deleted = deleted;
+        this.changed = changed;
+        this.plan = plan;
+    }
+
+    /**
+     * Counts differences of texts from the files. Like a full comparison, ignores blank lines and trims the others.
+     *
+     * @param pathToOld       Path to the file with old text.
+     * @param pathToNew       Path to the file with new text.
+     * @param estimateChanged True, if the amount of CHANGED pairs should be estimated.
+     * @throws NullPointerException  If any of the passed paths is null.
+     * @throws FileNotFoundException If file at any of the passed paths does not exist.
+     * @throws IOException           If I/O errors occurs while reading the files.
+     */
+    public static DiffStat of(Path pathToOld, Path pathToNew, boolean estimateChanged) throws IOException {
+        Objects.requireNonNull(pathToOld, "Path to the input file cannot be null. Path to the old file was null.");
+        Objects.requireNonNull(pathToNew, "Path to the input file cannot be null. Path to the new file was null.");
+
+        if (!Files.exists(pathToOld)) {
+            throw new FileNotFoundException("File " + pathToOld + " does not exist.");
+        }
+        if (!Files.exists(pathToNew)) {
+            throw new FileNotFoundException("File " + pathToNew + " does not exist.");
+        }
+
+        if (haveSameBytes(pathToOld, pathToNew)) {
+            return new DiffStat(true, -1, 0, 0, estimateChanged ? 0 : -1, null);
+        }
+
+        var arenas = InputPipeline.loadBoth(pathToOld, pathToNew, LineArena::read);
+        Workspace workspace = Workspace.get();
+        try (LineArena oldText = arenas.get(0); LineArena newText = arenas.get(1)) {
+            LineSimilarity similarity = new LineSimilarity();
+            DiffAlgorithm algorithm = new DiffAlgorithm(oldText, newText, similarity, null, workspace);
+            DifferenceMarker[][] markers = algorithm.getEqualMarkers();
+
+            int equal = 0;
+            for (DifferenceMarker marker : markers[0]) {
+                if (marker == DifferenceMarker.EQUAL) {
+                    ++equal;
+                }
+            }
+            int changed = estimateChanged ? estimateChanged(oldText, markers[0], newText, markers[1], similarity) : 0;
+
+            return new DiffStat(false, equal, newText.size() - equal - changed, oldText.size() - equal - changed,
+                    estimateChanged ? changed : -1, algorithm.getPlan());
+        } finally {
+            workspace.release();
+        }
+    }
+
+    /**
+     * Shows if the files have identical bytes, comparing them chunk by chunk.
+     */
+    private static boolean haveSameBytes(Path pathToOld, Path pathToNew) throws IOException {
+        if (Files.isSameFile(pathToOld, pathToNew)) {
+            return true;
+        }
+
+        try (FileChannel oldChannel = FileChannel.open(pathToOld, StandardOpenOption.READ);
+             FileChannel newChannel = FileChannel.open(pathToNew, StandardOpenOption.READ)) {
+            long size = oldChannel.size();
+            if (size != newChannel.size()) {
+                return false;
+            }
+
+            for (long position = 0; position < size; position += MAP_CHUNK) {
+                long length = Math.min(MAP_CHUNK, size - position);
+                MappedByteBuffer oldBytes = oldChannel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                MappedByteBuffer newBytes = newChannel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                if (oldBytes.mismatch(newBytes) >= 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * <p>Estimates the amount of CHANGED pairs among lines that are not EQUAL.</p>
+     * <p>Lines between the same EQUAL lines of both texts are paired by their places there, like
+     * the k-th deleted line with the k-th inserted one, and a sample of evenly spread pairs is checked
+     * for similarity. The share of similar pairs in the sample is taken for the share of all of them.</p>
+     */
+    private static int estimateChanged(LineStore oldText, DifferenceMarker[] oldMarkers,
+                                       LineStore newText, DifferenceMarker[] newMarkers, LineSimilarity similarity) {
+        long[] candidates = new long[1];
+        forEachCandidate(oldMarkers, newMarkers, (i, j) -> ++candidates[0]);
+        if (candidates[0] == 0) {
+            return 0;
+        }
+
+        long stride = Math.max(1, candidates[0] / CHANGED_SAMPLE_SIZE);
+        // Index of the current pair, checked and similar pairs.
+        long[] counts = new long[3];
+        forEachCandidate(oldMarkers, newMarkers, (i, j) -> {
+            if (counts[0]++ % stride != 0) {
+                return;
+            }
+            ++counts[1];
+            if (similarity.areSimilar(oldText.getLine(i), newText.getLine(j))) {
+                ++counts[2];
+            }
+        });
+        return (int) Math.round((double) candidates[0] * counts[2] / counts[1]);
+    }
+
+    /**
+     * Passes to the visitor indices of lines paired by their places between the same EQUAL lines.
+     */
+    private static void forEachCandidate(DifferenceMarker[] oldMarkers, DifferenceMarker[] newMarkers,
+                                         PairVisitor visitor) {
+        int i = 0;
+        int j = 0;
+        while (i < oldMarkers.length && j < newMarkers.length) {
+            int oldFrom = i;
+            while (i < oldMarkers.length && oldMarkers[i] != DifferenceMarker.EQUAL) {
+                ++i;
+            }
+            int newFrom = j;
+            while (j < newMarkers.length && newMarkers[j] != DifferenceMarker.EQUAL) {
+                ++j;
+            }
+
+            int pairs = Math.min(i - oldFrom, j - newFrom);
+            for (int k = 0; k < pairs; k++) {
+                visitor.visit(oldFrom + k, newFrom + k);
+            }
+            // EQUAL lines go in the same order in both texts.
+            ++i;
+            ++j;
+        }
+    }
+
+    /**
+     * Shows if the files have identical bytes. Then only the amounts of differences are known, which are 0.
+     */
+    public boolean isIdentical() {
+        return identical;
+    }
+
+    /**
+     * Shows if the texts have any differences.
+     */
+    public boolean hasDifferences() {
+        return inserted > 0 || deleted > 0 || changed > 0;
+    }
+
+    /**
+     * Returns the amount of lines present in both texts, or -1 if the files have identical bytes.
+     */
+    public int getEqual() {
+        return equal;
+    }
+
+    /**
+     * Returns the amount of lines of the new text absent in the old one, except for estimated changed lines.
+     */
+    public int getInserted() {
+        return inserted;
+    }
+
+    /**
+     * Returns the amount of lines of the old text absent in the new one, except for estimated changed lines.
+     */
+    public int getDeleted() {
+        return deleted;
+    }
+
+    /**
+     * Returns the estimated amount of pairs of changed lines, or -1 if it was not estimated.
+     */
+    public int getChanged() {
+        return changed;
+    }
+
+    /**
+     * Returns the plan the texts were compared by, or null if the files have identical bytes.
+     *
+     * @see DiffPlanner
+     */
+    public DiffPlan getPlan() {
+        return plan;
+    }
+
+    @Override
+    public String toString() {
+        if (identical) {
+            return "identical";
+        }
+        return "equal: " + equal + ", inserted: " + inserted + ", deleted: " + deleted
+                + (changed < 0 ? "" : ", changed: ~" + changed);
+    }
+
+
+    /**
+     * Receives indices of a pair of lines.
+     */
+    private interface PairVisitor {
+        void visit(int oldIndex, int newIndex);
+    }
+}
@@ -0,0 +1,106 @@
+package comparison;
+
+import java.util.Objects;
+
+/**
+ * Describes how many lines of two texts were found equal, inserted, deleted or changed.
+ */
+public final class DiffSummary {
+    /**
+     * Amount of lines present in both texts.
+     */
+    private final int equal;
+    /**
+     * Amount of lines of a new text absent in an old one.
+     */
+    private final int inserted;
+    /**
+     * Amount of lines of an old text absent in a new one.
+     */
+    private final int deleted;
+    /**
+     * Amount of pairs of changed lines.
+     */
+    private final int changed;
+
+    /**
+     * Creates a new summary with passed amounts of lines.
+     */
+    public DiffSummary(int equal, int inserted, int deleted, int changed) {
+        this.equal = equal;
+        this.inserted = inserted;
+        this.deleted = deleted;
+        this.changed = changed;
+    }
+
+    /**
+     * Counts markers of lines of an old and a new text.
+     *
+     * @param markers Array of two arrays with markers of lines of an old and a new text respectively.
+     * @throws NullPointerException If markers are null.
+     */
+    public static DiffSummary of(DifferenceMarker[][] markers) {
+        Objects.requireNonNull(markers, "Markers cannot be null.");
+
+        int equal = 0;
+        int deleted = 0;
+        int changed = 0;
+        for (DifferenceMarker marker : markers[0]) {
+            if (marker == DifferenceMarker.EQUAL) {
+                ++equal;
+            } else if (marker == DifferenceMarker.DELETED) {
+                ++deleted;
+            } else if (marker == DifferenceMarker.CHANGED) {
+                ++changed;
+            }
+        }
+
+        int inserted = 0;
+        for (DifferenceMarker marker : markers[1]) {
+            if (marker == DifferenceMarker.INSERTED) {
+                ++inserted;
+            }
+        }
+        return new DiffSummary(equal, inserted, deleted, changed);
+    }
+
+    /**
+     * Returns the amount of lines present in both texts.
+     */
+    public int getEqual() {
+        return equal;
+    }
+
+    /**
+     * Returns the amount of lines of a new text absent in an old one.
+     */
+    public int getInserted() {
+        return inserted;
+    }
+
+    /**
+     * Returns the amount of lines of an old text absent in a new one.
+     */
+    public int getDeleted() {
+        return deleted;
+    }
+
+    /**
+     * Returns the amount of pairs of changed lines.
+     */
+    public int getChanged() {
+        return changed;
+    }
+
+    /**
+     * Shows if the texts have any differences.
+     */
+    public boolean hasDifferences() {
+        return inserted > 0 || deleted > 0 || changed > 0;
+    }
+
+    @Override
+    public String toString() {
+        return "equal: " + equal + ", inserted: " + inserted + ", deleted: " + deleted + ", changed: " + changed;
+    }
+}
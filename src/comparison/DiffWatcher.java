@@ -0,0 +1,254 @@
+package comparison;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Compares texts from two files again every time any of them changes.</p>
+ * <p>Lines of both texts and their ids are kept in memory between comparisons. When a file changes,
+ * only it is read again, and its lines are interned with the same interner, so the other text keeps
+ * its lines and ids, and lines that have not changed get their old ids back. Changes are noticed with
+ * a {@link WatchService}, and bursts of events, like an editor saving a file in several steps,
+ * cause a single comparison once the files have been quiet for a while.</p>
+ */
+public final class DiffWatcher {
+    /**
+     * Name of the system property setting the time in milliseconds files must be quiet for
+     * before they are compared again.
+     */
+    public static final String DEBOUNCE_PROPERTY = "comparison.watch.debounceMillis";
+    /**
+     * Default time in milliseconds files must be quiet for before they are compared again.
+     */
+    public static final long DEFAULT_DEBOUNCE = 200;
+
+    /**
+     * Amount of old versions of the files the interner may keep lines of. Once there are more,
+     * the interner is rebuilt, so that memory is not taken by versions nobody needs.
+     */
+    private static final int MAX_STALE_VERSIONS = 2;
+
+    /**
+     * Paths to the old and the new file.
+     */
+    private final Path[] paths;
+    /**
+     * Decides which lines can be considered changed.
+     */
+    private final LineSimilarity similarity;
+    /**
+     * Receives found differences.
+     */
+    private final DiffListener listener;
+    /**
+     * Time in milliseconds files must be quiet for before they are compared again.
+     */
+    private final long debounce;
+
+    /**
+     * Interner of lines of both texts.
+     */
+    private LineInterner interner = new LineInterner();
+    /**
+     * Amount of versions of the files interned with the interner.
+     */
+    private int internedVersions;
+    /**
+     * Lines of the old and the new text, null until they are read.
+     */
+    private final List<List<String>> lines = Arrays.asList(null, null);
+    /**
+     * Ids of lines of the old and the new text.
+     */
+    private final int[][] ids = new int[2][];
+    /**
+     * Times the files were modified at when they were read.
+     */
+    private final FileTime[] modified = new FileTime[2];
+    /**
+     * Sizes of the files when they were read.
+     */
+    private final long[] sizes = new long[2];
+
+    /**
+     * Creates a new watcher of texts from files at passed paths. Files are not read until
+     * {@link #compare()} or {@link #watch()} is called.
+     *
+     * @param pathToOld  Path to the file with old text.
+     * @param pathToNew  Path to the file with new text.
+     * @param similarity Decides which lines can be considered changed.
+     * @param listener   Receives found differences.
+     * @throws NullPointerException If any of the arguments is null.
+     */
+    public DiffWatcher(Path pathToOld, Path pathToNew, LineSimilarity similarity, DiffListener listener) {
+        Objects.requireNonNull(pathToOld, "Path to the input file cannot be null. Path to the old file was null.");
+        Objects.requireNonNull(pathToNew, "Path to the input file cannot be null. Path to the new file was null.");
+
+        this.paths = new Path[]{pathToOld.toAbsolutePath().normalize(), pathToNew.toAbsolutePath().normalize()};
+        this.similarity = Objects.requireNonNull(similarity, "Line similarity cannot be null.");
+        this.listener = Objects.requireNonNull(listener, "Listener cannot be null.");
+        this.debounce = Long.getLong(DEBOUNCE_PROPERTY, DEFAULT_DEBOUNCE);
+    }
+
+    /**
+     * Reads the files that have changed since they were read, or have not been read yet,
+     * compares the texts and passes the difference to the listener. Does nothing if no file has changed.
+     *
+     * @return True, if the texts were compared.
+     * @throws FileNotFoundException If file at any of the paths does not exist.
+     * @throws IOException           If I/O errors occurs while reading the files or in the listener.
+     */
+    public boolean compare() throws IOException {
+        return compare(new boolean[2]);
+    }
+
+    /**
+     * Reads the files that have changed since they were read, have not been read yet or are passed
+     * as touched, compares the texts and passes the difference to the listener.
+     *
+     * @param touched Flags of the old and the new file showing if it must be read again.
+     * @return True, if the texts were compared.
+     */
+    private boolean compare(boolean[] touched) throws IOException {
+        BasicFileAttributes[] attributes = {readAttributes(0), readAttributes(1)};
+        boolean[] changed = {touched[0] || hasChanged(0, attributes[0]), touched[1] || hasChanged(1, attributes[1])};
+        if (!changed[0] && !changed[1]) {
+            return false;
+        }
+
+        if (changed[0] && changed[1]) {
+            var texts = InputPipeline.loadBoth(paths[0], paths[1], Utils::readLines);
+            lines.set(0, texts.get(0));
+            lines.set(1, texts.get(1));
+        } else {
+            int text = changed[0] ? 0 : 1;
+            lines.set(text, Utils.readLines(paths[text]));
+        }
+        // The state is remembered only once the files are read, so a failed read is retried.
+        for (int text = 0; text < 2; text++) {
+            modified[text] = attributes[text].lastModifiedTime();
+            sizes[text] = attributes[text].size();
+        }
+
+        if (internedVersions + (changed[0] ? 1 : 0) + (changed[1] ? 1 : 0) > 2 + MAX_STALE_VERSIONS) {
+            // Both texts are interned anew, the interner forgets old versions.
+            interner = new LineInterner();
+            internedVersions = 0;
+            changed[0] = true;
+            changed[1] = true;
+        }
+        for (int text = 0; text < 2; text++) {
+            if (changed[text]) {
+                ids[text] = interner.intern(getText(text));
+                ++internedVersions;
+            }
+        }
+
+        LineStore oldText = getText(0);
+        LineStore newText = getText(1);
+        DifferenceMarker[][] markers = new DiffAlgorithm(oldText, newText, ids[0], ids[1], similarity.newInstance())
+                .getMarkers();
+        listener.onDiff(oldText, markers[0], newText, markers[1]);
+        return true;
+    }
+
+    /**
+     * <p>Compares the texts, then compares them again every time any of the files changes,
+     * until the thread is interrupted.</p>
+     * <p>A file is read again after every event about it, even if its time of modification and size
+     * are the same, since an edit may keep both on file systems with coarse timestamps.
+     * A file that is missing, like while an editor replaces it, is compared once it appears.</p>
+     *
+     * @throws FileNotFoundException If file at any of the paths does not exist when the watching starts.
+     * @throws IOException           If I/O errors occurs while reading the files or in the listener.
+     * @throws InterruptedException  When the thread is interrupted.
+     */
+    public void watch() throws IOException, InterruptedException {
+        try (WatchService service = FileSystems.getDefault().newWatchService()) {
+            // Directories are watched, since editors often replace files instead of writing them.
+            for (Path path : paths) {
+                path.getParent().register(service, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY);
+            }
+            compare();
+
+            boolean[] touched = new boolean[2];
+            while (true) {
+                addTouched(service.take(), touched);
+                WatchKey key;
+                while ((key = service.poll(debounce, TimeUnit.MILLISECONDS)) != null) {
+                    addTouched(key, touched);
+                }
+
+                if ((touched[0] || touched[1]) && Files.exists(paths[0]) && Files.exists(paths[1])) {
+                    try {
+                        compare(touched);
+                        touched = new boolean[2];
+                    } catch (FileNotFoundException | NoSuchFileException e) {
+                        // The file was replaced while being read, there will be another event.
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Sets flags of the old and the new file if any of the events of the key concern them, and resets the key.
+     * Lost events may concern any of the files.
+     */
+    private void addTouched(WatchKey key, boolean[] touched) {
+        Path directory = (Path) key.watchable();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                touched[0] = true;
+                touched[1] = true;
+                continue;
+            }
+            Path path = directory.resolve((Path) event.context());
+            touched[0] |= path.equals(paths[0]);
+            touched[1] |= path.equals(paths[1]);
+        }
+        key.reset();
+    }
+
+    /**
+     * Reads attributes of the old (0) or the new (1) file.
+     *
+     * @throws FileNotFoundException If the file does not exist.
+     */
+    private BasicFileAttributes readAttributes(int text) throws IOException {
+        if (!Files.exists(paths[text])) {
+            throw new FileNotFoundException("File " + paths[text] + " does not exist.");
+        }
+        return Files.readAttributes(paths[text], BasicFileAttributes.class);
+    }
+
+    /**
+     * Shows if the file has been modified since it was read, or has not been read yet.
+     */
+    private boolean hasChanged(int text, BasicFileAttributes attributes) {
+        return lines.get(text) == null || !attributes.lastModifiedTime().equals(modified[text])
+                || attributes.size() != sizes[text];
+    }
+
+    /**
+     * Returns lines of the old (0) or the new (1) text.
+     */
+    private LineStore getText(int text) {
+        return new ListLineStore(lines.get(text));
+    }
+}
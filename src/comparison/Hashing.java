@@ -0,0 +1,47 @@
+package comparison;
+
+/**
+ * Hashing helpers shared by content-defined chunking of lines and files.
+ */
+final class Hashing {
+    /**
+     * Random values used by the gear rolling hash: the hash is shifted by one bit and the value
+     * of the next symbol is added, so it depends only on the last 64 symbols.
+     */
+    static final long[] GEAR = new long[256];
+
+    /**
+     * Offset basis of 64-bit FNV-1a hash.
+     */
+    static final long FNV_OFFSET = 0xCBF29CE484222325L;
+    /**
+     * Prime of 64-bit FNV-1a hash.
+     */
+    static final long FNV_PRIME = 0x100000001B3L;
+
+    static {
+        long seed = 0x9E3779B97F4A7C15L;
+        for (int i = 0; i < GEAR.length; i++) {
+            seed += 0x9E3779B97F4A7C15L;
+            GEAR[i] = mix(seed);
+        }
+    }
+
+    /**
+     * Private constructor to prevent instance creation.
+     */
+    private Hashing() {
+    }
+
+    /**
+     * Mixes bits of the passed value (finalizer of MurmurHash3).
+     */
+    static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xFF51AFD7ED558CCDL;
+        value ^= value >>> 33;
+        value *= 0xC4CEB9FE1A85EC53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
@@ -0,0 +1,228 @@
+package comparison;
+
+import java.util.Arrays;
+
+/**
+ * <p>Finds equal lines of texts with many repeated lines, like lockfiles or SQL dumps,
+ * the way histogram diff of git does.</p>
+ * <p>Occurrences of lines in the old range are counted, and among runs of equal lines of both ranges
+ * starting from a line common to them the one whose rarest line occurs the least times in the old range
+ * is matched, the longest one if there are several. Ranges before and after the run are processed
+ * the same way. So rare lines anchor the alignment, and frequent ones like closing braces are matched
+ * only between them. Unlike git, runs are not extended backwards: frequent lines before a run could as well
+ * belong to an inserted block before it, which would be shifted then, like a lockfile entry split in two.</p>
+ * <p>Lines occurring more than {@link #MAX_OCCURRENCES} times in a range are not taken for anchors.
+ * A range where all common lines are such is compared with {@link MyersDiff}, which is given up if it
+ * takes more than {@link DiffPlanner#MYERS_MAX_COST} steps in total: then the rest of their lines
+ * are left unmatched.</p>
+ */
+final class HistogramDiff {
+    /**
+     * Maximum amount of occurrences in the old range of a line taken for an anchor.
+     */
+    static final int MAX_OCCURRENCES = 64;
+
+    /**
+     * Ids of lines of an old text.
+     */
+    private final int[] oldIds;
+    /**
+     * Ids of lines of a new text.
+     */
+    private final int[] newIds;
+    /**
+     * Markers of lines of the old text, EQUAL ones are set.
+     */
+    private final DifferenceMarker[] oldMarkers;
+    /**
+     * Markers of lines of the new text, EQUAL ones are set.
+     */
+    private final DifferenceMarker[] newMarkers;
+
+    /**
+     * Engine comparing ranges without rare enough lines.
+     */
+    private final MyersDiff exact;
+
+    /**
+     * Amount of occurrences of every id in the old range, zero outside of counting.
+     */
+    private final int[] counts;
+    /**
+     * Index of the last occurrence of every id in the old range.
+     */
+    private final int[] lastPositions;
+    /**
+     * Index of the previous occurrence of the line at every index of the old range, or -1 if it is the first one.
+     */
+    private final int[] previousPositions;
+    /**
+     * Ids not less than this are absent in the old text.
+     */
+    private final int idLimit;
+
+    /**
+     * Ranges left to compare.
+     */
+    private final RangeStack ranges;
+    /**
+     * Range being compared: old start, old end, new start, new end.
+     */
+    private final int[] range = new int[4];
+    /**
+     * Run found in the last searched range: start in the old and in the new text and its length.
+     */
+    private final int[] run = new int[3];
+
+    /**
+     * Flag shows if the last searched range has common lines occurring too many times to be anchors.
+     */
+    private boolean hasFrequentLines;
+
+    /**
+     * Creates a new instance comparing passed ids. Negative ids never match any line.
+     */
+    HistogramDiff(int[] oldIds, int[] newIds, DifferenceMarker[] oldMarkers, DifferenceMarker[] newMarkers) {
+        this(oldIds, newIds, oldMarkers, newMarkers, null);
+    }
+
+    /**
+     * Creates a new instance comparing passed ids with scratch arrays taken from the workspace,
+     * if it is not null. Id arrays may be longer than arrays of markers.
+     */
+    HistogramDiff(int[] oldIds, int[] newIds, DifferenceMarker[] oldMarkers, DifferenceMarker[] newMarkers,
+                  Workspace workspace) {
+        this.oldIds = oldIds;
+        this.newIds = newIds;
+        this.oldMarkers = oldMarkers;
+        this.newMarkers = newMarkers;
+        this.exact = new MyersDiff(oldIds, newIds, oldMarkers, newMarkers, workspace);
+        this.exact.setBudget(DiffPlanner.MYERS_MAX_COST);
+        this.ranges = new RangeStack(workspace, Workspace.COARSE_RANGES);
+
+        int maxId = -1;
+        for (int i = 0; i < oldMarkers.length; i++) {
+            maxId = Math.max(maxId, oldIds[i]);
+        }
+        idLimit = maxId + 1;
+        if (workspace == null) {
+            counts = new int[maxId + 1];
+            lastPositions = new int[maxId + 1];
+            previousPositions = new int[oldMarkers.length];
+        } else {
+            counts = workspace.getInts(Workspace.OLD_COUNTS, maxId + 1);
+            lastPositions = workspace.getInts(Workspace.POSITIONS, maxId + 1);
+            previousPositions = workspace.getInts(Workspace.CHAIN, oldMarkers.length);
+            Arrays.fill(counts, 0, maxId + 1, 0);
+        }
+    }
+
+    /**
+     * Marks matched lines of ranges [oldFrom, oldTo) of the old text and [newFrom, newTo) of the new one as EQUAL.
+     */
+    void markEqual(int oldFrom, int oldTo, int newFrom, int newTo) {
+        ranges.clear();
+        ranges.push(oldFrom, oldTo, newFrom, newTo);
+
+        while (!ranges.isEmpty()) {
+            ranges.pop(range);
+            int i = range[0];
+            int iEnd = range[1];
+            int j = range[2];
+            int jEnd = range[3];
+
+            // The common suffix is not trimmed, since it is a run extended backwards.
+            while (i < iEnd && j < jEnd && oldIds[i] >= 0 && oldIds[i] == newIds[j]) {
+                mark(i++, j++);
+            }
+            if (i == iEnd || j == jEnd) {
+                continue;
+            }
+
+            if (!findRarestRun(i, iEnd, j, jEnd)) {
+                if (hasFrequentLines) {
+                    exact.markEqual(i, iEnd, j, jEnd);
+                }
+                continue;
+            }
+
+            for (int k = 0; k < run[2]; k++) {
+                mark(run[0] + k, run[1] + k);
+            }
+            // The range after the run is pushed first, so ranges are processed from the start of the texts.
+            ranges.push(run[0] + run[2], iEnd, run[1] + run[2], jEnd);
+            ranges.push(i, run[0], j, run[1]);
+        }
+    }
+
+    /**
+     * Finds the run of equal lines of both ranges whose rarest line occurs the least times in the old range,
+     * the longest one if there are several. Lines occurring more than {@link #MAX_OCCURRENCES} times are skipped.
+     *
+     * @return False if there is no such run, otherwise the run is put into {@link #run}.
+     */
+    private boolean findRarestRun(int oldFrom, int oldTo, int newFrom, int newTo) {
+        for (int i = oldFrom; i < oldTo; i++) {
+            int id = oldIds[i];
+            if (id >= 0) {
+                previousPositions[i] = counts[id] == 0 ? -1 : lastPositions[id];
+                lastPositions[id] = i;
+                ++counts[id];
+            }
+        }
+
+        hasFrequentLines = false;
+        boolean found = false;
+        int bestCount = MAX_OCCURRENCES + 1;
+        for (int j = newFrom; j < newTo; ) {
+            int id = newIds[j];
+            if (id < 0 || id >= idLimit || counts[id] == 0) {
+                ++j;
+                continue;
+            }
+            if (counts[id] > MAX_OCCURRENCES || counts[id] > bestCount) {
+                hasFrequentLines |= counts[id] > MAX_OCCURRENCES;
+                ++j;
+                continue;
+            }
+
+            // Lines inside found runs are not searched again.
+            int next = j + 1;
+            for (int i = lastPositions[id]; i >= 0; i = previousPositions[i]) {
+                int count = counts[id];
+                int oldEnd = i + 1;
+                int newEnd = j + 1;
+                while (oldEnd < oldTo && newEnd < newTo && oldIds[oldEnd] >= 0 && oldIds[oldEnd] == newIds[newEnd]) {
+                    count = Math.min(count, counts[oldIds[oldEnd]]);
+                    ++oldEnd;
+                    ++newEnd;
+                }
+
+                if (count < bestCount || count == bestCount && oldEnd - i > run[2]) {
+                    run[0] = i;
+                    run[1] = j;
+                    run[2] = oldEnd - i;
+                    bestCount = count;
+                    found = true;
+                }
+                next = Math.max(next, newEnd);
+            }
+            j = next;
+        }
+
+        for (int i = oldFrom; i < oldTo; i++) {
+            if (oldIds[i] >= 0) {
+                counts[oldIds[i]] = 0;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Marks a pair of lines as EQUAL.
+     */
+    private void mark(int i, int j) {
+        oldMarkers[i] = DifferenceMarker.EQUAL;
+        newMarkers[j] = DifferenceMarker.EQUAL;
+    }
+}
@@ -0,0 +1,274 @@
+package comparison;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * <p>Loads two texts at the same time and interns their lines while they are being read.</p>
+ * <p>Each file is read by its own thread, which decodes lines, trims them, skips blank ones
+ * (like {@link Utils#readLines(Path)} does) and computes their hashes, which strings cache.
+ * Lines are passed in batches through a bounded queue to the calling thread, which interns them
+ * as they come. So the comparison can start right after the longer of the files is read,
+ * and memory taken by lines in flight is bounded by the capacity of the queue.</p>
+ */
+final class InputPipeline {
+    /**
+     * Amount of lines in a batch.
+     */
+    static final int BATCH_SIZE = 4096;
+    /**
+     * Amount of batches waiting to be interned.
+     */
+    private static final int QUEUE_CAPACITY = 16;
+
+    /**
+     * Batches read from both files.
+     */
+    private final BlockingQueue<Batch> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+
+    /**
+     * Lines of the old and the new text.
+     */
+    private final List<List<String>> lines = List.of(new ArrayList<>(), new ArrayList<>());
+    /**
+     * Ids of lines of the old and the new text, longer than the texts while they are being read.
+     */
+    private final int[][] ids = {new int[BATCH_SIZE], new int[BATCH_SIZE]};
+
+    /**
+     * Private constructor, texts are loaded with {@link #load(Path, Path)}.
+     */
+    private InputPipeline() {
+    }
+
+    /**
+     * Reads both texts, interning their lines with a single interner.
+     *
+     * @throws IOException If any of the files cannot be read.
+     */
+    static InputPipeline load(Path pathToOld, Path pathToNew) throws IOException {
+        InputPipeline pipeline = new InputPipeline();
+        Thread[] readers = {
+                new Thread(() -> pipeline.read(0, pathToOld), "read-old"),
+                new Thread(() -> pipeline.read(1, pathToNew), "read-new")
+        };
+        for (Thread reader : readers) {
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        try {
+            pipeline.intern();
+        } finally {
+            // Stops the other reader if one of them has failed.
+            for (Thread reader : readers) {
+                reader.interrupt();
+            }
+        }
+        return pipeline;
+    }
+
+    /**
+     * Reads a file into the queue until its end, an error or an interruption.
+     */
+    private void read(int text, Path path) {
+        Batch batch = new Batch(text);
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(Compression.open(path), Charset.defaultCharset()))) {
+            for (String line; (line = reader.readLine()) != null; ) {
+                line = line.trim();
+                if (line.isEmpty()) {
+                    continue;
+                }
+                // The hash is cached by the string, so the interning thread does not compute it.
+                line.hashCode();
+                batch.lines[batch.size++] = line;
+                if (batch.size == BATCH_SIZE) {
+                    queue.put(batch);
+                    batch = new Batch(text);
+                }
+            }
+        } catch (InterruptedException e) {
+            // Loading has failed, no one waits for the end.
+            return;
+        } catch (Throwable e) {
+            // Errors like OutOfMemoryError are passed too, otherwise the interning thread would wait forever.
+            batch.error = e instanceof IOException ? (IOException) e : new IOException("Cannot read " + path + ".", e);
+        }
+
+        batch.last = true;
+        try {
+            queue.put(batch);
+        } catch (InterruptedException e) {
+            // Loading has failed, no one waits for the end.
+        }
+    }
+
+    /**
+     * Interns batches from the queue until both files are read.
+     */
+    private void intern() throws IOException {
+        LineInterner interner = new LineInterner();
+        int[] stores = {interner.addStore(new ListLineStore(lines.get(0))),
+                interner.addStore(new ListLineStore(lines.get(1)))};
+
+        for (int finished = 0; finished < 2; ) {
+            Batch batch;
+            try {
+                batch = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Reading was interrupted.");
+            }
+            if (batch.error != null) {
+                throw batch.error;
+            }
+
+            List<String> text = lines.get(batch.text);
+            int from = text.size();
+            if (from + batch.size > ids[batch.text].length) {
+                ids[batch.text] = Arrays.copyOf(ids[batch.text], Math.max(from + batch.size, 2 * from));
+            }
+            for (int i = 0; i < batch.size; i++) {
+                text.add(batch.lines[i]);
+                ids[batch.text][from + i] = interner.intern(stores[batch.text], from + i);
+            }
+            if (batch.last) {
+                ++finished;
+            }
+        }
+
+        ids[0] = Arrays.copyOf(ids[0], lines.get(0).size());
+        ids[1] = Arrays.copyOf(ids[1], lines.get(1).size());
+    }
+
+    /**
+     * Returns lines of the old text.
+     */
+    LineStore getOldText() {
+        return new ListLineStore(lines.get(0));
+    }
+
+    /**
+     * Returns lines of the new text.
+     */
+    LineStore getNewText() {
+        return new ListLineStore(lines.get(1));
+    }
+
+    /**
+     * Returns ids of lines of the old text.
+     */
+    int[] getOldIds() {
+        return ids[0];
+    }
+
+    /**
+     * Returns ids of lines of the new text.
+     */
+    int[] getNewIds() {
+        return ids[1];
+    }
+
+    /**
+     * Loads two files at the same time: the old one on a new thread, the new one on the calling thread.
+     * If loading of one of them fails, the other one is closed, if it is closeable.
+     *
+     * @return Loaded old and new file.
+     * @throws IOException If any of the files cannot be loaded.
+     */
+    static <T> List<T> loadBoth(Path pathToOld, Path pathToNew, Loader<T> loader) throws IOException {
+        FutureTask<T> oldTask = new FutureTask<>(() -> loader.load(pathToOld));
+        Thread thread = new Thread(oldTask, "load-old");
+        thread.setDaemon(true);
+        thread.start();
+
+        T newValue;
+        try {
+            newValue = loader.load(pathToNew);
+        } catch (IOException | RuntimeException e) {
+            try {
+                closeIfNeeded(oldTask.get());
+            } catch (ExecutionException | InterruptedException ignored) {
+                // The first error is reported.
+            }
+            throw e;
+        }
+
+        try {
+            return List.of(oldTask.get(), newValue);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            closeIfNeeded(newValue);
+            throw new InterruptedIOException("Reading was interrupted.");
+        } catch (ExecutionException e) {
+            closeIfNeeded(newValue);
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Cannot read " + pathToOld + ".", e.getCause());
+        }
+    }
+
+    /**
+     * Closes the value if it is closeable.
+     */
+    private static void closeIfNeeded(Object value) {
+        if (value instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) value).close();
+            } catch (Exception ignored) {
+                // Nothing else can be done with it.
+            }
+        }
+    }
+
+
+    /**
+     * Loads a file.
+     */
+    interface Loader<T> {
+        T load(Path path) throws IOException;
+    }
+
+    /**
+     * Lines of one of the files.
+     */
+    private static class Batch {
+        /**
+         * 0 for the old text, 1 for the new one.
+         */
+        private final int text;
+        /**
+         * Lines, the first size of them are set.
+         */
+        private final String[] lines = new String[BATCH_SIZE];
+        /**
+         * Amount of lines.
+         */
+        private int size;
+        /**
+         * Flag shows if the batch is the last one of its file.
+         */
+        private boolean last;
+        /**
+         * Error occurred while reading the file, or null.
+         */
+        private IOException error;
+
+        private Batch(int text) {
+            this.text = text;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package comparison;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * <p>Finds keys of records kept one per line, for {@link KeyedDiff}.</p>
+ * <p>Fields of a record are separated by a delimiter character. The key is either a field
+ * with the passed index, or the first group of a regular expression found in the line
+ * (the whole match if the expression has no groups).</p>
+ * <p>A field starting with a double quote may contain delimiters up to the closing quote, and doubled
+ * quotes inside it stand for one, like in CSV. The key is such a field without quotes. A record is
+ * kept in one line, so quoted fields cannot contain line breaks.</p>
+ */
+public final class KeyExtractor {
+    /**
+     * Index of the key field, or -1 if the key is found by the pattern.
+     */
+    private final int column;
+    /**
+     * Pattern finding the key, or null if the key is a field.
+     */
+    private final Pattern pattern;
+    /**
+     * Character separating fields of a record.
+     */
+    private final char delimiter;
+
+    /**
+     * Creates a new extractor.
+     */
+    private KeyExtractor(int column, Pattern pattern, char delimiter) {
+        this.column = column;
+        this.pattern = pattern;
+        this.delimiter = delimiter;
+    }
+
+    /**
+     * Creates an extractor taking the field with the passed index as the key.
+     *
+     * @param column    Index of the key field, starting from 0.
+     * @param delimiter Character separating fields, e.g. ',' for CSV or '=' for properties.
+     * @throws IllegalArgumentException If column is negative.
+     */
+    public static KeyExtractor byColumn(int column, char delimiter) {
+        if (column < 0) {
+            throw new IllegalArgumentException("Index of the key column cannot be negative.");
+        }
+        return new KeyExtractor(column, null, delimiter);
+    }
+
+    /**
+     * Creates an extractor taking the first group of the regular expression found in a line as the key.
+     *
+     * @param regex     Regular expression, e.g. {@code "id=(\\d+)"}.
+     * @param delimiter Character separating fields, used to find changed fields.
+     * @throws NullPointerException                   If regex is null.
+     * @throws java.util.regex.PatternSyntaxException If regex is not valid.
+     */
+    public static KeyExtractor byPattern(String regex, char delimiter) {
+        Objects.requireNonNull(regex, "Regular expression cannot be null.");
+        return new KeyExtractor(-1, Pattern.compile(regex), delimiter);
+    }
+
+    /**
+     * Returns the key of the record in the line, or null if the line has no key
+     * (the field is absent or the expression is not found).
+     */
+    public String getKey(String line) {
+        if (pattern != null) {
+            Matcher matcher = pattern.matcher(line);
+            if (!matcher.find()) {
+                return null;
+            }
+            return matcher.groupCount() == 0 ? matcher.group() : matcher.group(1);
+        }
+
+        int start = 0;
+        for (int field = 0; field < column; field++) {
+            int end = endOfField(line, start);
+            if (end == line.length()) {
+                return null;
+            }
+            start = end + 1;
+        }
+        return unquote(line, start, endOfField(line, start));
+    }
+
+    /**
+     * Finds fields that differ in two versions of a record. A field present in only one
+     * of the versions differs.
+     *
+     * @return Indices of the fields in increasing order.
+     */
+    public int[] getChangedFields(String oldLine, String newLine) {
+        int[] changed = new int[8];
+        int count = 0;
+
+        int oldStart = 0;
+        int newStart = 0;
+        for (int field = 0; oldStart >= 0 || newStart >= 0; field++) {
+            int oldEnd = oldStart < 0 ? -1 : endOfField(oldLine, oldStart);
+            int newEnd = newStart < 0 ? -1 : endOfField(newLine, newStart);
+
+            if (oldStart < 0 || newStart < 0 || oldEnd - oldStart != newEnd - newStart
+                    || !oldLine.regionMatches(oldStart, newLine, newStart, oldEnd - oldStart)) {
+                if (count == changed.length) {
+                    changed = Arrays.copyOf(changed, count * 2);
+                }
+                changed[count++] = field;
+            }
+
+            oldStart = oldStart < 0 || oldEnd == oldLine.length() ? -1 : oldEnd + 1;
+            newStart = newStart < 0 || newEnd == newLine.length() ? -1 : newEnd + 1;
+        }
+        return Arrays.copyOf(changed, count);
+    }
+
+    /**
+     * Returns the index of the delimiter ending the field starting at the passed index,
+     * or the length of the line if the field is the last one. Delimiters inside quotes are skipped.
+     */
+    private int endOfField(String line, int start) {
+        int from = start;
+        if (start < line.length() && line.charAt(start) == '"') {
+            from = start + 1;
+            while (from < line.length()) {
+                if (line.charAt(from++) == '"') {
+                    if (from == line.length() || line.charAt(from) != '"') {
+                        break;
+                    }
+                    ++from;
+                }
+            }
+        }
+        int end = line.indexOf(delimiter, from);
+        return end < 0 ? line.length() : end;
+    }
+
+    /**
+     * Returns the field [start, end) of the line, without quotes if it is quoted.
+     */
+    private static String unquote(String line, int start, int end) {
+        if (start == end || line.charAt(start) != '"') {
+            return line.substring(start, end);
+        }
+
+        StringBuilder field = new StringBuilder(end - start);
+        for (int i = start + 1; i < end; i++) {
+            char c = line.charAt(i);
+            if (c != '"') {
+                field.append(c);
+            } else if (i + 1 < end && line.charAt(i + 1) == '"') {
+                field.append('"');
+                ++i;
+            }
+        }
+        return field.toString();
+    }
+}
@@ -0,0 +1,339 @@
+package comparison;
+
+import java.io.BufferedReader;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * <p>Compares texts of keyed records, like CSV exports, properties or logs with ids, by keys
+ * instead of positions: records with the same key are EQUAL if their lines are equal and
+ * CHANGED otherwise, no matter where they are, and other records are DELETED or INSERTED.</p>
+ * <p>Records are matched in O(N + M) time in one of two ways:</p>
+ * <ul>
+ *     <li>hash join: the old text is kept in memory, indexed by keys, and the new text is streamed.
+ *     Records are reported in order of the new text, then deleted records in order of the old one;</li>
+ *     <li>merge join: both texts must be sorted by keys (as strings), and both are streamed, so they
+ *     may be far larger than memory. Records are reported in order of keys.</li>
+ * </ul>
+ * <p>If a key occurs several times in a text, its occurrences are matched in order. Lines without a key,
+ * like headers, are paired with each other in order. Blank lines are skipped and lines are trimmed,
+ * like {@link Utils#readLines(Path)} does.</p>
+ * <p>Instances keep no state between comparisons, so they may be used by several threads at once.</p>
+ */
+public final class KeyedDiff {
+    /**
+     * Finds keys of records.
+     */
+    private final KeyExtractor extractor;
+
+    /**
+     * Creates a new instance finding keys with the passed extractor.
+     *
+     * @throws NullPointerException If extractor is null.
+     */
+    public KeyedDiff(KeyExtractor extractor) {
+        this.extractor = Objects.requireNonNull(extractor, "Key extractor cannot be null.");
+    }
+
+    /**
+     * Compares texts from the files with a merge join if they are sorted by keys, or with a hash join otherwise.
+     *
+     * @param sorted   True, if both texts are sorted by keys.
+     * @param listener Receives found records.
+     * @return Amounts of records of every kind.
+     * @throws NullPointerException     If any of the arguments is null.
+     * @throws FileNotFoundException    If any of the files does not exist.
+     * @throws IllegalArgumentException If the texts are said to be sorted, but are not.
+     * @throws IOException              If an I/O error occurs.
+     */
+    public DiffSummary compare(Path oldPath, Path newPath, boolean sorted, RecordListener listener)
+            throws IOException {
+        return sorted ? mergeJoin(oldPath, newPath, listener) : hashJoin(oldPath, newPath, listener);
+    }
+
+    /**
+     * Compares texts from the files keeping the old one in memory.
+     *
+     * @param listener Receives found records: records of the new text in its order, then deleted ones.
+     * @return Amounts of records of every kind.
+     * @throws NullPointerException  If any of the arguments is null.
+     * @throws FileNotFoundException If any of the files does not exist.
+     * @throws IOException           If an I/O error occurs.
+     */
+    public DiffSummary hashJoin(Path oldPath, Path newPath, RecordListener listener) throws IOException {
+        Objects.requireNonNull(listener, "Listener cannot be null.");
+        Reporter reporter = new Reporter(listener);
+
+        List<String> oldLines = Utils.readLines(oldPath);
+        // Occurrences of a key form a chain: the first one is in the map, next ones are in the array.
+        Map<String, Integer> firstByKey = new HashMap<>();
+        int[] next = new int[oldLines.size()];
+        int[] last = new int[oldLines.size()];
+        Deque<Integer> keyless = new ArrayDeque<>();
+        String[] keys = new String[oldLines.size()];
+
+        for (int i = 0; i < oldLines.size(); i++) {
+            next[i] = -1;
+            keys[i] = extractor.getKey(oldLines.get(i));
+            if (keys[i] == null) {
+                keyless.add(i);
+                continue;
+            }
+            Integer first = firstByKey.putIfAbsent(keys[i], i);
+            if (first != null) {
+                next[last[first]] = i;
+                last[first] = i;
+            } else {
+                last[i] = i;
+            }
+        }
+
+        BitSet matched = new BitSet(oldLines.size());
+        try (LineReader reader = new LineReader(newPath)) {
+            String line;
+            while ((line = reader.next()) != null) {
+                String key = extractor.getKey(line);
+                Integer match = key == null ? keyless.poll() : firstByKey.get(key);
+                if (match == null) {
+                    reporter.report(key, -1, null, reader.getIndex(), line);
+                    continue;
+                }
+
+                if (key != null) {
+                    // The chain keeps its last index in the array at the head, so it is moved with the head.
+                    if (next[match] < 0) {
+                        firstByKey.remove(key);
+                    } else {
+                        firstByKey.put(key, next[match]);
+                        last[next[match]] = last[match];
+                    }
+                }
+                matched.set(match);
+                reporter.report(key, match, oldLines.get(match), reader.getIndex(), line);
+            }
+        }
+
+        for (int i = matched.nextClearBit(0); i < oldLines.size(); i = matched.nextClearBit(i + 1)) {
+            reporter.report(keys[i], i, oldLines.get(i), -1, null);
+        }
+        return reporter.getSummary();
+    }
+
+    /**
+     * Compares texts from the files sorted by keys, streaming both of them.
+     *
+     * @param listener Receives found records in order of keys.
+     * @return Amounts of records of every kind.
+     * @throws NullPointerException     If any of the arguments is null.
+     * @throws FileNotFoundException    If any of the files does not exist.
+     * @throws IllegalArgumentException If keys of any of the texts are not sorted.
+     * @throws IOException              If an I/O error occurs.
+     */
+    public DiffSummary mergeJoin(Path oldPath, Path newPath, RecordListener listener) throws IOException {
+        Objects.requireNonNull(listener, "Listener cannot be null.");
+        Reporter reporter = new Reporter(listener);
+
+        try (LineReader oldReader = new LineReader(oldPath); LineReader newReader = new LineReader(newPath)) {
+            SortedCursor oldCursor = new SortedCursor(oldReader, oldPath);
+            SortedCursor newCursor = new SortedCursor(newReader, newPath);
+
+            while (oldCursor.line != null || newCursor.line != null) {
+                int order;
+                if (oldCursor.line == null) {
+                    order = 1;
+                } else if (newCursor.line == null) {
+                    order = -1;
+                } else if (oldCursor.key == null || newCursor.key == null) {
+                    // Keyless lines go first and are paired with each other.
+                    order = oldCursor.key == null ? (newCursor.key == null ? 0 : -1) : 1;
+                } else {
+                    order = oldCursor.key.compareTo(newCursor.key);
+                }
+
+                if (order < 0) {
+                    reporter.report(oldCursor.key, oldReader.getIndex(), oldCursor.line, -1, null);
+                    oldCursor.advance();
+                } else if (order > 0) {
+                    reporter.report(newCursor.key, -1, null, newReader.getIndex(), newCursor.line);
+                    newCursor.advance();
+                } else {
+                    reporter.report(newCursor.key, oldReader.getIndex(), oldCursor.line,
+                            newReader.getIndex(), newCursor.line);
+                    oldCursor.advance();
+                    newCursor.advance();
+                }
+            }
+        }
+        return reporter.getSummary();
+    }
+
+
+    /**
+     * Classifies records, counts them and passes them to the listener.
+     */
+    private class Reporter {
+        /**
+         * Receives records.
+         */
+        private final RecordListener listener;
+        /**
+         * Amounts of records of every kind reported so far.
+         */
+        private int equal;
+        private int inserted;
+        private int deleted;
+        private int changed;
+
+        private Reporter(RecordListener listener) {
+            this.listener = listener;
+        }
+
+        /**
+         * Reports a record. A missing line is passed as null with index -1.
+         */
+        private void report(String key, long oldIndex, String oldLine, long newIndex, String newLine)
+                throws IOException {
+            DifferenceMarker marker;
+            int[] fields = new int[0];
+            if (oldLine == null) {
+                marker = DifferenceMarker.INSERTED;
+                ++inserted;
+            } else if (newLine == null) {
+                marker = DifferenceMarker.DELETED;
+                ++deleted;
+            } else if (oldLine.equals(newLine)) {
+                marker = DifferenceMarker.EQUAL;
+                ++equal;
+            } else {
+                marker = DifferenceMarker.CHANGED;
+                fields = extractor.getChangedFields(oldLine, newLine);
+                ++changed;
+            }
+            listener.onRecord(new KeyedRecord(key, marker, oldIndex, oldLine, newIndex, newLine, fields));
+        }
+
+        /**
+         * Returns amounts of reported records.
+         */
+        private DiffSummary getSummary() {
+            return new DiffSummary(equal, inserted, deleted, changed);
+        }
+    }
+
+
+    /**
+     * Reads non-blank trimmed lines of a file one by one.
+     */
+    private static class LineReader implements AutoCloseable {
+        /**
+         * Reader of the file.
+         */
+        private final BufferedReader reader;
+        /**
+         * Index of the last read line among non-blank lines.
+         */
+        private long index = -1;
+
+        /**
+         * Opens the file, decompressing it if needed.
+         */
+        private LineReader(Path path) throws IOException {
+            Objects.requireNonNull(path, "Path cannot be null.");
+            if (!Files.exists(path)) {
+                throw new FileNotFoundException("File " + path + " does not exist.");
+            }
+            reader = new BufferedReader(new InputStreamReader(Compression.open(path), Charset.defaultCharset()));
+        }
+
+        /**
+         * Returns the next non-blank line, trimmed, or null if the file has ended.
+         */
+        private String next() throws IOException {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty()) {
+                    ++index;
+                    return line;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Returns the index of the last read line.
+         */
+        private long getIndex() {
+            return index;
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    /**
+     * Current line of a text sorted by keys, checking that keys do not decrease.
+     */
+    private class SortedCursor {
+        /**
+         * Reader of the text.
+         */
+        private final LineReader reader;
+        /**
+         * Path to the text, for error messages.
+         */
+        private final Path path;
+        /**
+         * Current line, or null if the text has ended.
+         */
+        private String line;
+        /**
+         * Key of the current line, or null if it has no key.
+         */
+        private String key;
+        /**
+         * Greatest key met so far.
+         */
+        private String lastKey;
+
+        /**
+         * Reads the first line of the text.
+         */
+        private SortedCursor(LineReader reader, Path path) throws IOException {
+            this.reader = reader;
+            this.path = path;
+            advance();
+        }
+
+        /**
+         * Reads the next line of the text.
+         *
+         * @throws IllegalArgumentException If the key of the line is less than the previous one.
+         */
+        private void advance() throws IOException {
+            line = reader.next();
+            key = line == null ? null : extractor.getKey(line);
+            if (key == null) {
+                return;
+            }
+            if (lastKey != null && key.compareTo(lastKey) < 0) {
+                throw new IllegalArgumentException("File " + path + " is not sorted by keys: key \"" + key
+                        + "\" of line " + (reader.getIndex() + 1) + " goes after \"" + lastKey + "\".");
+            }
+            lastKey = key;
+        }
+    }
+}
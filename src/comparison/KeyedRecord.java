@@ -0,0 +1,102 @@
+package comparison;
+
+/**
+ * <p>A record of two keyed texts found by {@link KeyedDiff}: a pair of lines with the same key,
+ * or a line with a key absent in the other text.</p>
+ * <p>Indices count only non-blank lines, like the comparison does.</p>
+ */
+public final class KeyedRecord {
+    /**
+     * Key of the record, or null if its lines have no key.
+     */
+    private final String key;
+    /**
+     * EQUAL, CHANGED, DELETED or INSERTED.
+     */
+    private final DifferenceMarker marker;
+    /**
+     * Index of the line in the old text, or -1 if the record was inserted.
+     */
+    private final long oldIndex;
+    /**
+     * Index of the line in the new text, or -1 if the record was deleted.
+     */
+    private final long newIndex;
+    /**
+     * Line of the old text, or null if the record was inserted.
+     */
+    private final String oldLine;
+    /**
+     * Line of the new text, or null if the record was deleted.
+     */
+    private final String newLine;
+    /**
+     * Indices of changed fields.
+     */
+    private final int[] changedFields;
+
+    /**
+     * Creates a new record.
+     */
+    KeyedRecord(String key, DifferenceMarker marker, long oldIndex, String oldLine,
+                long newIndex, String newLine, int[] changedFields) {
+        this.key = key;
+        this.marker = marker;
+        this.oldIndex = oldIndex;
+        this.newIndex = newIndex;
+        this.oldLine = oldLine;
+        this.newLine = newLine;
+        this.changedFields = changedFields;
+    }
+
+    /**
+     * Returns the key of the record, or null if its lines have no key.
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Returns EQUAL or CHANGED if the record is present in both texts, DELETED or INSERTED otherwise.
+     */
+    public DifferenceMarker getMarker() {
+        return marker;
+    }
+
+    /**
+     * Returns the index of the line in the old text, or -1 if the record was inserted.
+     */
+    public long getOldIndex() {
+        return oldIndex;
+    }
+
+    /**
+     * Returns the index of the line in the new text, or -1 if the record was deleted.
+     */
+    public long getNewIndex() {
+        return newIndex;
+    }
+
+    /**
+     * Returns the line of the old text, or null if the record was inserted.
+     */
+    public String getOldLine() {
+        return oldLine;
+    }
+
+    /**
+     * Returns the line of the new text, or null if the record was deleted.
+     */
+    public String getNewLine() {
+        return newLine;
+    }
+
+    /**
+     * Returns indices of fields that differ in the lines of a CHANGED record, or an empty array otherwise.
+     *
+     * @see KeyExtractor#getChangedFields(String, String)
+     */
+    public int[] getChangedFields() {
+        return changedFields.clone();
+    }
+}
@@ -0,0 +1,321 @@
+package comparison;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * <p>Keeps lines of a text outside of the Java heap.</p>
+ * <p>Lines are stored as UTF-8 bytes in direct buffers, while the heap holds only
+ * primitive arrays with the location, length and hash of every line. Lines are
+ * compared as raw bytes, and strings are built only by {@link #getLine(int)}.</p>
+ * <p>Memory of the buffers is freed as soon as the arena is closed.</p>
+ */
+public class LineArena implements LineStore, AutoCloseable {
+    /**
+     * Size of a buffer lines are stored in. Longer lines get a buffer of their own.
+     */
+    private static final int BLOCK_SIZE = 8 * 1024 * 1024;
+
+    /**
+     * Frees memory of a direct buffer without waiting for garbage collection,
+     * or null if it is not supported by the JVM.
+     */
+    private static final Method INVOKE_CLEANER;
+    /**
+     * Instance INVOKE_CLEANER is called on.
+     */
+    private static final Object UNSAFE;
+
+    static {
+        Method invokeCleaner = null;
+        Object unsafe = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Buffers will be freed by the garbage collector.
+        }
+        INVOKE_CLEANER = invokeCleaner;
+        UNSAFE = unsafe;
+    }
+
+    /**
+     * Buffers with lines.
+     */
+    private ByteBuffer[] blocks = new ByteBuffer[4];
+    /**
+     * Amount of allocated buffers.
+     */
+    private int blockCount;
+    /**
+     * Buffer new lines are appended to.
+     */
+    private ByteBuffer current;
+
+    /**
+     * Index of the buffer containing the line.
+     */
+    private int[] lineBlocks = new int[1024];
+    /**
+     * Offset of the line in its buffer.
+     */
+    private int[] lineOffsets = new int[1024];
+    /**
+     * Length of the line in bytes.
+     */
+    private int[] lineLengths = new int[1024];
+    /**
+     * Hash of the line bytes.
+     */
+    private int[] lineHashes = new int[1024];
+
+    /**
+     * Amount of lines.
+     */
+    private int size;
+    /**
+     * Flag shows if the arena has been closed.
+     */
+    private boolean closed = false;
+
+    /**
+     * <p>Reads all lines from the file at the passed path into a new arena.
+     * Ignores empty and blank lines and trims the others, exactly like
+     * {@link Utils#readLines(Path)}.</p>
+     * <p>If the default charset is UTF-8, lines are split and trimmed as raw bytes,
+     * so no strings are created. Files compressed with gzip or zlib are decompressed
+     * while being read.</p>
+     *
+     * @throws NullPointerException  If passed path is null.
+     * @throws FileNotFoundException If file at the passed path does not exist.
+     * @throws IOException           If I/O errors occurs.
+     */
+    public static LineArena read(Path path) throws IOException {
+        Objects.requireNonNull(path, "Path cannot be null.");
+
+        if (!Files.exists(path)) {
+            throw new FileNotFoundException("File " + path + " does not exist.");
+        }
+
+        LineArena arena = new LineArena();
+        try {
+            if (Charset.defaultCharset().equals(StandardCharsets.UTF_8)) {
+                arena.readBytes(path);
+            } else {
+                for (String line : Utils.readLines(path)) {
+                    arena.add(line);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            arena.close();
+            throw e;
+        }
+        return arena;
+    }
+
+    /**
+     * Splits the file into lines without decoding them.
+     */
+    private void readBytes(Path path) throws IOException {
+        if (Compression.isCompressed(path)) {
+            try (InputStream in = Compression.open(path)) {
+                ByteLines.read(in, this::add);
+            }
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteLines.read(channel, 0, channel.size(), this::add);
+        }
+    }
+
+    /**
+     * Appends a line to the arena. Ignores the line if it is blank and trims it otherwise.
+     *
+     * @throws NullPointerException  If line is null.
+     * @throws IllegalStateException If the arena is closed.
+     */
+    public void add(String line) {
+        Objects.requireNonNull(line, "Line cannot be null.");
+
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        add(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Appends UTF-8 bytes of a line to the arena. Ignores the line if it is blank and trims it otherwise.
+     * Bytes not greater than a space are trimmed, which in UTF-8 is the same as {@link String#trim()}.
+     */
+    void add(byte[] bytes, int offset, int length) {
+        checkOpen();
+
+        int start = offset;
+        int end = offset + length;
+        while (start < end && (bytes[start] & 0xFF) <= ' ') {
+            ++start;
+        }
+        while (end > start && (bytes[end - 1] & 0xFF) <= ' ') {
+            --end;
+        }
+        if (start == end) {
+            return;
+        }
+        length = end - start;
+
+        if (current == null || current.remaining() < length) {
+            allocateBlock(length);
+        }
+
+        if (size == lineBlocks.length) {
+            int capacity = size * 2;
+            lineBlocks = Arrays.copyOf(lineBlocks, capacity);
+            lineOffsets = Arrays.copyOf(lineOffsets, capacity);
+            lineLengths = Arrays.copyOf(lineLengths, capacity);
+            lineHashes = Arrays.copyOf(lineHashes, capacity);
+        }
+
+        int hash = 1;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + bytes[i];
+        }
+
+        lineBlocks[size] = blockCount - 1;
+        lineOffsets[size] = current.position();
+        lineLengths[size] = length;
+        lineHashes[size] = hash;
+        current.put(bytes, start, length);
+        ++size;
+    }
+
+    /**
+     * Allocates a new buffer big enough for a line of passed length.
+     */
+    private void allocateBlock(int length) {
+        if (blockCount == blocks.length) {
+            blocks = Arrays.copyOf(blocks, blockCount * 2);
+        }
+        current = ByteBuffer.allocateDirect(Math.max(BLOCK_SIZE, length));
+        blocks[blockCount++] = current;
+    }
+
+    /**
+     * Throws an exception if the arena is closed.
+     */
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Line arena is closed.");
+        }
+    }
+
+    /**
+     * Returns a view of the line bytes.
+     */
+    private ByteBuffer view(int index) {
+        checkOpen();
+        Objects.checkIndex(index, size);
+
+        ByteBuffer view = blocks[lineBlocks[index]].duplicate();
+        view.limit(lineOffsets[index] + lineLengths[index]);
+        view.position(lineOffsets[index]);
+        return view;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the length of the line at the passed index in bytes.
+     *
+     * @throws IndexOutOfBoundsException If index is out of range.
+     */
+    public int getLength(int index) {
+        Objects.checkIndex(index, size);
+        return lineLengths[index];
+    }
+
+    /**
+     * Decodes the line at the passed index.
+     *
+     * @throws IndexOutOfBoundsException If index is out of range.
+     * @throws IllegalStateException     If the arena is closed.
+     */
+    @Override
+    public String getLine(int index) {
+        ByteBuffer view = view(index);
+        byte[] bytes = new byte[view.remaining()];
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public int hash(int index) {
+        Objects.checkIndex(index, size);
+        return lineHashes[index];
+    }
+
+    /**
+     * Compares lines as raw bytes if the other store is also an arena.
+     *
+     * @throws IllegalStateException If any of the arenas is closed.
+     */
+    @Override
+    public boolean lineEquals(int index, LineStore other, int otherIndex) {
+        if (!(other instanceof LineArena)) {
+            return getLine(index).equals(other.getLine(otherIndex));
+        }
+
+        LineArena arena = (LineArena) other;
+        if (lineLengths[index] != arena.getLength(otherIndex) || lineHashes[index] != arena.hash(otherIndex)) {
+            return false;
+        }
+        return view(index).mismatch(arena.view(otherIndex)) < 0;
+    }
+
+    /**
+     * Frees memory of all the buffers. Lines cannot be accessed afterwards.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        for (int i = 0; i < blockCount; i++) {
+            free(blocks[i]);
+            blocks[i] = null;
+        }
+        current = null;
+        blockCount = 0;
+    }
+
+    /**
+     * Frees memory of the direct buffer if the JVM allows it.
+     */
+    private static void free(ByteBuffer buffer) {
+        if (INVOKE_CLEANER == null) {
+            return;
+        }
+        try {
+            INVOKE_CLEANER.invoke(UNSAFE, buffer);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // The buffer will be freed by the garbage collector.
+        }
+    }
+}
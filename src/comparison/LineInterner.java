@@ -0,0 +1,216 @@
+package comparison;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * <p>Replaces lines with integer ids: equal lines get equal ids, so they can be compared
+ * with a single integer comparison.</p>
+ * <p>Lines are looked up by {@link LineStore#hash(int)} in an open addressing table and
+ * compared with {@link LineStore#lineEquals(int, LineStore, int)}, so no strings are
+ * materialized. All interned stores must be of the same class.</p>
+ */
+public class LineInterner {
+    /**
+     * Stores lines of which were interned.
+     */
+    private final List<LineStore> stores = new ArrayList<>();
+
+    /**
+     * Open addressing table of ids increased by one, zero marks an empty slot.
+     */
+    private int[] table = new int[1024];
+
+    /**
+     * Index of the store containing the first line with the id.
+     */
+    private int[] representativeStore = new int[256];
+    /**
+     * Index of the first line with the id in its store.
+     */
+    private int[] representativeIndex = new int[256];
+    /**
+     * Hash of the lines with the id.
+     */
+    private int[] representativeHash = new int[256];
+
+    /**
+     * Amount of distinct lines.
+     */
+    private int size;
+
+    /**
+     * Returns the amount of distinct lines interned so far.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Interns all lines of the passed store.
+     *
+     * @return Ids of the lines in order of lines.
+     * @throws NullPointerException     If store is null.
+     * @throws IllegalArgumentException If the store is of a class other than already interned stores.
+     */
+    public int[] intern(LineStore store) {
+        Objects.requireNonNull(store, "Store cannot be null.");
+        if (!stores.isEmpty() && stores.get(0).getClass() != store.getClass()) {
+            throw new IllegalArgumentException("Cannot intern lines of stores of different classes.");
+        }
+
+        int[] ids = new int[store.size()];
+        intern(store, ids);
+        return ids;
+    }
+
+    /**
+     * Interns all lines of the passed store, writing their ids to the start of the passed array,
+     * which must not be shorter than the store.
+     */
+    void intern(LineStore store, int[] ids) {
+        int storeIndex = addStore(store);
+        for (int i = 0; i < store.size(); i++) {
+            ids[i] = intern(storeIndex, i);
+        }
+    }
+
+    /**
+     * Registers a store, so its lines can be interned one by one with {@link #intern(int, int)},
+     * even while lines are being added to the store.
+     *
+     * @return Index of the store.
+     * @throws IllegalArgumentException If the store is of a class other than already interned stores.
+     */
+    int addStore(LineStore store) {
+        if (!stores.isEmpty() && stores.get(0).getClass() != store.getClass()) {
+            throw new IllegalArgumentException("Cannot intern lines of stores of different classes.");
+        }
+        stores.add(store);
+        return stores.size() - 1;
+    }
+
+    /**
+     * <p>Forgets all interned lines, so the interner can be reused for other texts.</p>
+     * <p>Only slots of the table taken by the interned lines are cleared. Arrays longer than
+     * the passed length are dropped, so the interner does not keep memory of huge texts.</p>
+     */
+    void clear(int maxRetainedLength) {
+        stores.clear();
+        if (table.length > maxRetainedLength || representativeHash.length > maxRetainedLength) {
+            table = new int[1024];
+            representativeStore = new int[256];
+            representativeIndex = new int[256];
+            representativeHash = new int[256];
+            size = 0;
+            return;
+        }
+
+        int mask = table.length - 1;
+        for (int id = 0; id < size; id++) {
+            // Slots of other ids may already be cleared, so the probe goes on until the id is found.
+            int slot = spread(representativeHash[id]) & mask;
+            while (table[slot] != id + 1) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = 0;
+        }
+        size = 0;
+    }
+
+    /**
+     * <p>Finds the id of the line at the passed index without interning it.</p>
+     * <p>Does not modify the interner, so may be called from several threads at once
+     * as long as no lines are being interned.</p>
+     *
+     * @return Id of the line, or -1 if the line has not been interned.
+     * @throws NullPointerException     If store is null.
+     * @throws IllegalArgumentException If the store is of a class other than interned stores.
+     */
+    public int find(LineStore store, int index) {
+        Objects.requireNonNull(store, "Store cannot be null.");
+        if (!stores.isEmpty() && stores.get(0).getClass() != store.getClass()) {
+            throw new IllegalArgumentException("Cannot find lines of stores of different classes.");
+        }
+
+        int hash = store.hash(index);
+        int mask = table.length - 1;
+
+        for (int slot = spread(hash) & mask; ; slot = (slot + 1) & mask) {
+            int id = table[slot] - 1;
+            if (id < 0) {
+                return -1;
+            }
+            if (representativeHash[id] == hash
+                    && stores.get(representativeStore[id]).lineEquals(representativeIndex[id], store, index)) {
+                return id;
+            }
+        }
+    }
+
+    /**
+     * Returns the id of the line of the registered store, assigning a new one if the line has not been met yet.
+     */
+    int intern(int storeIndex, int index) {
+        LineStore store = stores.get(storeIndex);
+        int hash = store.hash(index);
+        int mask = table.length - 1;
+
+        for (int slot = spread(hash) & mask; ; slot = (slot + 1) & mask) {
+            int id = table[slot] - 1;
+            if (id < 0) {
+                id = add(storeIndex, index, hash);
+                table[slot] = id + 1;
+                if (size * 2 > table.length) {
+                    rehash();
+                }
+                return id;
+            }
+            if (representativeHash[id] == hash
+                    && stores.get(representativeStore[id]).lineEquals(representativeIndex[id], store, index)) {
+                return id;
+            }
+        }
+    }
+
+    /**
+     * Registers a new distinct line and returns its id.
+     */
+    private int add(int storeIndex, int index, int hash) {
+        if (size == representativeHash.length) {
+            int capacity = size * 2;
+            representativeStore = Arrays.copyOf(representativeStore, capacity);
+            representativeIndex = Arrays.copyOf(representativeIndex, capacity);
+            representativeHash = Arrays.copyOf(representativeHash, capacity);
+        }
+        representativeStore[size] = storeIndex;
+        representativeIndex[size] = index;
+        representativeHash[size] = hash;
+        return size++;
+    }
+
+    /**
+     * Doubles the table.
+     */
+    private void rehash() {
+        table = new int[table.length * 2];
+        int mask = table.length - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = spread(representativeHash[id]) & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = id + 1;
+        }
+    }
+
+    /**
+     * Spreads bits of the hash so that similar hashes do not cluster in the table.
+     */
+    private static int spread(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
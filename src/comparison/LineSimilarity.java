@@ -0,0 +1,523 @@
+package comparison;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * <p>Decides whether two lines can be considered the same line but changed.</p>
+ * <p>Lines are similar if the length of their longest common subsequence is at least 2/3
+ * of each line. Finding that length costs O(|x| * |y|), so very long lines (minified
+ * sources, one-line JSON) are compared by cheaper approximations instead:</p>
+ * <ul>
+ *     <li>{@link SimilarityStrategy#EXACT} is used while both lines are not longer than
+ *     the exact length limit and the product of their lengths does not exceed the pair cost cap;</li>
+ *     <li>{@link SimilarityStrategy#CHUNKED} splits lines into content-defined chunks and finds
+ *     the longest common subsequence of chunks, if the product of chunk counts fits the cap;</li>
+ *     <li>{@link SimilarityStrategy#MIN_HASH} estimates Jaccard similarity of character shingles
+ *     with fixed-size sketches otherwise.</li>
+ * </ul>
+ * <p>Chunks and sketches of a line are computed once and cached, so the instance
+ * is meant to be used for a single comparison and is not thread-safe.</p>
+ * <p>Lines compared by tokens keep their {@link TokenDiff} if they are similar, so changed words
+ * are highlighted without comparing the lines again, see {@link #getTokenDiff(String, String)}.</p>
+ */
+public class LineSimilarity {
+    /**
+     * Name of the system property overriding the default exact length limit.
+     */
+    public static final String EXACT_LENGTH_LIMIT_PROPERTY = "comparison.similarity.exactLengthLimit";
+    /**
+     * Name of the system property overriding the default pair cost cap.
+     */
+    public static final String MAX_PAIR_COST_PROPERTY = "comparison.similarity.maxPairCost";
+    /**
+     * Name of the system property overriding the default total length of lines whose token diffs are kept.
+     */
+    public static final String TOKEN_CACHE_CHARS_PROPERTY = "comparison.similarity.tokenCacheChars";
+
+    /**
+     * Default maximum length of a line compared with {@link SimilarityStrategy#EXACT}.
+     */
+    public static final int DEFAULT_EXACT_LENGTH_LIMIT = 50_000;
+    /**
+     * Default maximum amount of table cells computed for one pair of lines.
+     */
+    public static final long DEFAULT_MAX_PAIR_COST = 100_000_000L;
+    /**
+     * Default total length of lines whose token diffs are kept.
+     */
+    public static final long DEFAULT_TOKEN_CACHE_CHARS = 1L << 23;
+
+    /**
+     * Minimal length of a content-defined chunk.
+     */
+    private static final int MIN_CHUNK = 16;
+    /**
+     * Maximal length of a content-defined chunk.
+     */
+    private static final int MAX_CHUNK = 256;
+    /**
+     * Chunk boundary is set when the rolling hash has all these bits equal to zero,
+     * which gives chunks of about 64 characters on average.
+     */
+    private static final int CHUNK_MASK = 63;
+
+    /**
+     * Length of character shingles used by MinHash.
+     */
+    private static final int SHINGLE = 8;
+    /**
+     * Number of minimal hashes kept in a sketch.
+     */
+    private static final int SKETCH_SIZE = 128;
+    /**
+     * Lines with estimated Jaccard similarity of shingles not less than this value are similar.
+     */
+    private static final double MIN_JACCARD = 0.5;
+
+    /**
+     * Maximum length of a line compared with {@link SimilarityStrategy#EXACT}.
+     */
+    private final int exactLengthLimit;
+    /**
+     * Maximum amount of table cells computed for one pair of lines.
+     */
+    private final long maxPairCost;
+    /**
+     * Flag shows if lines are compared by words and punctuation instead of characters.
+     */
+    private final boolean byTokens;
+
+    /**
+     * Strategies that have been used by this instance.
+     */
+    private final Set<SimilarityStrategy> usedStrategies = EnumSet.noneOf(SimilarityStrategy.class);
+    /**
+     * Cached chunks and sketches of long lines by their content.
+     */
+    private final Map<String, Profile> profiles = new HashMap<>();
+    /**
+     * Token diffs of similar lines, shared by copies of the instance. Null if lines are not compared by tokens.
+     */
+    private final TokenDiffCache tokenDiffs;
+
+    /**
+     * Creates a new instance with limits taken from {@link #EXACT_LENGTH_LIMIT_PROPERTY} and
+     * {@link #MAX_PAIR_COST_PROPERTY} system properties or default ones.
+     */
+    public LineSimilarity() {
+        this(Integer.getInteger(EXACT_LENGTH_LIMIT_PROPERTY, DEFAULT_EXACT_LENGTH_LIMIT),
+                Long.getLong(MAX_PAIR_COST_PROPERTY, DEFAULT_MAX_PAIR_COST));
+    }
+
+    /**
+     * Creates a new instance with passed limits.
+     *
+     * @param exactLengthLimit Maximum length of a line compared exactly.
+     * @param maxPairCost      Maximum amount of table cells computed for one pair of lines.
+     * @throws IllegalArgumentException If any of the limits is not positive.
+     */
+    public LineSimilarity(int exactLengthLimit, long maxPairCost) {
+        this(exactLengthLimit, maxPairCost, false, null);
+    }
+
+    /**
+     * Creates a new instance with passed limits and way of comparison.
+     */
+    private LineSimilarity(int exactLengthLimit, long maxPairCost, boolean byTokens, TokenDiffCache tokenDiffs) {
+        if (exactLengthLimit <= 0 || maxPairCost <= 0) {
+            throw new IllegalArgumentException("Similarity limits must be positive.");
+        }
+        this.exactLengthLimit = exactLengthLimit;
+        this.maxPairCost = maxPairCost;
+        this.byTokens = byTokens;
+        this.tokenDiffs = tokenDiffs;
+    }
+
+    /**
+     * Creates a new instance comparing lines by words and punctuation with {@link SimilarityStrategy#TOKENS}.
+     * Suits prose, where a line is a whole paragraph.
+     *
+     * @see TokenDiff
+     */
+    public static LineSimilarity byTokens() {
+        return new LineSimilarity(DEFAULT_EXACT_LENGTH_LIMIT, DEFAULT_MAX_PAIR_COST, true,
+                new TokenDiffCache(Long.getLong(TOKEN_CACHE_CHARS_PROPERTY, DEFAULT_TOKEN_CACHE_CHARS)));
+    }
+
+    /**
+     * Creates a new instance with the same limits and way of comparison, but without cached lines
+     * and used strategies. Token diffs of similar lines are shared with this instance.
+     */
+    LineSimilarity newInstance() {
+        return new LineSimilarity(exactLengthLimit, maxPairCost, byTokens, tokenDiffs);
+    }
+
+    /**
+     * Shows if lines are compared by words and punctuation.
+     */
+    public boolean isByTokens() {
+        return byTokens;
+    }
+
+    /**
+     * Returns strategies that have been used to compare lines so far.
+     */
+    public Set<SimilarityStrategy> getUsedStrategies() {
+        return Collections.unmodifiableSet(usedStrategies);
+    }
+
+    /**
+     * Shows if passed lines can be considered the same line but changed.
+     *
+     * @throws NullPointerException If any of the passed lines is null.
+     */
+    public boolean areSimilar(String x, String y) {
+        Objects.requireNonNull(x, "Line cannot be null.");
+        Objects.requireNonNull(y, "Line cannot be null.");
+
+        // LCS is never longer than the shorter line.
+        if (Math.min(x.length(), y.length()) < Math.max(x.length(), y.length()) / 1.5) {
+            return false;
+        }
+
+        if (byTokens) {
+            usedStrategies.add(SimilarityStrategy.TOKENS);
+            TokenDiff diff = TokenDiff.of(x, y);
+            if (diff.isSimilar()) {
+                tokenDiffs.put(x, y, diff);
+            }
+            return diff.isSimilar();
+        }
+
+        if (x.length() <= exactLengthLimit && y.length() <= exactLengthLimit
+                && (long) x.length() * y.length() <= maxPairCost) {
+            usedStrategies.add(SimilarityStrategy.EXACT);
+            int LCSLength = Utils.getLCSLength(x, y);
+            return isLongEnough(LCSLength, x.length(), y.length());
+        }
+
+        Profile px = profile(x);
+        Profile py = profile(y);
+        if ((long) px.chunkHashes.length * py.chunkHashes.length <= maxPairCost) {
+            usedStrategies.add(SimilarityStrategy.CHUNKED);
+            return isLongEnough(getChunkedLCSLength(px, py), x.length(), y.length());
+        }
+
+        usedStrategies.add(SimilarityStrategy.MIN_HASH);
+        return estimateJaccard(px.getSketch(), py.getSketch()) >= MIN_JACCARD;
+    }
+
+    /**
+     * <p>Compares passed lines word by word, unless this instance or its copies have found them similar
+     * and still keep their token diff. Kept diffs are bounded by {@link #TOKEN_CACHE_CHARS_PROPERTY}
+     * characters of lines, the oldest ones are dropped first.</p>
+     * <p>Unlike other methods, this one is thread-safe.</p>
+     *
+     * @throws NullPointerException If any of the passed lines is null.
+     */
+    public TokenDiff getTokenDiff(String oldLine, String newLine) {
+        Objects.requireNonNull(oldLine, "Line cannot be null.");
+        Objects.requireNonNull(newLine, "Line cannot be null.");
+
+        TokenDiff diff = tokenDiffs == null ? null : tokenDiffs.get(oldLine, newLine);
+        return diff == null ? TokenDiff.of(oldLine, newLine) : diff;
+    }
+
+    /**
+     * Returns the strategy that would be used to compare two lines of the passed length.
+     */
+    SimilarityStrategy getStrategy(int length) {
+        if (byTokens) {
+            return SimilarityStrategy.TOKENS;
+        }
+        if (length <= exactLengthLimit && (long) length * length <= maxPairCost) {
+            return SimilarityStrategy.EXACT;
+        }
+        // Chunks are MIN_CHUNK plus about CHUNK_MASK + 1 characters long on average.
+        long chunks = length / (MIN_CHUNK + CHUNK_MASK + 1) + 1;
+        return chunks * chunks <= maxPairCost ? SimilarityStrategy.CHUNKED : SimilarityStrategy.MIN_HASH;
+    }
+
+    /**
+     * Shows if the common subsequence is at least 2/3 of each line.
+     */
+    private static boolean isLongEnough(long LCSLength, int length1, int length2) {
+        return LCSLength >= length1 / 1.5 && LCSLength >= length2 / 1.5;
+    }
+
+    /**
+     * Returns cached chunks and sketch of the passed line.
+     */
+    private Profile profile(String line) {
+        return profiles.computeIfAbsent(line, Profile::new);
+    }
+
+    /**
+     * Finds total length of chunks forming the longest common subsequence of chunks.
+     * Keeps only two rows of the table.
+     */
+    private static long getChunkedLCSLength(Profile x, Profile y) {
+        long[] previous = new long[y.chunkHashes.length + 1];
+        long[] current = new long[y.chunkHashes.length + 1];
+
+        for (int i = 1; i < x.chunkHashes.length + 1; ++i) {
+            long hash = x.chunkHashes[i - 1];
+            int length = x.chunkLengths[i - 1];
+            for (int j = 1; j < y.chunkHashes.length + 1; ++j) {
+                current[j] = hash == y.chunkHashes[j - 1] && length == y.chunkLengths[j - 1]
+                        ? previous[j - 1] + length
+                        : Math.max(previous[j], current[j - 1]);
+            }
+            long[] tmp = previous;
+            previous = current;
+            current = tmp;
+        }
+        return previous[y.chunkHashes.length];
+    }
+
+    /**
+     * Estimates Jaccard similarity of two sets by their bottom-k sketches.
+     */
+    private static double estimateJaccard(long[] x, long[] y) {
+        int i = 0;
+        int j = 0;
+        int taken = 0;
+        int common = 0;
+
+        // Walks over the smallest hashes of the union, counting ones present in both sketches.
+        while (taken < SKETCH_SIZE && (i < x.length || j < y.length)) {
+            if (j == y.length || i < x.length && x[i] < y[j]) {
+                ++i;
+            } else if (i == x.length || y[j] < x[i]) {
+                ++j;
+            } else {
+                ++common;
+                ++i;
+                ++j;
+            }
+            ++taken;
+        }
+        return taken == 0 ? 1 : (double) common / taken;
+    }
+
+    /**
+     * Token diffs of pairs of lines, bounded by the total length of the lines. Thread-safe.
+     */
+    private static final class TokenDiffCache {
+        /**
+         * Maximum total length of lines of kept diffs.
+         */
+        private final long maxChars;
+        /**
+         * Kept diffs by pairs of lines, in the order they were added.
+         */
+        private final Map<Pair, TokenDiff> diffs = new LinkedHashMap<>();
+        /**
+         * Total length of lines of kept diffs.
+         */
+        private long chars;
+
+        private TokenDiffCache(long maxChars) {
+            this.maxChars = maxChars;
+        }
+
+        private synchronized TokenDiff get(String oldLine, String newLine) {
+            return diffs.get(new Pair(oldLine, newLine));
+        }
+
+        /**
+         * Keeps the diff, dropping the oldest ones while the total length of lines exceeds the limit.
+         */
+        private synchronized void put(String oldLine, String newLine, TokenDiff diff) {
+            Pair pair = new Pair(oldLine, newLine);
+            if (pair.length() > maxChars || diffs.put(pair, diff) != null) {
+                return;
+            }
+            chars += pair.length();
+
+            Iterator<Pair> oldest = diffs.keySet().iterator();
+            while (chars > maxChars) {
+                chars -= oldest.next().length();
+                oldest.remove();
+            }
+        }
+    }
+
+    /**
+     * Pair of lines used as a key.
+     */
+    private static final class Pair {
+        private final String oldLine;
+        private final String newLine;
+
+        private Pair(String oldLine, String newLine) {
+            this.oldLine = oldLine;
+            this.newLine = newLine;
+        }
+
+        private long length() {
+            return (long) oldLine.length() + newLine.length();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Pair)) {
+                return false;
+            }
+            Pair pair = (Pair) o;
+            return oldLine.equals(pair.oldLine) && newLine.equals(pair.newLine);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * oldLine.hashCode() + newLine.hashCode();
+        }
+    }
+
+    /**
+     * Content-defined chunks and MinHash sketch of a long line.
+     */
+    private static class Profile {
+        /**
+         * Line the profile is built for.
+         */
+        private final String line;
+        /**
+         * Hashes of chunks of the line.
+         */
+        private final long[] chunkHashes;
+        /**
+         * Lengths of chunks of the line.
+         */
+        private final int[] chunkLengths;
+        /**
+         * Sorted minimal hashes of shingles of the line. Built lazily.
+         */
+        private long[] sketch;
+
+        /**
+         * Splits the passed line into chunks. A boundary is set where the rolling hash
+         * of the last characters has specific bits equal to zero, so an edit changes only
+         * the chunks around it.
+         */
+        private Profile(String line) {
+            this.line = line;
+
+            int capacity = line.length() / MIN_CHUNK + 1;
+            long[] hashes = new long[capacity];
+            int[] lengths = new int[capacity];
+            int count = 0;
+
+            long rolling = 0;
+            long hash = Hashing.FNV_OFFSET;
+            int start = 0;
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                rolling = (rolling << 1) + Hashing.GEAR[(c ^ (c >>> 8)) & 0xFF];
+                hash = (hash ^ c) * Hashing.FNV_PRIME;
+
+                int length = i - start + 1;
+                if (length >= MIN_CHUNK && (rolling & CHUNK_MASK) == 0 || length == MAX_CHUNK
+                        || i == line.length() - 1) {
+                    hashes[count] = hash;
+                    lengths[count] = length;
+                    ++count;
+                    hash = Hashing.FNV_OFFSET;
+                    start = i + 1;
+                }
+            }
+
+            this.chunkHashes = Arrays.copyOf(hashes, count);
+            this.chunkLengths = Arrays.copyOf(lengths, count);
+        }
+
+        /**
+         * Returns sorted {@link #SKETCH_SIZE} minimal distinct hashes of the line shingles.
+         * Uses a bounded max-heap, so memory does not depend on the line length.
+         */
+        private long[] getSketch() {
+            if (sketch != null) {
+                return sketch;
+            }
+
+            long[] heap = new long[SKETCH_SIZE];
+            int size = 0;
+            int shingles = Math.max(1, line.length() - SHINGLE + 1);
+
+            for (int i = 0; i < shingles; i++) {
+                long value = 0;
+                for (int k = i; k < Math.min(i + SHINGLE, line.length()); k++) {
+                    value = value * 31 + line.charAt(k);
+                }
+                value = Hashing.mix(value);
+
+                if (size == SKETCH_SIZE && value >= heap[0] || contains(heap, size, value)) {
+                    continue;
+                }
+                if (size < SKETCH_SIZE) {
+                    heap[size] = value;
+                    siftUp(heap, size++);
+                } else {
+                    heap[0] = value;
+                    siftDown(heap, size);
+                }
+            }
+
+            sketch = Arrays.copyOf(heap, size);
+            Arrays.sort(sketch);
+            return sketch;
+        }
+
+        private static boolean contains(long[] heap, int size, long value) {
+            for (int i = 0; i < size; i++) {
+                if (heap[i] == value) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static void siftUp(long[] heap, int index) {
+            while (index > 0) {
+                int parent = (index - 1) / 2;
+                if (heap[parent] >= heap[index]) {
+                    return;
+                }
+                long tmp = heap[parent];
+                heap[parent] = heap[index];
+                heap[index] = tmp;
+                index = parent;
+            }
+        }
+
+        private static void siftDown(long[] heap, int size) {
+            int index = 0;
+            while (true) {
+                int largest = index;
+                int left = 2 * index + 1;
+                int right = left + 1;
+                if (left < size && heap[left] > heap[largest]) {
+                    largest = left;
+                }
+                if (right < size && heap[right] > heap[largest]) {
+                    largest = right;
+                }
+                if (largest == index) {
+                    return;
+                }
+                long tmp = heap[largest];
+                heap[largest] = heap[index];
+                heap[index] = tmp;
+                index = largest;
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package comparison;
+
+/**
+ * <p>Provides read access to the lines of a text.</p>
+ * <p>Lines may be kept on the Java heap or outside of it, so callers that only need to
+ * compare lines should use {@link #hash(int)} and {@link #lineEquals(int, LineStore, int)}
+ * instead of materializing lines with {@link #getLine(int)}.</p>
+ *
+ * @see ListLineStore
+ * @see LineArena
+ */
+public interface LineStore {
+    /**
+     * Returns the amount of lines.
+     */
+    int size();
+
+    /**
+     * Returns the line at the passed index.
+     *
+     * @throws IndexOutOfBoundsException If index is out of range.
+     */
+    String getLine(int index);
+
+    /**
+     * Returns a hash of the line at the passed index. Equal lines of stores
+     * of the same class have equal hashes.
+     *
+     * @throws IndexOutOfBoundsException If index is out of range.
+     */
+    int hash(int index);
+
+    /**
+     * Shows if the line at the passed index is equal to the line at
+     * the other index in the other store.
+     *
+     * @throws IndexOutOfBoundsException If any of the indices is out of range.
+     */
+    boolean lineEquals(int index, LineStore other, int otherIndex);
+}
@@ -0,0 +1,45 @@
+package comparison;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Keeps lines of a text on the Java heap as a list of strings.
+ */
+public class ListLineStore implements LineStore {
+    /**
+     * Lines of the text.
+     */
+    private final List<String> lines;
+
+    /**
+     * Creates a new store over the passed list. The list is not copied.
+     *
+     * @throws NullPointerException If list is null.
+     */
+    public ListLineStore(List<String> lines) {
+        Objects.requireNonNull(lines, "Cannot work with null list.");
+
+        this.lines = lines;
+    }
+
+    @Override
+    public int size() {
+        return lines.size();
+    }
+
+    @Override
+    public String getLine(int index) {
+        return lines.get(index);
+    }
+
+    @Override
+    public int hash(int index) {
+        return lines.get(index).hashCode();
+    }
+
+    @Override
+    public boolean lineEquals(int index, LineStore other, int otherIndex) {
+        return lines.get(index).equals(other.getLine(otherIndex));
+    }
+}
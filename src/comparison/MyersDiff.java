@@ -0,0 +1,222 @@
+package comparison;
+
+/**
+ * <p>Finds equal lines with the linear space variant of the Myers O(ND) algorithm.</p>
+ * <p>A range is split by the middle snake of its shortest edit script, and both halves
+ * are compared the same way. Common prefixes and suffixes of ranges are matched at once.
+ * Takes O((N + M) D) time and O(N + M) memory, where D is the amount of inserted
+ * and deleted lines, so it is fast for similar texts of any size.</p>
+ */
+final class MyersDiff {
+    /**
+     * Ids of lines of an old text.
+     */
+    private final int[] oldIds;
+    /**
+     * Ids of lines of a new text.
+     */
+    private final int[] newIds;
+    /**
+     * Markers of lines of the old text, EQUAL ones are set.
+     */
+    private final DifferenceMarker[] oldMarkers;
+    /**
+     * Markers of lines of the new text, EQUAL ones are set.
+     */
+    private final DifferenceMarker[] newMarkers;
+
+    /**
+     * Furthest positions in the old text reached on diagonals going forward.
+     */
+    private int[] forward = new int[0];
+    /**
+     * Furthest positions in the old text reached on diagonals going backward, counted from the end.
+     */
+    private int[] backward = new int[0];
+
+    /**
+     * Ranges left to compare. A stack keeps the depth of recursion off the call stack.
+     */
+    private final RangeStack ranges;
+    /**
+     * Range being compared: old start, old end, new start, new end.
+     */
+    private final int[] range = new int[4];
+    /**
+     * Middle snake of the range being compared: old index, new index, old end, new end.
+     */
+    private final int[] snake = new int[4];
+
+    /**
+     * Amount of steps left before the comparison is given up.
+     */
+    private long budget = Long.MAX_VALUE;
+
+    /**
+     * Workspace the diagonals are taken from, or null if they are allocated.
+     */
+    private final Workspace workspace;
+
+    /**
+     * Creates a new instance comparing passed ids.
+     */
+    MyersDiff(int[] oldIds, int[] newIds, DifferenceMarker[] oldMarkers, DifferenceMarker[] newMarkers) {
+        this(oldIds, newIds, oldMarkers, newMarkers, null);
+    }
+
+    /**
+     * Creates a new instance comparing passed ids with diagonals and the stack of ranges
+     * taken from the workspace, if it is not null.
+     */
+    MyersDiff(int[] oldIds, int[] newIds, DifferenceMarker[] oldMarkers, DifferenceMarker[] newMarkers,
+              Workspace workspace) {
+        this.oldIds = oldIds;
+        this.newIds = newIds;
+        this.oldMarkers = oldMarkers;
+        this.newMarkers = newMarkers;
+        this.workspace = workspace;
+        this.ranges = new RangeStack(workspace, Workspace.MYERS_RANGES);
+    }
+
+    /**
+     * Limits the amount of steps of all the next comparisons. A step is a move along a diagonal
+     * or to the next diagonal.
+     */
+    void setBudget(long budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * <p>Marks lines of the longest common subsequence of lines [oldFrom, oldTo) of the old text
+     * and [newFrom, newTo) of the new text as EQUAL.</p>
+     * <p>If the budget runs out, the comparison is given up. Lines marked by then are still
+     * a common subsequence, though not the longest one.</p>
+     *
+     * @return False if the budget has run out.
+     */
+    boolean markEqual(int oldFrom, int oldTo, int newFrom, int newTo) {
+        int half = (oldTo - oldFrom + newTo - newFrom + 1) / 2;
+        if (forward.length < 2 * half + 3) {
+            forward = workspace == null ? new int[2 * half + 3] : workspace.getInts(Workspace.FORWARD, 2 * half + 3);
+            backward = workspace == null ? new int[2 * half + 3] : workspace.getInts(Workspace.BACKWARD, 2 * half + 3);
+        }
+
+        ranges.clear();
+        ranges.push(oldFrom, oldTo, newFrom, newTo);
+
+        while (!ranges.isEmpty()) {
+            ranges.pop(range);
+            int i = range[0];
+            int iEnd = range[1];
+            int j = range[2];
+            int jEnd = range[3];
+
+            while (i < iEnd && j < jEnd && oldIds[i] == newIds[j]) {
+                mark(i++, j++);
+            }
+            while (i < iEnd && j < jEnd && oldIds[iEnd - 1] == newIds[jEnd - 1]) {
+                mark(--iEnd, --jEnd);
+            }
+            if (i == iEnd || j == jEnd) {
+                continue;
+            }
+
+            if (!findMiddleSnake(i, iEnd, j, jEnd)) {
+                return false;
+            }
+            for (int x = snake[0], y = snake[1]; x < snake[2]; x++, y++) {
+                mark(x, y);
+            }
+            ranges.push(snake[2], iEnd, snake[3], jEnd);
+            ranges.push(i, snake[0], j, snake[1]);
+        }
+        return true;
+    }
+
+    /**
+     * Marks a pair of lines as EQUAL.
+     */
+    private void mark(int i, int j) {
+        oldMarkers[i] = DifferenceMarker.EQUAL;
+        newMarkers[j] = DifferenceMarker.EQUAL;
+    }
+
+    /**
+     * Finds the middle snake of the shortest edit script of the ranges, which must differ
+     * in their first and last lines.
+     *
+     * @return False if the budget has run out, otherwise the snake is put into {@link #snake}.
+     */
+    private boolean findMiddleSnake(int oldFrom, int oldTo, int newFrom, int newTo) {
+        int n = oldTo - oldFrom;
+        int m = newTo - newFrom;
+        int delta = n - m;
+        boolean odd = (delta & 1) != 0;
+        int half = (n + m + 1) / 2;
+        int offset = half + 1;
+
+        forward[offset + 1] = 0;
+        backward[offset + 1] = 0;
+
+        for (int d = 0; d <= half; d++) {
+            for (int k = -d; k <= d; k += 2) {
+                int x = k == -d || k != d && forward[offset + k - 1] < forward[offset + k + 1]
+                        ? forward[offset + k + 1]
+                        : forward[offset + k - 1] + 1;
+                int y = x - k;
+                int x0 = x;
+                int y0 = y;
+                while (x < n && y < m && oldIds[oldFrom + x] == newIds[newFrom + y]) {
+                    ++x;
+                    ++y;
+                }
+                forward[offset + k] = x;
+                budget -= x - x0 + 1;
+
+                int reverse = delta - k;
+                if (odd && reverse >= -(d - 1) && reverse <= d - 1 && x + backward[offset + reverse] >= n) {
+                    return setSnake(oldFrom + x0, newFrom + y0, oldFrom + x, newFrom + y);
+                }
+            }
+
+            for (int k = -d; k <= d; k += 2) {
+                int x = k == -d || k != d && backward[offset + k - 1] < backward[offset + k + 1]
+                        ? backward[offset + k + 1]
+                        : backward[offset + k - 1] + 1;
+                int y = x - k;
+                int x0 = x;
+                int y0 = y;
+                while (x < n && y < m && oldIds[oldTo - 1 - x] == newIds[newTo - 1 - y]) {
+                    ++x;
+                    ++y;
+                }
+                backward[offset + k] = x;
+                budget -= x - x0 + 1;
+
+                int direct = delta - k;
+                if (!odd && direct >= -d && direct <= d && forward[offset + direct] + x >= n) {
+                    return setSnake(oldTo - x, newTo - y, oldTo - x0, newTo - y0);
+                }
+            }
+
+            if (budget < 0) {
+                return false;
+            }
+        }
+
+        throw new IllegalStateException("Middle snake is not found.");
+    }
+
+    /**
+     * Keeps the found middle snake.
+     *
+     * @return True.
+     */
+    private boolean setSnake(int oldStart, int newStart, int oldEnd, int newEnd) {
+        snake[0] = oldStart;
+        snake[1] = newStart;
+        snake[2] = oldEnd;
+        snake[3] = newEnd;
+        return true;
+    }
+}
@@ -0,0 +1,78 @@
+package comparison;
+
+/**
+ * <p>Stack of pairs of ranges of an old and a new text, kept in a flat int array.</p>
+ * <p>Engines process ranges iteratively with it instead of allocating an array for every range.
+ * The array is taken from a workspace slot if there is a workspace, and grows by copying.</p>
+ */
+final class RangeStack {
+    /**
+     * Amount of ints taken by a pair of ranges.
+     */
+    private static final int RANGE_INTS = 4;
+
+    /**
+     * Workspace the array is taken from, or null.
+     */
+    private final Workspace workspace;
+    /**
+     * Slot of the workspace the array is taken from.
+     */
+    private final int slot;
+
+    /**
+     * Bounds of ranges: oldFrom, oldTo, newFrom, newTo of every pair, the top one last.
+     */
+    private int[] ranges;
+    /**
+     * Amount of ints taken by pairs in the stack.
+     */
+    private int size;
+
+    /**
+     * Creates an empty stack with the array taken from the slot of the workspace, if it is not null.
+     */
+    RangeStack(Workspace workspace, int slot) {
+        this.workspace = workspace;
+        this.slot = slot;
+        this.ranges = workspace == null ? new int[16 * RANGE_INTS] : workspace.getInts(slot, 16 * RANGE_INTS);
+    }
+
+    /**
+     * Shows if there are no ranges in the stack.
+     */
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes all ranges from the stack.
+     */
+    void clear() {
+        size = 0;
+    }
+
+    /**
+     * Pushes ranges [oldFrom, oldTo) of the old text and [newFrom, newTo) of the new one.
+     */
+    void push(int oldFrom, int oldTo, int newFrom, int newTo) {
+        if (size + RANGE_INTS > ranges.length) {
+            int length = 2 * ranges.length;
+            int[] grown = workspace == null ? new int[length] : workspace.getInts(slot, length);
+            System.arraycopy(ranges, 0, grown, 0, size);
+            ranges = grown;
+        }
+        ranges[size++] = oldFrom;
+        ranges[size++] = oldTo;
+        ranges[size++] = newFrom;
+        ranges[size++] = newTo;
+    }
+
+    /**
+     * Pops the top pair of ranges into the passed array: oldFrom, oldTo, newFrom, newTo.
+     */
+    void pop(int[] range) {
+        size -= RANGE_INTS;
+        System.arraycopy(ranges, size, range, 0, RANGE_INTS);
+    }
+}
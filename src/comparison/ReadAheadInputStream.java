@@ -0,0 +1,171 @@
+package comparison;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * <p>Reads a source stream on a separate thread a few buffers ahead of the reader.</p>
+ * <p>Used for decompression, which takes about as long as splitting the decompressed
+ * text into lines: with this stream both run at the same time. Memory is bounded by
+ * the amount of buffers in the queue.</p>
+ */
+final class ReadAheadInputStream extends InputStream {
+    /**
+     * Amount of buffers read ahead.
+     */
+    private static final int QUEUE_CAPACITY = 4;
+    /**
+     * Marks the end of the source.
+     */
+    private static final byte[] END = new byte[0];
+
+    /**
+     * Buffers read from the source.
+     */
+    private final BlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    /**
+     * Thread reading the source.
+     */
+    private final Thread reader;
+    /**
+     * Error occurred while reading the source, or null.
+     */
+    private volatile Throwable error;
+
+    /**
+     * Buffer being read.
+     */
+    private byte[] current = new byte[0];
+    /**
+     * Position in the current buffer.
+     */
+    private int position;
+    /**
+     * Flag shows if the end of the source has been reached.
+     */
+    private boolean finished;
+    /**
+     * Flag shows if the stream has been closed.
+     */
+    private boolean closed;
+
+    /**
+     * Starts reading the source in buffers of the passed size.
+     */
+    ReadAheadInputStream(InputStream source, int bufferSize) {
+        Objects.requireNonNull(source, "Source cannot be null.");
+
+        reader = new Thread(() -> readSource(source, bufferSize), "read-ahead");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * Reads the source into the queue until its end, an error or an interruption.
+     * The end is put into the queue after any error, so the reader never waits forever.
+     */
+    private void readSource(InputStream source, int bufferSize) {
+        boolean interrupted = false;
+        try (source) {
+            while (true) {
+                byte[] buffer = new byte[bufferSize];
+                int length = 0;
+                for (int read; length < bufferSize && (read = source.read(buffer, length, bufferSize - length)) > 0; ) {
+                    length += read;
+                }
+                if (length == 0) {
+                    break;
+                }
+                queue.put(length == bufferSize ? buffer : Arrays.copyOf(buffer, length));
+            }
+        } catch (InterruptedException e) {
+            interrupted = true;
+        } catch (Throwable e) {
+            error = e;
+        } finally {
+            // When interrupted, the stream is closed and no one waits for the end.
+            if (!interrupted) {
+                try {
+                    queue.put(END);
+                } catch (InterruptedException e) {
+                    // The stream has been closed meanwhile.
+                }
+            }
+        }
+    }
+
+    /**
+     * Makes sure the current buffer has unread bytes.
+     *
+     * @return False if the end of the source has been reached.
+     */
+    private boolean fill() throws IOException {
+        if (closed) {
+            throw new IOException("Stream is closed.");
+        }
+        while (position == current.length) {
+            if (finished) {
+                return false;
+            }
+            try {
+                current = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Reading was interrupted.");
+            }
+            position = 0;
+            if (current == END) {
+                finished = true;
+                if (error instanceof IOException) {
+                    throw (IOException) error;
+                }
+                if (error != null) {
+                    throw new IOException("Cannot read the source.", error);
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        return current[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        Objects.checkFromIndexSize(offset, length, bytes.length);
+        if (length == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+
+        int read = Math.min(length, current.length - position);
+        System.arraycopy(current, position, bytes, offset, read);
+        position += read;
+        return read;
+    }
+
+    /**
+     * Stops the reading thread and closes the source.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        reader.interrupt();
+        queue.clear();
+    }
+}
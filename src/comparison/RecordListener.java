@@ -0,0 +1,15 @@
+package comparison;
+
+import java.io.IOException;
+
+/**
+ * Receives records found by {@link KeyedDiff} one by one, so they do not have to be kept in memory.
+ */
+public interface RecordListener {
+    /**
+     * Handles the next record.
+     *
+     * @throws IOException If the record cannot be written.
+     */
+    void onRecord(KeyedRecord record) throws IOException;
+}
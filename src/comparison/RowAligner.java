@@ -0,0 +1,185 @@
+package comparison;
+
+import java.util.Objects;
+
+/**
+ * <p>Places lines of an old and a new text side by side, row by row.</p>
+ * <p>A row contains either a pair of lines (equal lines, changed lines, or a deleted line
+ * next to an inserted one) or a single line of one of the texts. Rows are produced
+ * one at a time, so no memory is used for the whole table.</p>
+ * <p>Usage:</p>
+ * <pre>
+ * RowAligner rows = new RowAligner(oldMarkers, newMarkers);
+ * while (rows.next()) {
+ *     ... rows.getOldIndex() ... rows.getNewIndex() ...
+ * }
+ * </pre>
+ */
+public final class RowAligner {
+    /**
+     * Stages the alignment goes through repeatedly.
+     */
+    private enum Stage {
+        /**
+         * Inserted lines, each next to a deleted one if there is any.
+         */
+        INSERTED,
+        /**
+         * Deleted lines that are left.
+         */
+        DELETED,
+        /**
+         * Equal or changed lines of both texts.
+         */
+        BOTH
+    }
+
+    /**
+     * Markers of lines of an old text.
+     */
+    private final DifferenceMarker[] oldMarkers;
+    /**
+     * Markers of lines of a new text.
+     */
+    private final DifferenceMarker[] newMarkers;
+
+    /**
+     * Index of the next line of the old text.
+     */
+    private int oldIndex;
+    /**
+     * Index of the next line of the new text.
+     */
+    private int newIndex;
+    /**
+     * Current stage.
+     */
+    private Stage stage = Stage.INSERTED;
+
+    /**
+     * Index of the old line in the current row, -1 if there is none.
+     */
+    private int rowOld = -1;
+    /**
+     * Index of the new line in the current row, -1 if there is none.
+     */
+    private int rowNew = -1;
+
+    /**
+     * Creates a new aligner of lines with the passed markers.
+     *
+     * @throws NullPointerException If any of the arrays is null.
+     */
+    public RowAligner(DifferenceMarker[] oldMarkers, DifferenceMarker[] newMarkers) {
+        this.oldMarkers = Objects.requireNonNull(oldMarkers, "Markers cannot be null.");
+        this.newMarkers = Objects.requireNonNull(newMarkers, "Markers cannot be null.");
+    }
+
+    /**
+     * Returns a new aligner at the same row as this one, which moves independently of it.
+     * So rows can be split into parts handled at the same time: every part by a copy
+     * taken before its first row.
+     */
+    public RowAligner copy() {
+        RowAligner copy = new RowAligner(oldMarkers, newMarkers);
+        copy.oldIndex = oldIndex;
+        copy.newIndex = newIndex;
+        copy.stage = stage;
+        copy.rowOld = rowOld;
+        copy.rowNew = rowNew;
+        return copy;
+    }
+
+    /**
+     * Moves to the next row.
+     *
+     * @return False if there are no rows left.
+     * @throws IllegalStateException If the markers cannot be aligned, e.g. a changed line
+     *                               of one text faces an equal line of the other one.
+     */
+    public boolean next() {
+        int idleStages = 0;
+        while (oldIndex < oldMarkers.length || newIndex < newMarkers.length) {
+            switch (stage) {
+                case INSERTED:
+                    if (newIndex < newMarkers.length && newMarkers[newIndex] == DifferenceMarker.INSERTED) {
+                        boolean deleted = oldIndex < oldMarkers.length && oldMarkers[oldIndex] == DifferenceMarker.DELETED;
+                        return row(deleted ? oldIndex++ : -1, newIndex++);
+                    }
+                    stage = Stage.DELETED;
+                    break;
+                case DELETED:
+                    if (oldIndex < oldMarkers.length && oldMarkers[oldIndex] == DifferenceMarker.DELETED) {
+                        return row(oldIndex++, -1);
+                    }
+                    stage = Stage.BOTH;
+                    break;
+                default:
+                    if (canAddBoth()) {
+                        return row(oldIndex++, newIndex++);
+                    }
+                    stage = Stage.INSERTED;
+                    break;
+            }
+
+            if (++idleStages > Stage.values().length) {
+                throw new IllegalStateException("Lines " + oldIndex + " and " + newIndex + " cannot be aligned.");
+            }
+        }
+
+        rowOld = -1;
+        rowNew = -1;
+        return false;
+    }
+
+    /**
+     * Shows if the next lines of both texts can be at the same row.
+     */
+    private boolean canAddBoth() {
+        if (oldIndex >= oldMarkers.length || newIndex >= newMarkers.length) {
+            return false;
+        }
+        DifferenceMarker oldMarker = oldMarkers[oldIndex];
+        DifferenceMarker newMarker = newMarkers[newIndex];
+        return newMarker == DifferenceMarker.CHANGED && oldMarker == DifferenceMarker.CHANGED
+                || newMarker == DifferenceMarker.EQUAL && oldMarker == DifferenceMarker.EQUAL
+                || newMarker == DifferenceMarker.INSERTED && oldMarker == DifferenceMarker.DELETED;
+    }
+
+    /**
+     * Sets the current row.
+     */
+    private boolean row(int oldIndex, int newIndex) {
+        rowOld = oldIndex;
+        rowNew = newIndex;
+        return true;
+    }
+
+    /**
+     * Returns the index of the old line in the current row, -1 if the row has no old line.
+     */
+    public int getOldIndex() {
+        return rowOld;
+    }
+
+    /**
+     * Returns the index of the new line in the current row, -1 if the row has no new line.
+     */
+    public int getNewIndex() {
+        return rowNew;
+    }
+
+    /**
+     * Returns the marker of the old line in the current row, null if the row has no old line.
+     */
+    public DifferenceMarker getOldMarker() {
+        return rowOld < 0 ? null : oldMarkers[rowOld];
+    }
+
+    /**
+     * Returns the marker of the new line in the current row, null if the row has no new line.
+     */
+    public DifferenceMarker getNewMarker() {
+        return rowNew < 0 ? null : newMarkers[rowNew];
+    }
+}
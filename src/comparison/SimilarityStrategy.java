@@ -0,0 +1,28 @@
+package comparison;
+
+/**
+ * Ways of deciding whether two lines are similar enough to be considered
+ * the same line but changed.
+ *
+ * @see LineSimilarity
+ */
+public enum SimilarityStrategy {
+    /**
+     * Exact length of the longest common subsequence of characters.
+     */
+    EXACT,
+    /**
+     * Longest common subsequence of content-defined chunks of the lines.
+     */
+    CHUNKED,
+    /**
+     * Jaccard similarity of character shingles estimated by a MinHash sketch.
+     */
+    MIN_HASH,
+    /**
+     * Longest common subsequence of words and punctuation.
+     *
+     * @see TokenDiff
+     */
+    TOKENS
+}
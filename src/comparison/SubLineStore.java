@@ -0,0 +1,57 @@
+package comparison;
+
+import java.util.Objects;
+
+/**
+ * View of a range of lines of another store.
+ */
+final class SubLineStore implements LineStore {
+    /**
+     * Store the lines are taken from.
+     */
+    private final LineStore store;
+    /**
+     * Index of the first line of the range in the store.
+     */
+    private final int from;
+    /**
+     * Amount of lines in the range.
+     */
+    private final int size;
+
+    /**
+     * Creates a view of lines [from, to) of the passed store.
+     */
+    SubLineStore(LineStore store, int from, int to) {
+        Objects.checkFromToIndex(from, to, store.size());
+
+        this.store = store;
+        this.from = from;
+        this.size = to - from;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public String getLine(int index) {
+        return store.getLine(from + Objects.checkIndex(index, size));
+    }
+
+    @Override
+    public int hash(int index) {
+        return store.hash(from + Objects.checkIndex(index, size));
+    }
+
+    @Override
+    public boolean lineEquals(int index, LineStore other, int otherIndex) {
+        if (other instanceof SubLineStore) {
+            SubLineStore sub = (SubLineStore) other;
+            return store.lineEquals(from + Objects.checkIndex(index, size),
+                    sub.store, sub.from + Objects.checkIndex(otherIndex, sub.size));
+        }
+        return store.lineEquals(from + Objects.checkIndex(index, size), other, otherIndex);
+    }
+}
@@ -0,0 +1,93 @@
+package comparison;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * <p>Compares texts line by line, like {@link DiffAlgorithm}, but keeps no state between comparisons,
+ * so a single instance may be shared by all threads of a service.</p>
+ * <p>Id arrays, the interner table, the LCS table and other scratch memory are taken from
+ * a workspace of the calling thread and reused by its next comparisons, so in the steady state
+ * a comparison allocates little beyond its {@link DiffResult}. Workspaces keep arrays up to
+ * a limited length only, see {@link #MAX_RETAINED_INTS_PROPERTY}.</p>
+ */
+public final class TextDiffer {
+    /**
+     * Name of the system property overriding the default maximum length of an array kept by a thread.
+     * A thread keeps at most 19 such arrays, 76 MB with the default length.
+     */
+    public static final String MAX_RETAINED_INTS_PROPERTY = "comparison.workspace.maxRetainedInts";
+    /**
+     * Default maximum length of an array kept by a thread: 4 MB of ints.
+     */
+    public static final int DEFAULT_MAX_RETAINED_INTS = 1 << 20;
+
+    /**
+     * Template of the line similarity, every comparison uses its own copy.
+     */
+    private final LineSimilarity similarity;
+    /**
+     * Engine finding equal lines, or null if it is chosen by the planner.
+     */
+    private final DiffEngine engine;
+
+    /**
+     * Creates a new instance comparing lines with the default {@link LineSimilarity}.
+     */
+    public TextDiffer() {
+        this(new LineSimilarity());
+    }
+
+    /**
+     * Creates a new instance deciding which lines were changed like the passed similarity does.
+     * The similarity itself is never used, so its cached lines and used strategies are not shared,
+     * only token diffs of similar lines are.
+     *
+     * @throws NullPointerException If similarity is null.
+     */
+    public TextDiffer(LineSimilarity similarity) {
+        this(similarity, null);
+    }
+
+    /**
+     * Creates a new instance deciding which lines were changed like the passed similarity does
+     * and finding equal lines with the passed engine, which overrides {@link DiffPlanner#ENGINE_PROPERTY}.
+     *
+     * @param engine Engine finding equal lines, or null if it should be chosen by {@link DiffPlanner}.
+     * @throws NullPointerException If similarity is null.
+     */
+    public TextDiffer(LineSimilarity similarity, DiffEngine engine) {
+        this.similarity = Objects.requireNonNull(similarity, "Line similarity cannot be null.").newInstance();
+        this.engine = engine;
+    }
+
+    /**
+     * Finds a difference between texts.
+     *
+     * @throws NullPointerException If any of the texts is null.
+     */
+    public DiffResult diff(List<String> oldLines, List<String> newLines) {
+        Objects.requireNonNull(oldLines, "Cannot work with null list. oldLines was null.");
+        Objects.requireNonNull(newLines, "Cannot work with null list. newLines was null.");
+
+        return diff(new ListLineStore(oldLines), new ListLineStore(newLines));
+    }
+
+    /**
+     * Finds a difference between texts kept in passed stores.
+     *
+     * @throws NullPointerException     If any of the stores is null.
+     * @throws IllegalArgumentException If the stores are of different classes.
+     */
+    public DiffResult diff(LineStore oldLines, LineStore newLines) {
+        LineSimilarity copy = similarity.newInstance();
+        Workspace workspace = Workspace.get();
+        try {
+            DiffAlgorithm algorithm = new DiffAlgorithm(oldLines, newLines, copy, engine, workspace);
+            DifferenceMarker[][] markers = algorithm.getMarkers();
+            return new DiffResult(markers[0], markers[1], algorithm.getPlan(), copy.getUsedStrategies());
+        } finally {
+            workspace.release();
+        }
+    }
+}
@@ -1,20 +1,44 @@
 package comparison;
 
 import html.DiffPage;
+import html.Template;
+import output.DiffWriter;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 
 /**
- * Provides functionality for comparing texts from two files and saving the result as HTML page.
+ * Provides functionality for comparing texts from two files and saving the result as HTML page
+ * or in a machine-readable format.
  *
  * @author <a href="mailto:aabaranova_3@edu.hse.ru">Anastasia Baranova</a>
  */
-public class TextsComparator {
+public class TextsComparator implements AutoCloseable {
+    /**
+     * <p>Name of the system property setting the minimal size of files in bytes, starting from which
+     * identical regions of the files are found before comparing lines.</p>
+     *
+     * @see BlockFingerprint
+     */
+    public static final String BLOCK_MATCHING_MIN_SIZE_PROPERTY = "comparison.blocks.minFileSize";
+    /**
+     * Default minimal size of files for which identical regions are found before comparing lines.
+     */
+    public static final long DEFAULT_BLOCK_MATCHING_MIN_SIZE = 1024 * 1024;
+
     /**
      * Path to the file with old text.
      */
@@ -23,11 +47,44 @@ public class TextsComparator {
      * Path to the file with new text.
      */
     private final Path pathToNew;
+    /**
+     * Flag shows if lines should be kept outside of the Java heap.
+     */
+    private final boolean offHeap;
+    /**
+     * Flag shows if lines are compared and shown by words.
+     */
+    private final boolean tokenLevel;
+
+    /**
+     * Lines of old text.
+     */
+    private LineStore oldText;
+    /**
+     * Lines of new text.
+     */
+    private LineStore newText;
+    /**
+     * Markers of lines of old and new text.
+     */
+    private DifferenceMarker[][] markers;
+    /**
+     * Similarity lines have been paired with, keeps token diffs of changed lines.
+     */
+    private LineSimilarity similarity;
 
     /**
      * Found diff.
      */
     private Difference[][] diff;
+    /**
+     * Strategies used to decide which lines were changed.
+     */
+    private Set<SimilarityStrategy> usedStrategies;
+    /**
+     * Plans the texts were compared by.
+     */
+    private final List<DiffPlan> plans = new ArrayList<>();
 
     /**
      * Constructor creates a new comparator for comparing text from files at passed paths.
@@ -38,8 +95,40 @@ public class TextsComparator {
      * @throws FileNotFoundException If file at any of the passed paths does not exist.
      */
     public TextsComparator(Path pathToOld, Path pathToNew) throws FileNotFoundException {
+        this(pathToOld, pathToNew, false);
+    }
+
+    /**
+     * Constructor creates a new comparator for comparing text from files at passed paths.
+     *
+     * @param pathToOld Path to the file with old text.
+     * @param pathToNew Path to the file with new text.
+     * @param offHeap   True, if lines should be kept outside of the Java heap until the comparator is closed.
+     * @throws NullPointerException  If any of the passed paths is null.
+     * @throws FileNotFoundException If file at any of the passed paths does not exist.
+     * @see LineArena
+     */
+    public TextsComparator(Path pathToOld, Path pathToNew, boolean offHeap) throws FileNotFoundException {
+        this(pathToOld, pathToNew, offHeap, false);
+    }
+
+    /**
+     * Constructor creates a new comparator for comparing text from files at passed paths.
+     *
+     * @param pathToOld  Path to the file with old text.
+     * @param pathToNew  Path to the file with new text.
+     * @param offHeap    True, if lines should be kept outside of the Java heap until the comparator is closed.
+     * @param tokenLevel True, if lines should be compared by words and changed words should be highlighted,
+     *                   which suits prose with a paragraph per line.
+     * @throws NullPointerException  If any of the passed paths is null.
+     * @throws FileNotFoundException If file at any of the passed paths does not exist.
+     * @see LineArena
+     * @see TokenDiff
+     */
+    public TextsComparator(Path pathToOld, Path pathToNew, boolean offHeap, boolean tokenLevel)
+            throws FileNotFoundException {
         Objects.requireNonNull(pathToOld, "Path to the input file cannot be null. Path to the old file was null.");
-        Objects.requireNonNull(pathToOld, "Path to the input file cannot be null. Path to the new file was null.");
+        Objects.requireNonNull(pathToNew, "Path to the input file cannot be null. Path to the new file was null.");
 
         if (!Files.exists(pathToOld)) {
             throw new FileNotFoundException("File " + pathToOld + " does not exist.");
@@ -50,6 +139,138 @@ public class TextsComparator {
 
         this.pathToOld = pathToOld;
         this.pathToNew = pathToNew;
+        this.offHeap = offHeap;
+        this.tokenLevel = tokenLevel;
+    }
+
+    /**
+     * Reads the texts and compares them, unless it has already been done.
+     *
+     * @throws IOException If I/O errors occurs while reading input files.
+     */
+    private void compare() throws IOException {
+        if (markers != null) {
+            return;
+        }
+
+        similarity = tokenLevel ? LineSimilarity.byTokens() : new LineSimilarity();
+        if (canMatchBlocks()) {
+            compareBlocks(similarity);
+        } else {
+            DiffAlgorithm algorithm;
+            if (offHeap) {
+                var arenas = InputPipeline.loadBoth(pathToOld, pathToNew, LineArena::read);
+                oldText = arenas.get(0);
+                newText = arenas.get(1);
+                algorithm = new DiffAlgorithm(oldText, newText, similarity);
+            } else {
+                // Lines are interned while the files are being read.
+                InputPipeline input = InputPipeline.load(pathToOld, pathToNew);
+                oldText = input.getOldText();
+                newText = input.getNewText();
+                algorithm = new DiffAlgorithm(oldText, newText, input.getOldIds(), input.getNewIds(), similarity);
+            }
+            markers = algorithm.getMarkers();
+            plans.add(algorithm.getPlan());
+        }
+        usedStrategies = similarity.getUsedStrategies();
+    }
+
+    /**
+     * Shows if the files are big enough to look for identical regions before comparing lines.
+     * Regions are compared as raw bytes, so it is possible only when lines are read as UTF-8
+     * from files that are not compressed.
+     */
+    private boolean canMatchBlocks() throws IOException {
+        long minSize = Long.getLong(BLOCK_MATCHING_MIN_SIZE_PROPERTY, DEFAULT_BLOCK_MATCHING_MIN_SIZE);
+        return Charset.defaultCharset().equals(StandardCharsets.UTF_8)
+                && Files.size(pathToOld) >= minSize && Files.size(pathToNew) >= minSize
+                && !Compression.isCompressed(pathToOld) && !Compression.isCompressed(pathToNew);
+    }
+
+    /**
+     * <p>Finds regions of the files that are byte-identical, marks their lines EQUAL
+     * and compares lines only in the rest of the files.</p>
+     *
+     * @see BlockFingerprint
+     */
+    private void compareBlocks(LineSimilarity similarity) throws IOException {
+        var fingerprints = InputPipeline.loadBoth(pathToOld, pathToNew, BlockFingerprint::of);
+        var regions = BlockFingerprint.match(fingerprints.get(0), fingerprints.get(1));
+
+        List<String> oldList = null;
+        List<String> newList = null;
+        ByteLines.Consumer oldSink;
+        ByteLines.Consumer newSink;
+        if (offHeap) {
+            LineArena oldArena = new LineArena();
+            oldText = oldArena;
+            LineArena newArena = new LineArena();
+            newText = newArena;
+            oldSink = oldArena::add;
+            newSink = newArena::add;
+        } else {
+            oldList = new ArrayList<>();
+            newList = new ArrayList<>();
+            oldText = new ListLineStore(oldList);
+            newText = new ListLineStore(newList);
+            oldSink = toStrings(oldList);
+            newSink = toStrings(newList);
+        }
+
+        DifferenceMarker[] oldMarkers = new DifferenceMarker[1024];
+        DifferenceMarker[] newMarkers = new DifferenceMarker[1024];
+
+        try (FileChannel oldChannel = FileChannel.open(pathToOld, StandardOpenOption.READ);
+             FileChannel newChannel = FileChannel.open(pathToNew, StandardOpenOption.READ)) {
+            for (var region : regions) {
+                int oldFrom = oldText.size();
+                int newFrom = newText.size();
+
+                ByteLines.read(oldChannel, region.oldStart, region.oldEnd, oldSink);
+                if (region.identical && newList != null) {
+                    // Identical lines share strings.
+                    newList.addAll(oldList.subList(oldFrom, oldList.size()));
+                } else {
+                    ByteLines.read(newChannel, region.newStart, region.newEnd, newSink);
+                }
+
+                oldMarkers = ensureCapacity(oldMarkers, oldText.size());
+                newMarkers = ensureCapacity(newMarkers, newText.size());
+
+                if (region.identical) {
+                    Arrays.fill(oldMarkers, oldFrom, oldText.size(), DifferenceMarker.EQUAL);
+                    Arrays.fill(newMarkers, newFrom, newText.size(), DifferenceMarker.EQUAL);
+                    continue;
+                }
+
+                DiffAlgorithm algorithm = new DiffAlgorithm(new SubLineStore(oldText, oldFrom, oldText.size()),
+                        new SubLineStore(newText, newFrom, newText.size()), similarity);
+                var windowMarkers = algorithm.getMarkers();
+                plans.add(algorithm.getPlan());
+                System.arraycopy(windowMarkers[0], 0, oldMarkers, oldFrom, windowMarkers[0].length);
+                System.arraycopy(windowMarkers[1], 0, newMarkers, newFrom, windowMarkers[1].length);
+            }
+        }
+
+        markers = new DifferenceMarker[][]{
+                Arrays.copyOf(oldMarkers, oldText.size()),
+                Arrays.copyOf(newMarkers, newText.size())
+        };
+    }
+
+    /**
+     * Returns a consumer decoding UTF-8 lines to the passed list.
+     */
+    private static ByteLines.Consumer toStrings(List<String> lines) {
+        return (bytes, offset, length) -> lines.add(new String(bytes, offset, length, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns the passed array or its copy able to hold at least passed amount of markers.
+     */
+    private static DifferenceMarker[] ensureCapacity(DifferenceMarker[] markers, int size) {
+        return size <= markers.length ? markers : Arrays.copyOf(markers, Math.max(size, markers.length * 2));
     }
 
     /**
@@ -66,13 +287,47 @@ public class TextsComparator {
             return diff;
         }
 
-        List<String> textOne = Utils.readLines(pathToOld);
-        List<String> textTwo = Utils.readLines(pathToNew);
-
-        diff = new DiffAlgorithm(textOne, textTwo).getDiff();
+        compare();
+        diff = new Difference[][]{Utils.toDifferences(oldText, markers[0]), Utils.toDifferences(newText, markers[1])};
         return diff;
     }
 
+    /**
+     * Compares texts from files line by line without creating an object per line.
+     * Note that empty or blank lines are ignored.
+     *
+     * @return Array of two arrays with markers of lines of the old and the new file respectively.
+     * @throws IOException If I/O errors occurs while reading input files.
+     */
+    public DifferenceMarker[][] getMarkers() throws IOException {
+        compare();
+        return markers;
+    }
+
+    /**
+     * Returns strategies used to decide which lines were changed.
+     * Anything but {@link SimilarityStrategy#EXACT} means that some very long lines
+     * were compared approximately.
+     *
+     * @throws IOException If I/O errors occurs while reading input files.
+     */
+    public Set<SimilarityStrategy> getUsedStrategies() throws IOException {
+        compare();
+        return usedStrategies;
+    }
+
+    /**
+     * Returns plans the texts were compared by: one plan for whole texts, or one plan
+     * for every region compared when byte-identical regions of large files are skipped.
+     *
+     * @throws IOException If I/O errors occurs while reading input files.
+     * @see DiffPlanner
+     */
+    public List<DiffPlan> getPlans() throws IOException {
+        compare();
+        return Collections.unmodifiableList(plans);
+    }
+
     /**
      * Saves found differences as an HTML page.
      *
@@ -81,18 +336,66 @@ public class TextsComparator {
      * @throws IOException          If I/O errors occurs while reading input files or writing result.
      */
     public void saveDifferenceAsHTML(Path path) throws IOException {
+        saveDifferenceAsHTML(path, Template.getDefault());
+    }
+
+    /**
+     * Saves found differences as an HTML page built from the passed template.
+     *
+     * @param path     Path to the output file.
+     * @param template Template of the page.
+     * @throws NullPointerException If any of the arguments is null.
+     * @throws IOException          If I/O errors occurs while reading input files or writing result.
+     */
+    public void saveDifferenceAsHTML(Path path, Template template) throws IOException {
         Objects.requireNonNull(path, "Path was null.");
+        Objects.requireNonNull(template, "Template was null.");
+
+        var markers = getMarkers();
 
-        if (diff == null) {
-            getDiff();
+        DiffPage.Builder builder = DiffPage.getBuilder()
+                .addOld(oldText, markers[0])
+                .addNew(newText, markers[1])
+                .setTemplate(template);
+        if (tokenLevel) {
+            builder.setTokenLevel(similarity);
         }
+        DiffPage diffPage = builder.build();
 
+        diffPage.write(path);
+    }
+
+    /**
+     * Saves found differences in a machine-readable format. If the name of the file
+     * ends with ".gz", the output is compressed with gzip.
+     *
+     * @param path   Path to the output file.
+     * @param writer Writer of the format.
+     * @throws NullPointerException If any of the arguments is null.
+     * @throws IOException          If I/O errors occurs while reading input files or writing result.
+     */
+    public void saveDifference(Path path, DiffWriter writer) throws IOException {
+        Objects.requireNonNull(path, "Path was null.");
+        Objects.requireNonNull(writer, "Writer was null.");
 
-        DiffPage diffPage = DiffPage.getBuilder()
-                .addOld(diff[0])
-                .addNew(diff[1])
-                .build();
+        var markers = getMarkers();
 
-        diffPage.save(path);
+        try (OutputStream out = Compression.create(path)) {
+            writer.write(oldText, markers[0], newText, markers[1], out);
+        }
+    }
+
+    /**
+     * Frees memory of lines kept outside of the Java heap.
+     * The comparator cannot be used afterwards.
+     */
+    @Override
+    public void close() {
+        if (oldText instanceof LineArena) {
+            ((LineArena) oldText).close();
+        }
+        if (newText instanceof LineArena) {
+            ((LineArena) newText).close();
+        }
     }
 }
@@ -0,0 +1,224 @@
+package comparison;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * <p>Compares two lines word by word.</p>
+ * <p>Lines are split into tokens by words and punctuation, tokens are interned to integers
+ * without creating strings, and equal tokens are found by the engine chosen by
+ * {@link DiffPlanner#chooseTokenEngine(int[], int[])}, so the cost stays predictable
+ * even for lines of megabytes.</p>
+ */
+public final class TokenDiff {
+    /**
+     * Old line.
+     */
+    private final String oldLine;
+    /**
+     * New line.
+     */
+    private final String newLine;
+    /**
+     * Bounds of tokens of the old line, flattened.
+     */
+    private final int[] oldBounds;
+    /**
+     * Bounds of tokens of the new line, flattened.
+     */
+    private final int[] newBounds;
+    /**
+     * Markers of tokens of the old line: EQUAL or null.
+     */
+    private final DifferenceMarker[] oldMarkers;
+    /**
+     * Markers of tokens of the new line: EQUAL or null.
+     */
+    private final DifferenceMarker[] newMarkers;
+    /**
+     * Amount of equal tokens in each line.
+     */
+    private final int equalTokens;
+
+    /**
+     * Creates a new instance comparing passed lines.
+     */
+    private TokenDiff(String oldLine, String newLine) {
+        this.oldLine = oldLine;
+        this.newLine = newLine;
+        this.oldBounds = Tokenizer.tokenize(oldLine);
+        this.newBounds = Tokenizer.tokenize(newLine);
+        this.oldMarkers = new DifferenceMarker[oldBounds.length / 2];
+        this.newMarkers = new DifferenceMarker[newBounds.length / 2];
+
+        int[][] ids = intern();
+        switch (DiffPlanner.chooseTokenEngine(ids[0], ids[1])) {
+            case MYERS:
+                new MyersDiff(ids[0], ids[1], oldMarkers, newMarkers)
+                        .markEqual(0, oldMarkers.length, 0, newMarkers.length);
+                break;
+            case HISTOGRAM:
+                new HistogramDiff(ids[0], ids[1], oldMarkers, newMarkers)
+                        .markEqual(0, oldMarkers.length, 0, newMarkers.length);
+                break;
+            default:
+                new AnchoredDiff(ids[0], ids[1], oldMarkers, newMarkers)
+                        .markEqual(0, oldMarkers.length, 0, newMarkers.length);
+                break;
+        }
+
+        int equal = 0;
+        for (DifferenceMarker marker : oldMarkers) {
+            if (marker == DifferenceMarker.EQUAL) {
+                ++equal;
+            }
+        }
+        this.equalTokens = equal;
+    }
+
+    /**
+     * Compares the lines word by word.
+     *
+     * @throws NullPointerException If any of the lines is null.
+     */
+    public static TokenDiff of(String oldLine, String newLine) {
+        Objects.requireNonNull(oldLine, "Line cannot be null.");
+        Objects.requireNonNull(newLine, "Line cannot be null.");
+
+        return new TokenDiff(oldLine, newLine);
+    }
+
+    /**
+     * Assigns equal ids to equal tokens of both lines.
+     *
+     * @return Ids of tokens of the old and the new line.
+     */
+    private int[][] intern() {
+        int total = oldMarkers.length + newMarkers.length;
+        int capacity = Integer.highestOneBit(Math.max(16, total * 2 - 1)) << 1;
+        int mask = capacity - 1;
+
+        // Ids increased by one, zero marks an empty slot.
+        int[] table = new int[capacity];
+        // Line (0 for old, 1 for new) and index of the first token with the id, combined.
+        long[] representatives = new long[total];
+        int size = 0;
+
+        int[][] ids = {new int[oldMarkers.length], new int[newMarkers.length]};
+        for (int side = 0; side < 2; side++) {
+            String line = side == 0 ? oldLine : newLine;
+            int[] bounds = side == 0 ? oldBounds : newBounds;
+            for (int token = 0; token < ids[side].length; token++) {
+                int start = bounds[2 * token];
+                int end = bounds[2 * token + 1];
+                int hash = 1;
+                for (int c = start; c < end; c++) {
+                    hash = 31 * hash + line.charAt(c);
+                }
+                hash *= 0x9E3779B9;
+
+                for (int slot = (hash ^ (hash >>> 16)) & mask; ; slot = (slot + 1) & mask) {
+                    int id = table[slot] - 1;
+                    if (id < 0) {
+                        id = size++;
+                        representatives[id] = (long) side << 32 | token;
+                        table[slot] = id + 1;
+                        ids[side][token] = id;
+                        break;
+                    }
+                    if (tokenEquals(representatives[id], line, start, end)) {
+                        ids[side][token] = id;
+                        break;
+                    }
+                }
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Shows if the representative token equals to the passed range of the line.
+     */
+    private boolean tokenEquals(long representative, String line, int start, int end) {
+        int token = (int) representative;
+        boolean old = representative >>> 32 == 0;
+        int[] bounds = old ? oldBounds : newBounds;
+        int representativeStart = bounds[2 * token];
+        return bounds[2 * token + 1] - representativeStart == end - start
+                && (old ? oldLine : newLine).regionMatches(representativeStart, line, start, end - start);
+    }
+
+    /**
+     * Returns the amount of tokens of the old line.
+     */
+    public int getOldTokenCount() {
+        return oldMarkers.length;
+    }
+
+    /**
+     * Returns the amount of tokens of the new line.
+     */
+    public int getNewTokenCount() {
+        return newMarkers.length;
+    }
+
+    /**
+     * Returns the amount of tokens found in both lines.
+     */
+    public int getEqualTokenCount() {
+        return equalTokens;
+    }
+
+    /**
+     * Shows if equal tokens are at least 2/3 of tokens of each line,
+     * so the lines can be considered the same line but changed.
+     */
+    public boolean isSimilar() {
+        return equalTokens >= oldMarkers.length / 1.5 && equalTokens >= newMarkers.length / 1.5;
+    }
+
+    /**
+     * Returns character ranges of the old line with tokens absent in the new one.
+     * Neighbouring changed tokens form a single range together with whitespace between them.
+     *
+     * @return Start and end (exclusive) of every range in order, flattened.
+     */
+    public int[] getOldChanges() {
+        return getChanges(oldBounds, oldMarkers);
+    }
+
+    /**
+     * Returns character ranges of the new line with tokens absent in the old one.
+     * Neighbouring changed tokens form a single range together with whitespace between them.
+     *
+     * @return Start and end (exclusive) of every range in order, flattened.
+     */
+    public int[] getNewChanges() {
+        return getChanges(newBounds, newMarkers);
+    }
+
+    /**
+     * Joins runs of changed tokens into ranges.
+     */
+    private static int[] getChanges(int[] bounds, DifferenceMarker[] markers) {
+        int[] ranges = new int[16];
+        int count = 0;
+        for (int token = 0; token < markers.length; token++) {
+            if (markers[token] == DifferenceMarker.EQUAL) {
+                continue;
+            }
+
+            int last = token;
+            while (last + 1 < markers.length && markers[last + 1] != DifferenceMarker.EQUAL) {
+                ++last;
+            }
+            if (count + 2 > ranges.length) {
+                ranges = Arrays.copyOf(ranges, ranges.length * 2);
+            }
+            ranges[count++] = bounds[2 * token];
+            ranges[count++] = bounds[2 * last + 1];
+            token = last;
+        }
+        return Arrays.copyOf(ranges, count);
+    }
+}
@@ -0,0 +1,65 @@
+package comparison;
+
+import java.util.Arrays;
+
+/**
+ * <p>Splits text into words and punctuation.</p>
+ * <p>A token is either a run of letters, digits and underscores, or a single other character
+ * that is not whitespace. Whitespace only separates tokens. Tokens are returned as bounds
+ * in the text, so no strings are created.</p>
+ */
+final class Tokenizer {
+    /**
+     * Private constructor to prevent instance creation.
+     */
+    private Tokenizer() {
+    }
+
+    /**
+     * Finds tokens of the text.
+     *
+     * @return Start and end (exclusive) of every token in order, flattened.
+     */
+    static int[] tokenize(CharSequence text) {
+        // Prose has about one token per six characters.
+        int[] bounds = new int[Math.max(16, text.length() / 3)];
+        int count = 0;
+
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            int codePoint = Character.codePointAt(text, i);
+            int next = i + Character.charCount(codePoint);
+            if (Character.isWhitespace(codePoint)) {
+                i = next;
+                continue;
+            }
+
+            if (isWordPart(codePoint)) {
+                while (next < length) {
+                    int following = Character.codePointAt(text, next);
+                    if (!isWordPart(following)) {
+                        break;
+                    }
+                    next += Character.charCount(following);
+                }
+            }
+
+            if (count + 2 > bounds.length) {
+                bounds = Arrays.copyOf(bounds, bounds.length * 2);
+            }
+            bounds[count++] = i;
+            bounds[count++] = next;
+            i = next;
+        }
+
+        return Arrays.copyOf(bounds, count);
+    }
+
+    /**
+     * Shows if the character can be a part of a word.
+     */
+    private static boolean isWordPart(int codePoint) {
+        return Character.isLetterOrDigit(codePoint) || codePoint == '_';
+    }
+}
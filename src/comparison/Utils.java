@@ -2,18 +2,41 @@ package comparison;
 
 import java.io.BufferedReader;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 public class Utils {
+    /**
+     * <p>Name of the system property selecting the kernel used by {@link #getLCSLength(String, String)}.</p>
+     * <p>Supported values are {@code auto} (default), {@code bitparallel} and {@code scalar}.
+     * The property is read once, when the class is loaded.</p>
+     */
+    public static final String LCS_KERNEL_PROPERTY = "comparison.lcs.kernel";
+
+    /**
+     * Kernel used by {@link #getLCSLength(String, String)}, the value of {@link #LCS_KERNEL_PROPERTY}.
+     */
+    private static final String LCS_KERNEL = System.getProperty(LCS_KERNEL_PROPERTY, "auto");
+
+    /**
+     * Shorter strings are compared with the scalar kernel when the kernel is {@code auto}:
+     * for them building the bit masks costs more than the comparison itself.
+     */
+    private static final int BIT_PARALLEL_THRESHOLD = 16;
+
     /**
      * Reads all lines from the file at the passed path.
      * Ignores empty and blank lines.
+     * Files compressed with gzip or zlib are decompressed while being read.
      *
      * @return List of read lines.
      * @throws NullPointerException  If passed path is null.
@@ -29,17 +52,17 @@ public class Utils {
 
         List<String> lines = new ArrayList<>();
 
-        BufferedReader bufferedReader = new BufferedReader(new FileReader(path.toFile()));
-        String str;
+        try (BufferedReader bufferedReader = new BufferedReader(
+                new InputStreamReader(Compression.open(path), Charset.defaultCharset()))) {
+            String str;
 
-        while ((str = bufferedReader.readLine()) != null) {
-            if (!str.trim().isEmpty()) {
-                lines.add(str.trim());
+            while ((str = bufferedReader.readLine()) != null) {
+                if (!str.trim().isEmpty()) {
+                    lines.add(str.trim());
+                }
             }
         }
 
-        bufferedReader.close();
-
         return lines;
     }
 
@@ -53,18 +76,82 @@ public class Utils {
         Objects.requireNonNull(x, "Cannot find LCS for null object.");
         Objects.requireNonNull(y, "Cannot find LCS for null object.");
 
+        int[][] ids = getLineIds(x, y);
+        return getLCSTable(ids[0], ids[1]);
+    }
+
+    /**
+     * Finds an LCS table for 2 passed arrays of line ids.
+     *
+     * @return LCS table.
+     * @throws NullPointerException If any of passed arrays is null.
+     * @see #getLineIds(Difference[], Difference[])
+     */
+    public static int[][] getLCSTable(int[] x, int[] y) {
+        Objects.requireNonNull(x, "Cannot find LCS for null object.");
+        Objects.requireNonNull(y, "Cannot find LCS for null object.");
+
         int[][] table = new int[x.length + 1][y.length + 1];
 
         for (int i = 1; i < x.length + 1; ++i) {
+            int[] previous = table[i - 1];
+            int[] current = table[i];
+            int id = x[i - 1];
             for (int j = 1; j < y.length + 1; ++j) {
-                table[i][j] = x[i - 1].getLine().equals(y[j - 1].getLine())
-                        ? table[i - 1][j - 1] + 1
-                        : Math.max(table[i - 1][j], table[i][j - 1]);
+                current[j] = id == y[j - 1]
+                        ? previous[j - 1] + 1
+                        : Math.max(previous[j], current[j - 1]);
             }
         }
         return table;
     }
 
+    /**
+     * Fills the flattened LCS table of the first n ids of x and the first m ids of y:
+     * the cell of row i and column j is at index i * (m + 1) + j.
+     * The table must have at least (n + 1) * (m + 1) cells, their content is overwritten.
+     */
+    static void fillLCSTable(int[] x, int n, int[] y, int m, int[] table) {
+        int width = m + 1;
+        Arrays.fill(table, 0, width, 0);
+        for (int i = 1; i < n + 1; ++i) {
+            int previous = (i - 1) * width;
+            int current = i * width;
+            int id = x[i - 1];
+            table[current] = 0;
+            for (int j = 1; j < width; ++j) {
+                table[current + j] = id == y[j - 1]
+                        ? table[previous + j - 1] + 1
+                        : Math.max(table[previous + j], table[current + j - 1]);
+            }
+        }
+    }
+
+    /**
+     * <p>Replaces lines of 2 passed arrays with integer ids.</p>
+     * <p>Equal lines get equal ids, so lines can be compared with a single
+     * integer comparison instead of {@link String#equals(Object)}.</p>
+     *
+     * @return 2 arrays of ids for lines of x and y respectively.
+     * @throws NullPointerException If any of passed arrays is null.
+     */
+    public static int[][] getLineIds(Difference[] x, Difference[] y) {
+        Objects.requireNonNull(x, "Cannot find ids for null object.");
+        Objects.requireNonNull(y, "Cannot find ids for null object.");
+
+        Map<String, Integer> ids = new HashMap<>();
+        int[] xIds = new int[x.length];
+        int[] yIds = new int[y.length];
+
+        for (int i = 0; i < x.length; i++) {
+            xIds[i] = ids.computeIfAbsent(x[i].getLine(), line -> ids.size());
+        }
+        for (int i = 0; i < y.length; i++) {
+            yIds[i] = ids.computeIfAbsent(y[i].getLine(), line -> ids.size());
+        }
+        return new int[][]{xIds, yIds};
+    }
+
     /**
      * Finds an LCS table for 2 passed strings.
      *
@@ -86,4 +173,129 @@ public class Utils {
         }
         return table;
     }
+
+    /**
+     * <p>Finds the length of the longest common subsequence of 2 passed strings.</p>
+     * <p>Unlike {@link #getLCSTable(String, String)} does not build the whole table.
+     * Depending on {@link #LCS_KERNEL_PROPERTY} the length is found either by the bit-parallel
+     * kernel processing 64 characters per operation, or by the scalar kernel keeping two rows
+     * of the table. The scalar kernel is used as a fallback for short strings.</p>
+     *
+     * @return LCS length.
+     * @throws NullPointerException If any of passed strings is null.
+     */
+    public static int getLCSLength(String x, String y) {
+        return getLCSLength(x, y, LCS_KERNEL);
+    }
+
+    /**
+     * Finds the length of the longest common subsequence of 2 passed strings with the passed kernel,
+     * one of the values of {@link #LCS_KERNEL_PROPERTY}.
+     *
+     * @return LCS length.
+     * @throws NullPointerException If any of passed strings is null.
+     */
+    public static int getLCSLength(String x, String y, String kernel) {
+        Objects.requireNonNull(x, "Cannot find LCS for null string.");
+        Objects.requireNonNull(y, "Cannot find LCS for null string.");
+
+        boolean bitParallel = "bitparallel".equals(kernel)
+                || !"scalar".equals(kernel) && Math.min(x.length(), y.length()) >= BIT_PARALLEL_THRESHOLD;
+
+        return bitParallel ? BitParallelLCS.length(x, y) : getScalarLCSLength(x, y);
+    }
+
+    /**
+     * Finds the length of the longest common subsequence of 2 passed strings
+     * keeping only two rows of the LCS table.
+     */
+    private static int getScalarLCSLength(String x, String y) {
+        int[] previous = new int[y.length() + 1];
+        int[] current = new int[y.length() + 1];
+
+        for (int i = 1; i < x.length() + 1; ++i) {
+            char c = x.charAt(i - 1);
+            for (int j = 1; j < y.length() + 1; ++j) {
+                current[j] = c == y.charAt(j - 1)
+                        ? previous[j - 1] + 1
+                        : Math.max(previous[j], current[j - 1]);
+            }
+            int[] tmp = previous;
+            previous = current;
+            current = tmp;
+        }
+        return previous[y.length()];
+    }
+
+    /**
+     * <p>Finds the longest strictly increasing subsequence of the first length values
+     * of the passed array in O(n log n) time (patience sorting).</p>
+     *
+     * @return Indices of the values forming the subsequence, in increasing order.
+     * @throws NullPointerException If passed array is null.
+     */
+    public static int[] getLongestIncreasingSubsequence(int[] values, int length) {
+        Objects.requireNonNull(values, "Cannot find subsequence for null array.");
+
+        int[] tails = new int[length];
+        int size = getLongestIncreasingSubsequence(values, length, tails, new int[length]);
+        return Arrays.copyOf(tails, size);
+    }
+
+    /**
+     * Finds the longest strictly increasing subsequence of the first length values of the passed array
+     * in passed scratch arrays of at least that length.
+     *
+     * @return Length of the subsequence. Indices of its values are put into tails in increasing order.
+     */
+    static int getLongestIncreasingSubsequence(int[] values, int length, int[] tails, int[] previous) {
+        // Tails[k] is the index of the smallest value ending an increasing subsequence of length k + 1.
+        int size = 0;
+
+        for (int i = 0; i < length; i++) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (values[tails[middle]] < values[i]) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            previous[i] = low > 0 ? tails[low - 1] : -1;
+            tails[low] = i;
+            if (low == size) {
+                ++size;
+            }
+        }
+
+        // Only links are read from here on, so the indices overwrite tails.
+        for (int k = size - 1, i = size > 0 ? tails[size - 1] : -1; k >= 0; --k, i = previous[i]) {
+            tails[k] = i;
+        }
+        return size;
+    }
+
+    /**
+     * Creates an object for every line with the marker showing changes occurred to it.
+     *
+     * @return Lines with their markers.
+     * @throws NullPointerException     If any of the arguments is null.
+     * @throws IllegalArgumentException If amounts of lines and markers differ.
+     */
+    public static Difference[] toDifferences(LineStore lines, DifferenceMarker[] markers) {
+        Objects.requireNonNull(lines, "Lines cannot be null.");
+        Objects.requireNonNull(markers, "Markers cannot be null.");
+        if (lines.size() != markers.length) {
+            throw new IllegalArgumentException("Amounts of lines and markers differ.");
+        }
+
+        Difference[] differences = new Difference[markers.length];
+        for (int i = 0; i < markers.length; i++) {
+            differences[i] = new Difference(lines.getLine(i));
+            differences[i].setMarker(markers[i]);
+        }
+        return differences;
+    }
 }
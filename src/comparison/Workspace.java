@@ -0,0 +1,144 @@
+package comparison;
+
+/**
+ * <p>Scratch memory of comparisons made by one thread: id arrays, the interner table,
+ * the LCS table, diagonals of the Myers algorithm and scratch arrays of the planner and other engines.</p>
+ * <p>Arrays are reused by the next comparisons of the thread and grow on demand, but arrays
+ * longer than {@link TextDiffer#MAX_RETAINED_INTS_PROPERTY} ints are allocated for a single
+ * comparison and are not kept, so a thread that once compared huge texts does not hold their memory.</p>
+ * <p>At worst a thread keeps an array for each of {@link #SLOTS} slots and four arrays of the interner,
+ * all of the maximum length: (15 + 4) * 4 MB = 76 MB with the default maximum of 1M ints. Usually most
+ * of them are much shorter, since they are sized by the amount of distinct lines or anchors, or hold a few ranges.</p>
+ */
+final class Workspace {
+    /**
+     * Slot of ids of lines of an old text.
+     */
+    static final int OLD_IDS = 0;
+    /**
+     * Slot of ids of lines of a new text.
+     */
+    static final int NEW_IDS = 1;
+    /**
+     * Slot of the flattened LCS table.
+     */
+    static final int TABLE = 2;
+    /**
+     * Slot of diagonals of the Myers algorithm going forward.
+     */
+    static final int FORWARD = 3;
+    /**
+     * Slot of diagonals of the Myers algorithm going backward.
+     */
+    static final int BACKWARD = 4;
+    /**
+     * Slot of occurrence counters of ids in an old range.
+     */
+    static final int OLD_COUNTS = 5;
+    /**
+     * Slot of occurrence counters of ids in a new range.
+     */
+    static final int NEW_COUNTS = 6;
+    /**
+     * Slot of positions of ids in an old range.
+     */
+    static final int POSITIONS = 7;
+    /**
+     * Slot of links between occurrences of ids in an old range.
+     */
+    static final int CHAIN = 8;
+    /**
+     * Slot of indices of anchors in an old text.
+     */
+    static final int OLD_ANCHORS = 9;
+    /**
+     * Slot of indices of anchors in a new text.
+     */
+    static final int NEW_ANCHORS = 10;
+    /**
+     * Slot of indices forming the longest increasing subsequence.
+     */
+    static final int SEQUENCE = 11;
+    /**
+     * Slot of links between elements of increasing subsequences.
+     */
+    static final int LINKS = 12;
+    /**
+     * Slot of the stack of ranges of the Myers algorithm.
+     */
+    static final int MYERS_RANGES = 13;
+    /**
+     * Slot of the stack of ranges of coarse engines, which compare some ranges with the Myers algorithm.
+     */
+    static final int COARSE_RANGES = 14;
+    /**
+     * Amount of slots.
+     */
+    static final int SLOTS = 15;
+
+    /**
+     * Workspaces of threads.
+     */
+    private static final ThreadLocal<Workspace> WORKSPACES = ThreadLocal.withInitial(Workspace::new);
+
+    /**
+     * Maximum length of a kept array.
+     */
+    private final int maxRetainedInts = Integer.getInteger(TextDiffer.MAX_RETAINED_INTS_PROPERTY,
+            TextDiffer.DEFAULT_MAX_RETAINED_INTS);
+
+    /**
+     * Kept arrays by slots.
+     */
+    private final int[][] arrays = new int[SLOTS][];
+
+    /**
+     * Interner reused by comparisons.
+     */
+    private final LineInterner interner = new LineInterner();
+
+    /**
+     * Private constructor, instances are obtained with {@link #get()}.
+     */
+    private Workspace() {
+    }
+
+    /**
+     * Returns the workspace of the current thread.
+     */
+    static Workspace get() {
+        return WORKSPACES.get();
+    }
+
+    /**
+     * <p>Returns an array of at least the passed length for the slot.</p>
+     * <p>The content of the array is undefined. The array stays valid until the slot is requested again.</p>
+     */
+    int[] getInts(int slot, int length) {
+        int[] array = arrays[slot];
+        if (array != null && array.length >= length) {
+            return array;
+        }
+
+        int[] grown = new int[array == null ? length : (int) Math.max(length, Math.min(2L * array.length, maxRetainedInts))];
+        arrays[slot] = grown.length <= maxRetainedInts ? grown : null;
+        return grown;
+    }
+
+    /**
+     * Returns the interner of the workspace, empty.
+     *
+     * @see LineInterner#clear(int)
+     */
+    LineInterner getInterner() {
+        interner.clear(maxRetainedInts);
+        return interner;
+    }
+
+    /**
+     * Drops references to texts interned by the last comparison.
+     */
+    void release() {
+        interner.clear(maxRetainedInts);
+    }
+}
@@ -1,15 +1,31 @@
 package html;
 
+import comparison.Compression;
 import comparison.Difference;
 import comparison.DifferenceMarker;
+import comparison.LineSimilarity;
+import comparison.LineStore;
+import comparison.ListLineStore;
+import comparison.RowAligner;
+import comparison.TokenDiff;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * <p>Describes an HTML page displaying the difference between two texts.</p>
@@ -21,31 +37,300 @@ import java.util.Objects;
  */
 public class DiffPage {
     /**
-     * URL of template HTML file.
+     * <p>Name of the system property setting the amount of threads rows of the table are rendered by.</p>
+     * <p>If it is more than 1, rows of large tables are split into chunks rendered at the same time
+     * into separate buffers, which are written in order with gathering writes.
+     * Pages saved compressed are always rendered by one thread.</p>
      */
-    private final InputStream templateHTML = DiffPage.class.getClassLoader().getResourceAsStream("diff.html");
+    public static final String RENDER_THREADS_PROPERTY = "html.render.threads";
+    /**
+     * Name of the system property setting the minimal amount of lines of both texts,
+     * starting from which rows are rendered by several threads.
+     */
+    public static final String PARALLEL_MIN_LINES_PROPERTY = "html.render.parallelMinLines";
+    /**
+     * Default minimal amount of lines of both texts, starting from which rows are rendered by several threads.
+     */
+    public static final int DEFAULT_PARALLEL_MIN_LINES = 100_000;
 
     /**
-     * Result text of HTML file.
+     * Amount of rows in a chunk rendered by one thread.
+     */
+    private static final int CHUNK_ROWS = 8192;
+    /**
+     * Amount of chunks per thread that may be rendered but not yet written.
      */
-    private String HTML;
+    private static final int CHUNKS_PER_THREAD = 2;
+
+    /**
+     * Compiled template of the page.
+     */
+    private Template template;
+
+    /**
+     * Flag shows if changed words are highlighted in changed lines.
+     */
+    private boolean tokenLevel;
+    /**
+     * Similarity that paired changed lines, keeps their token diffs. Null if lines are compared again.
+     */
+    private LineSimilarity similarity;
+
+    /**
+     * Lines of an old text.
+     */
+    private LineStore oldText;
+    /**
+     * Lines of a new text.
+     */
+    private LineStore newText;
+
+    /**
+     * Array of markers showing changes in an old text.
+     */
+    private DifferenceMarker[] oldMarkers;
+    /**
+     * Array of markers showing changes in a new text.
+     */
+    private DifferenceMarker[] newMarkers;
 
     /**
      * Saves HTML page to the file ar the passed path.
+     * If the name of the file ends with ".gz", the page is compressed with gzip.
+     * If the page cannot be saved, prints a message instead of throwing, see {@link #write(Path)}.
      *
      * @param path Path to the output file.
      * @throws NullPointerException If path is null.
      */
     public void save(Path path) {
-        Objects.requireNonNull(path, "Path cannot be null.");
-
         try {
-            Files.writeString(path, HTML);
+            write(path);
         } catch (IOException e) {
             System.out.println("Cannot save the page.");
         }
     }
 
+    /**
+     * Saves HTML page to the file ar the passed path.
+     * If the name of the file ends with ".gz", the page is compressed with gzip.
+     *
+     * @param path Path to the output file.
+     * @throws NullPointerException If path is null.
+     * @throws IOException          If I/O errors occurs while writing the page.
+     */
+    public void write(Path path) throws IOException {
+        Objects.requireNonNull(path, "Path cannot be null.");
+
+        int threads = Integer.getInteger(RENDER_THREADS_PROPERTY, Runtime.getRuntime().availableProcessors());
+        boolean parallel = threads > 1
+                && (long) oldMarkers.length + newMarkers.length
+                >= Integer.getInteger(PARALLEL_MIN_LINES_PROPERTY, DEFAULT_PARALLEL_MIN_LINES)
+                && !path.getFileName().toString().toLowerCase().endsWith(Compression.GZIP_EXTENSION);
+
+        if (parallel) {
+            saveInParallel(path, threads);
+        } else {
+            try (Writer writer = new BufferedWriter(
+                    new OutputStreamWriter(Compression.create(path), StandardCharsets.UTF_8))) {
+                write(writer);
+            }
+        }
+    }
+
+    /**
+     * Saves the page rendering chunks of rows by passed amount of threads.
+     * Rendered chunks are written to the file in order, several at once with a gathering write.
+     */
+    private void saveInParallel(Path path, int threads) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "render");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+             Writer writer = new BufferedWriter(
+                     new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.UTF_8))) {
+            template.render(writer, Map.of(Template.TABLE_PLACEHOLDER, out -> {
+                // Text before the table goes first.
+                out.flush();
+                writeChunks(channel, executor, threads * CHUNKS_PER_THREAD);
+            }));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Writes all rows of the table to the channel, rendering chunks of them with the executor.
+     *
+     * @param maxPending Amount of chunks that may be rendered but not yet written.
+     */
+    private void writeChunks(FileChannel channel, ExecutorService executor, int maxPending) throws IOException {
+        RowAligner rows = new RowAligner(oldMarkers, newMarkers);
+        Deque<Future<ByteBuffer>> pending = new ArrayDeque<>();
+        boolean hasRows = true;
+
+        while (hasRows || !pending.isEmpty()) {
+            while (hasRows && pending.size() < maxPending) {
+                RowAligner chunk = rows.copy();
+                pending.add(executor.submit(() -> renderChunk(chunk)));
+                for (int i = 0; i < CHUNK_ROWS && hasRows; i++) {
+                    hasRows = rows.next();
+                }
+            }
+
+            // The first chunk is waited for, the next ones are written with it if they are already rendered.
+            List<ByteBuffer> buffers = new ArrayList<>();
+            buffers.add(getChunk(pending.poll()));
+            while (!pending.isEmpty() && pending.peek().isDone()) {
+                buffers.add(getChunk(pending.poll()));
+            }
+
+            ByteBuffer[] sources = buffers.toArray(new ByteBuffer[0]);
+            long remaining = 0;
+            for (ByteBuffer source : sources) {
+                remaining += source.remaining();
+            }
+            while (remaining > 0) {
+                remaining -= channel.write(sources);
+            }
+        }
+    }
+
+    /**
+     * Renders the next chunk of rows into a buffer.
+     */
+    private ByteBuffer renderChunk(RowAligner rows) throws IOException {
+        ChunkBuffer buffer = new ChunkBuffer();
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(buffer, StandardCharsets.UTF_8))) {
+            for (int i = 0; i < CHUNK_ROWS && rows.next(); i++) {
+                writeRow(out, rows);
+            }
+        }
+        return buffer.toByteBuffer();
+    }
+
+    /**
+     * Waits for the chunk to be rendered.
+     */
+    private static ByteBuffer getChunk(Future<ByteBuffer> chunk) throws IOException {
+        try {
+            return chunk.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Rendering was interrupted.");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException("Cannot render the page.", e.getCause());
+        }
+    }
+
+    /**
+     * Writes HTML page to the passed writer.
+     *
+     * @throws NullPointerException If writer is null.
+     * @throws IOException          If an I/O error occurs.
+     */
+    public void write(Writer out) throws IOException {
+        Objects.requireNonNull(out, "Writer cannot be null.");
+
+        template.render(out, Map.of(Template.TABLE_PLACEHOLDER, this::writeTable));
+    }
+
+    /**
+     * Writes all rows of the table.
+     */
+    private void writeTable(Writer out) throws IOException {
+        RowAligner rows = new RowAligner(oldMarkers, newMarkers);
+        while (rows.next()) {
+            writeRow(out, rows);
+        }
+    }
+
+    /**
+     * Writes the current row of the table.
+     */
+    private void writeRow(Writer out, RowAligner rows) throws IOException {
+        out.write("<tr>");
+        if (tokenLevel && rows.getOldMarker() == DifferenceMarker.CHANGED) {
+            String oldLine = oldText.getLine(rows.getOldIndex());
+            String newLine = newText.getLine(rows.getNewIndex());
+            TokenDiff tokens = similarity == null
+                    ? TokenDiff.of(oldLine, newLine) : similarity.getTokenDiff(oldLine, newLine);
+            writeChangedCell(out, oldLine, tokens.getOldChanges());
+            writeChangedCell(out, newLine, tokens.getNewChanges());
+        } else {
+            writeCell(out, oldText, oldMarkers, rows.getOldIndex());
+            writeCell(out, newText, newMarkers, rows.getNewIndex());
+        }
+        out.write("</tr>\n");
+    }
+
+    /**
+     * Writes a td tag with the changed line, wrapping changed words into span tags.
+     *
+     * @param changes Character ranges of changed words, flattened.
+     */
+    private static void writeChangedCell(Writer out, String line, int[] changes) throws IOException {
+        out.write("<td class = \"changed\">");
+        int position = 0;
+        for (int k = 0; k < changes.length; k += 2) {
+            HtmlEscaper.escape(line, position, changes[k], out);
+            out.write("<span class = \"token\">");
+            HtmlEscaper.escape(line, changes[k], changes[k + 1], out);
+            out.write("</span>");
+            position = changes[k + 1];
+        }
+        HtmlEscaper.escape(line, position, line.length(), out);
+        out.write("</td>");
+    }
+
+    /**
+     * Writes a td tag with the line at passed index and class based on
+     * what kind of changes occurred to the line.
+     */
+    private static void writeCell(Writer out, LineStore text, DifferenceMarker[] markers, int index)
+            throws IOException {
+        if (index < 0) {
+            out.write("<td></td>");
+            return;
+        }
+
+        DifferenceMarker marker = markers[index];
+        out.write(marker == DifferenceMarker.DELETED
+                ? "<td class = \"deleted\">"
+                : marker == DifferenceMarker.CHANGED
+                ? "<td class = \"changed\">"
+                : marker == DifferenceMarker.INSERTED
+                ? "<td class = \"inserted\">"
+                : "<td>");
+        HtmlEscaper.escape(text.getLine(index), out);
+        out.write("</td>");
+    }
+
+    /**
+     * Rendered rows, which are written without copying.
+     */
+    private static class ChunkBuffer extends ByteArrayOutputStream {
+        private ChunkBuffer() {
+            super(CHUNK_ROWS * 64);
+        }
+
+        /**
+         * Returns the written bytes.
+         */
+        private ByteBuffer toByteBuffer() {
+            return ByteBuffer.wrap(buf, 0, count);
+        }
+    }
+
     /**
      * Private constructor to prevent instance creation without using Builder.
      */
@@ -72,34 +357,6 @@ public class DiffPage {
         private Builder() {
         }
 
-        /**
-         * Array of markers showing changes in an old text.
-         */
-        private DifferenceMarker[] oldMarkers;
-        /**
-         * Array of markers showing changes in a new text.
-         */
-        private DifferenceMarker[] newMarkers;
-
-        /**
-         * HTML-formatted strings containing old text lines inside td tags
-         * with specified class based on what kind of changes occurred to the line.
-         */
-        private List<String> oldHTML;
-        /**
-         * HTML-formatted strings containing new text lines inside td tags
-         * with specified class based on what kind of changes occurred to the line.
-         */
-        private List<String> newHTML;
-
-        /**
-         * HTML-formatted string containing all lines of both texts presented as a table cells.
-         *
-         * @see #oldHTML
-         * @see #newHTML
-         */
-        private String HTMLTable;
-
         /**
          * Flag shows if old text has already been added to the page.
          */
@@ -110,27 +367,29 @@ public class DiffPage {
         private boolean newSet = false;
 
         /**
-         * Adds lines of the text to the HTMl page.
+         * Copies lines of the text.
          *
-         * @param text  Lines of the text with changes occurred to them.
-         * @param isOld True, if an old text should be added, false, if a new one.
+         * @param text Lines of the text with changes occurred to them.
          */
-        private void setText(Difference[] text, boolean isOld) {
-            var lines = isOld ? oldHTML : newHTML;
-            var markers = isOld ? oldMarkers : newMarkers;
+        private LineStore getLines(Difference[] text) {
+            List<String> lines = new ArrayList<>(text.length);
+            for (Difference line : text) {
+                lines.add(line.getLine());
+            }
+            return new ListLineStore(lines);
+        }
 
+        /**
+         * Copies markers of the text lines.
+         *
+         * @param text Lines of the text with changes occurred to them.
+         */
+        private DifferenceMarker[] getMarkers(Difference[] text) {
+            var markers = new DifferenceMarker[text.length];
             for (int i = 0; i < text.length; i++) {
-                String cls = text[i].getMarker() == DifferenceMarker.DELETED
-                        ? "class = \"deleted\""
-                        : text[i].getMarker() == DifferenceMarker.CHANGED
-                        ? "class = \"changed\""
-                        : text[i].getMarker() == DifferenceMarker.INSERTED
-                        ? "class = \"inserted\""
-                        : "";
-                lines.add("<td " + cls + ">" + text[i].getLine() + "</td>\n");
-
                 markers[i] = text[i].getMarker();
             }
+            return markers;
         }
 
         /**
@@ -142,10 +401,27 @@ public class DiffPage {
         public Builder addOld(Difference[] text) {
             Objects.requireNonNull(text);
 
-            oldHTML = new ArrayList<>();
-            oldMarkers = new DifferenceMarker[text.length];
+            return addOld(getLines(text), getMarkers(text));
+        }
+
+        /**
+         * Adds lines of an old text to the HTMl page. Lines are read from the store
+         * when the page is written, so the store must stay open until then.
+         *
+         * @param text    Lines of the text.
+         * @param markers Markers showing changes occurred to the lines.
+         * @throws NullPointerException     If any of the arguments is null.
+         * @throws IllegalArgumentException If amounts of lines and markers differ.
+         */
+        public Builder addOld(LineStore text, DifferenceMarker[] markers) {
+            Objects.requireNonNull(text);
+            Objects.requireNonNull(markers);
+            if (text.size() != markers.length) {
+                throw new IllegalArgumentException("Amounts of lines and markers differ.");
+            }
 
-            setText(text, true);
+            oldText = text;
+            oldMarkers = markers;
             oldSet = true;
 
             return this;
@@ -160,117 +436,86 @@ public class DiffPage {
         public Builder addNew(Difference[] text) {
             Objects.requireNonNull(text);
 
-            newHTML = new ArrayList<>();
-            newMarkers = new DifferenceMarker[text.length];
+            return addNew(getLines(text), getMarkers(text));
+        }
+
+        /**
+         * Adds lines of a new text to the HTMl page. Lines are read from the store
+         * when the page is written, so the store must stay open until then.
+         *
+         * @param text    Lines of the text.
+         * @param markers Markers showing changes occurred to the lines.
+         * @throws NullPointerException     If any of the arguments is null.
+         * @throws IllegalArgumentException If amounts of lines and markers differ.
+         */
+        public Builder addNew(LineStore text, DifferenceMarker[] markers) {
+            Objects.requireNonNull(text);
+            Objects.requireNonNull(markers);
+            if (text.size() != markers.length) {
+                throw new IllegalArgumentException("Amounts of lines and markers differ.");
+            }
 
-            setText(text, false);
+            newText = text;
+            newMarkers = markers;
             newSet = true;
 
             return this;
         }
 
         /**
-         * Shows if lines in the passed positions in an old and a new text can be at the same row of the table.
+         * Sets a template of the page. If not set, the default template is used.
+         *
+         * @throws NullPointerException If template is null.
          */
-        private boolean canAddBoth(int oldIndex, int newIndex) {
-            return newIndex < newMarkers.length && oldIndex < oldMarkers.length &&
-                    (newMarkers[newIndex] == DifferenceMarker.CHANGED && oldMarkers[oldIndex] == DifferenceMarker.CHANGED
-                            || newMarkers[newIndex] == DifferenceMarker.EQUAL && oldMarkers[oldIndex] == DifferenceMarker.EQUAL
-                            || newMarkers[newIndex] == DifferenceMarker.INSERTED && oldMarkers[oldIndex] == DifferenceMarker.DELETED);
+        public Builder setTemplate(Template template) {
+            Objects.requireNonNull(template, "Template cannot be null.");
+
+            DiffPage.this.template = template;
+
+            return this;
         }
 
         /**
-         * Goes through all the lines and markers to build a result
-         * table with both texts, an old and a new ones.
+         * Sets if changed words are highlighted in changed lines. Not set by default.
          *
-         * @see #HTMLTable
+         * @see TokenDiff
          */
-        private void assembleTable() {
-            StringBuilder result = new StringBuilder();
-
-            int oldIndex = 0;
-            int newIndex = 0;
-
-            while (oldIndex < oldMarkers.length || newIndex < newMarkers.length) {
-                // Adding inserted lines of the new text.
-                while (newIndex < newMarkers.length && newMarkers[newIndex] == DifferenceMarker.INSERTED) {
-                    result.append("<tr>");
-                    if (oldIndex < oldMarkers.length && oldMarkers[oldIndex] == DifferenceMarker.DELETED) {
-                        result.append(oldHTML.get(oldIndex));
-                        ++oldIndex;
-                    } else {
-                        result.append("<td></td>");
-                    }
-                    result.append(newHTML.get(newIndex)).append("</tr>\n");
-                    ++newIndex;
-                }
-
-                // Adding deleted lines of the old text.
-                while (oldIndex < oldMarkers.length && oldMarkers[oldIndex] == DifferenceMarker.DELETED) {
-                    result.append("<tr>").append(oldHTML.get(oldIndex));
-                    if (newIndex < newMarkers.length && newMarkers[newIndex] == DifferenceMarker.DELETED) {
-                        result.append(newHTML.get(oldIndex));
-                        ++newIndex;
-                    } else {
-                        result.append("<td></td>");
-                    }
-                    result.append("</tr>\n");
-                    ++oldIndex;
-                }
-
-                // Adding lines of both texts to the same row.
-                while (canAddBoth(oldIndex, newIndex)) {
-                    result.append("<tr>").append(oldHTML.get(oldIndex)).append(newHTML.get(newIndex)).append("</tr>");
-                    ++oldIndex;
-                    ++newIndex;
-                }
-            }
+        public Builder setTokenLevel(boolean tokenLevel) {
+            DiffPage.this.tokenLevel = tokenLevel;
 
-            HTMLTable = result.toString();
+            return this;
         }
 
         /**
-         * Creates a result HTML page using template HTML and created table with texts.
+         * Sets that changed words are highlighted in changed lines, taking token diffs
+         * the passed similarity kept while pairing lines, see {@link LineSimilarity#getTokenDiff(String, String)}.
          *
-         * @return HTML-formatted text of the result HTML page.
-         * @throws IOException          If an I/O error occurs.
-         * @throws NullPointerException If template file is not found.
+         * @throws NullPointerException If similarity is null.
          */
-        private String buildHTML() throws IOException {
-            if (templateHTML == null) {
-                throw new NullPointerException("Cannot find template page.");
-            }
-
-            BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(templateHTML, StandardCharsets.UTF_8));
-            String str;
-
-            StringBuilder pageBuilder = new StringBuilder();
+        public Builder setTokenLevel(LineSimilarity similarity) {
+            Objects.requireNonNull(similarity, "Line similarity cannot be null.");
 
-            while ((str = bufferedReader.readLine()) != null) {
-                if (str.contains("${tableDataHere}")) {
-                    pageBuilder.append(HTMLTable).append("\n");
-                } else {
-                    pageBuilder.append(str).append("\n");
-                }
-            }
-
-            bufferedReader.close();
+            DiffPage.this.tokenLevel = true;
+            DiffPage.this.similarity = similarity;
 
-            return pageBuilder.toString();
+            return this;
         }
 
         /**
          * Builds a page.
          *
          * @return Built HTML page.
+         * @throws NullPointerException If the default template is not found.
+         * @throws IOException          If an I/O error occurs while reading the template.
          * @see DiffPage
          */
         public DiffPage build() throws IOException {
             if (!oldSet || !newSet) {
                 return null;
             }
-            assembleTable();
-            HTML = buildHTML();
+            if (template == null) {
+                template = Template.getDefault();
+            }
             return DiffPage.this;
         }
     }
@@ -0,0 +1,68 @@
+package html;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Escapes text placed into HTML. Writes straight to the output:
+ * runs of characters that need no escaping are written as ranges
+ * of the source string, so no intermediate strings are built.
+ */
+public final class HtmlEscaper {
+    /**
+     * Private constructor to prevent instance creation.
+     */
+    private HtmlEscaper() {
+    }
+
+    /**
+     * Writes the passed text to the writer, escaping HTML special characters.
+     *
+     * @throws IOException If an I/O error occurs.
+     */
+    public static void escape(String text, Writer out) throws IOException {
+        escape(text, 0, text.length(), out);
+    }
+
+    /**
+     * Writes characters [from, to) of the passed text to the writer, escaping HTML special characters.
+     *
+     * @throws IOException If an I/O error occurs.
+     */
+    public static void escape(String text, int from, int to, Writer out) throws IOException {
+        int start = from;
+
+        for (int i = from; i < to; i++) {
+            String replacement;
+            switch (text.charAt(i)) {
+                case '<':
+                    replacement = "&lt;";
+                    break;
+                case '>':
+                    replacement = "&gt;";
+                    break;
+                case '&':
+                    replacement = "&amp;";
+                    break;
+                case '"':
+                    replacement = "&quot;";
+                    break;
+                case '\'':
+                    replacement = "&#39;";
+                    break;
+                default:
+                    continue;
+            }
+
+            if (i > start) {
+                out.write(text, start, i - start);
+            }
+            out.write(replacement);
+            start = i + 1;
+        }
+
+        if (start < to) {
+            out.write(text, start, to - start);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package html;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>Describes an HTML page template compiled into static text segments and placeholders.</p>
+ * <p>A placeholder has the form <code>${name}</code>. A template is parsed only once: compiled
+ * templates are cached by name, so pages built from the same template share it. Templates from files
+ * are cached with the text they were compiled from, and are compiled again once the file is edited.</p>
+ */
+public final class Template {
+    /**
+     * Name of the default template resource.
+     */
+    public static final String DEFAULT_NAME = "diff.html";
+    /**
+     * Name of the placeholder replaced with the table rows.
+     */
+    public static final String TABLE_PLACEHOLDER = "tableDataHere";
+
+    /**
+     * Compiled resource templates by their names.
+     */
+    private static final Map<String, Template> CACHE = new ConcurrentHashMap<>();
+    /**
+     * Compiled file templates by absolute paths of the files.
+     */
+    private static final Map<String, Template> FILES = new ConcurrentHashMap<>();
+
+    /**
+     * Text the template was compiled from.
+     */
+    private final String text;
+
+    /**
+     * Static text segments. Placeholder i goes between segments i and i + 1.
+     */
+    private final String[] segments;
+    /**
+     * Names of placeholders in order of appearance.
+     */
+    private final String[] placeholders;
+
+    /**
+     * Writes content of a placeholder.
+     */
+    @FunctionalInterface
+    public interface Section {
+        /**
+         * Writes content to the passed writer.
+         *
+         * @throws IOException If an I/O error occurs.
+         */
+        void write(Writer out) throws IOException;
+    }
+
+    /**
+     * Private constructor to prevent instance creation without parsing.
+     */
+    private Template(String text, String[] segments, String[] placeholders) {
+        this.text = text;
+        this.segments = segments;
+        this.placeholders = placeholders;
+    }
+
+    /**
+     * Returns the default template.
+     *
+     * @throws NullPointerException If template resource is not found.
+     * @throws IOException          If an I/O error occurs.
+     */
+    public static Template getDefault() throws IOException {
+        return getResource(DEFAULT_NAME);
+    }
+
+    /**
+     * Returns a compiled template from the class path resource with passed name.
+     *
+     * @throws NullPointerException If template resource is not found.
+     * @throws IOException          If an I/O error occurs.
+     */
+    public static Template getResource(String name) throws IOException {
+        Objects.requireNonNull(name, "Template name cannot be null.");
+
+        Template template = CACHE.get(name);
+        if (template != null) {
+            return template;
+        }
+
+        try (InputStream stream = Template.class.getClassLoader().getResourceAsStream(name)) {
+            if (stream == null) {
+                throw new NullPointerException("Cannot find template page.");
+            }
+            template = parse(new String(stream.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        CACHE.putIfAbsent(name, template);
+        return template;
+    }
+
+    /**
+     * Returns a compiled user-supplied template from the file at the passed path.
+     * The file is read on every call, but compiled again only if its text has changed
+     * since the last call with the same absolute path.
+     *
+     * @throws NullPointerException  If path is null.
+     * @throws FileNotFoundException If file at the passed path does not exist.
+     * @throws IOException           If an I/O error occurs.
+     */
+    public static Template getFile(Path path) throws IOException {
+        Objects.requireNonNull(path, "Path cannot be null.");
+
+        if (!Files.exists(path)) {
+            throw new FileNotFoundException("File " + path + " does not exist.");
+        }
+        String text = Files.readString(path, StandardCharsets.UTF_8);
+
+        String name = path.toAbsolutePath().normalize().toString();
+        Template template = FILES.get(name);
+        if (template == null || !template.text.equals(text)) {
+            template = parse(text);
+            FILES.put(name, template);
+        }
+        return template;
+    }
+
+    /**
+     * Compiles passed template text. The template is not cached.
+     *
+     * @throws NullPointerException If text is null.
+     */
+    public static Template compile(String text) {
+        Objects.requireNonNull(text, "Template text cannot be null.");
+
+        return parse(text);
+    }
+
+    /**
+     * Splits the text into static segments and placeholders.
+     */
+    private static Template parse(String text) {
+        List<String> segments = new ArrayList<>();
+        List<String> placeholders = new ArrayList<>();
+
+        int position = 0;
+        while (true) {
+            int start = text.indexOf("${", position);
+            int end = start < 0 ? -1 : text.indexOf('}', start + 2);
+            if (end < 0) {
+                segments.add(text.substring(position));
+                break;
+            }
+            segments.add(text.substring(position, start));
+            placeholders.add(text.substring(start + 2, end).trim());
+            position = end + 1;
+        }
+
+        return new Template(text, segments.toArray(new String[0]), placeholders.toArray(new String[0]));
+    }
+
+    /**
+     * Shows if the template contains a placeholder with passed name.
+     */
+    public boolean hasPlaceholder(String name) {
+        for (String placeholder : placeholders) {
+            if (placeholder.equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Writes the template to the passed writer, replacing placeholders with passed sections.
+     * Placeholders without a section are written as is.
+     *
+     * @throws IOException If an I/O error occurs.
+     */
+    public void render(Writer out, Map<String, Section> sections) throws IOException {
+        Objects.requireNonNull(out, "Writer cannot be null.");
+        Objects.requireNonNull(sections, "Sections cannot be null.");
+
+        for (int i = 0; i < placeholders.length; i++) {
+            out.write(segments[i]);
+            Section section = sections.get(placeholders[i]);
+            if (section == null) {
+                out.write("${");
+                out.write(placeholders[i]);
+                out.write('}');
+            } else {
+                section.write(out);
+            }
+        }
+        out.write(segments[segments.length - 1]);
+    }
+}
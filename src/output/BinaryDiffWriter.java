@@ -0,0 +1,193 @@
+package output;
+
+import comparison.DifferenceMarker;
+import comparison.LineStore;
+import comparison.RowAligner;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * <p>Writes the difference in a compact binary format. Rows of the side-by-side table
+ * of the same kind that follow each other are written as a single run, and lines
+ * are referred to by their positions instead of repeating the text.</p>
+ * <p>All numbers are unsigned LEB128 varints. The stream consists of:</p>
+ * <ul>
+ *     <li>header: bytes {@code 'D' 'I' 'F' 'F'}, version byte {@link #VERSION}, flags byte
+ *     (bit 0 is set if texts of lines are included), amount of old lines, amount of new lines;</li>
+ *     <li>runs: kind byte, amount of rows. A run covers the next lines of the old text
+ *     if its kind is {@link #EQUAL}, {@link #CHANGED}, {@link #REPLACED} or {@link #DELETED},
+ *     and the next lines of the new text if its kind is {@link #EQUAL}, {@link #CHANGED},
+ *     {@link #REPLACED} or {@link #INSERTED}, one line per row. If texts are included, a run
+ *     of a kind other than {@link #EQUAL} is followed by its lines, each as its length
+ *     in UTF-8 bytes and the bytes: for every row the old line first, then the new one;</li>
+ *     <li>end: kind byte {@link #END}.</li>
+ * </ul>
+ */
+public class BinaryDiffWriter implements DiffWriter {
+    /**
+     * Version of the format.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * Kind of the run ending the stream.
+     */
+    public static final int END = 0;
+    /**
+     * Kind of a run of equal lines.
+     */
+    public static final int EQUAL = 1;
+    /**
+     * Kind of a run of changed lines.
+     */
+    public static final int CHANGED = 2;
+    /**
+     * Kind of a run of deleted lines next to inserted ones.
+     */
+    public static final int REPLACED = 3;
+    /**
+     * Kind of a run of deleted lines.
+     */
+    public static final int DELETED = 4;
+    /**
+     * Kind of a run of inserted lines.
+     */
+    public static final int INSERTED = 5;
+
+    /**
+     * Flag shows if texts of lines other than equal are included.
+     */
+    private final boolean includeText;
+
+    /**
+     * Creates a new writer referring to lines by positions only.
+     */
+    public BinaryDiffWriter() {
+        this(false);
+    }
+
+    /**
+     * Creates a new writer.
+     *
+     * @param includeText Flag shows if texts of lines other than equal are included.
+     */
+    public BinaryDiffWriter(boolean includeText) {
+        this.includeText = includeText;
+    }
+
+    @Override
+    public void write(LineStore oldText, DifferenceMarker[] oldMarkers,
+                      LineStore newText, DifferenceMarker[] newMarkers, OutputStream out) throws IOException {
+        DiffWriter.checkArguments(oldText, oldMarkers, newText, newMarkers, out);
+
+        OutputStream buffered = new BufferedOutputStream(out);
+        buffered.write(new byte[]{'D', 'I', 'F', 'F', VERSION, (byte) (includeText ? 1 : 0)});
+        writeVarint(buffered, oldMarkers.length);
+        writeVarint(buffered, newMarkers.length);
+
+        int runKind = END;
+        int runLength = 0;
+        int runOld = 0;
+        int runNew = 0;
+
+        RowAligner rows = new RowAligner(oldMarkers, newMarkers);
+        while (rows.next()) {
+            int kind = getKind(rows);
+            if (kind != runKind) {
+                writeRun(buffered, runKind, runLength, oldText, runOld, newText, runNew);
+                runOld += hasOld(runKind) ? runLength : 0;
+                runNew += hasNew(runKind) ? runLength : 0;
+                runKind = kind;
+                runLength = 0;
+            }
+            ++runLength;
+        }
+        writeRun(buffered, runKind, runLength, oldText, runOld, newText, runNew);
+
+        buffered.write(END);
+        buffered.flush();
+    }
+
+    /**
+     * Returns the kind of the current row.
+     */
+    private static int getKind(RowAligner rows) {
+        if (rows.getOldIndex() < 0) {
+            return INSERTED;
+        }
+        if (rows.getNewIndex() < 0) {
+            return DELETED;
+        }
+        switch (rows.getOldMarker()) {
+            case EQUAL:
+                return EQUAL;
+            case CHANGED:
+                return CHANGED;
+            default:
+                return REPLACED;
+        }
+    }
+
+    /**
+     * Shows if runs of the kind cover lines of the old text.
+     */
+    private static boolean hasOld(int kind) {
+        return kind != INSERTED && kind != END;
+    }
+
+    /**
+     * Shows if runs of the kind cover lines of the new text.
+     */
+    private static boolean hasNew(int kind) {
+        return kind != DELETED && kind != END;
+    }
+
+    /**
+     * Writes a run starting at the passed lines. Texts are read from the stores again,
+     * so they are not kept in memory while the run grows.
+     */
+    private void writeRun(OutputStream out, int kind, int length,
+                          LineStore oldText, int oldFrom, LineStore newText, int newFrom) throws IOException {
+        if (length == 0) {
+            return;
+        }
+
+        out.write(kind);
+        writeVarint(out, length);
+        if (!includeText || kind == EQUAL) {
+            return;
+        }
+
+        for (int row = 0; row < length; row++) {
+            if (hasOld(kind)) {
+                writeText(out, oldText.getLine(oldFrom + row));
+            }
+            if (hasNew(kind)) {
+                writeText(out, newText.getLine(newFrom + row));
+            }
+        }
+    }
+
+    /**
+     * Writes the text as its length in UTF-8 bytes and the bytes.
+     */
+    private static void writeText(OutputStream out, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Writes a non-negative number as an unsigned LEB128 varint.
+     */
+    private static void writeVarint(OutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+}
@@ -0,0 +1,41 @@
+package output;
+
+import comparison.DifferenceMarker;
+import comparison.LineStore;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes the difference between two texts in a machine-readable format.
+ * Rows are written as they are aligned, so memory used does not depend on the size of the texts.
+ *
+ * @see comparison.RowAligner
+ */
+public interface DiffWriter {
+    /**
+     * Writes lines of both texts with their markers to the stream. Does not close the stream.
+     *
+     * @throws NullPointerException     If any of the arguments is null.
+     * @throws IllegalArgumentException If amounts of lines and markers differ.
+     * @throws IOException              If an I/O error occurs.
+     */
+    void write(LineStore oldText, DifferenceMarker[] oldMarkers,
+               LineStore newText, DifferenceMarker[] newMarkers, OutputStream out) throws IOException;
+
+    /**
+     * Checks arguments of {@link #write(LineStore, DifferenceMarker[], LineStore, DifferenceMarker[], OutputStream)}.
+     */
+    static void checkArguments(LineStore oldText, DifferenceMarker[] oldMarkers,
+                               LineStore newText, DifferenceMarker[] newMarkers, OutputStream out) {
+        if (oldText == null || oldMarkers == null || newText == null || newMarkers == null) {
+            throw new NullPointerException("Texts and markers cannot be null.");
+        }
+        if (out == null) {
+            throw new NullPointerException("Stream cannot be null.");
+        }
+        if (oldText.size() != oldMarkers.length || newText.size() != newMarkers.length) {
+            throw new IllegalArgumentException("Amounts of lines and markers differ.");
+        }
+    }
+}
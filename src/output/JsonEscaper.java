@@ -0,0 +1,56 @@
+package output;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Escapes text placed into a JSON string, writing straight to the output
+ * like {@link html.HtmlEscaper} does.
+ */
+final class JsonEscaper {
+    /**
+     * Hexadecimal digits used in unicode escapes.
+     */
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * Private constructor to prevent instance creation.
+     */
+    private JsonEscaper() {
+    }
+
+    /**
+     * Writes the passed text to the writer, escaping quotes, backslashes and control characters.
+     *
+     * @throws IOException If an I/O error occurs.
+     */
+    static void escape(String text, Writer out) throws IOException {
+        int start = 0;
+
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c != '"' && c != '\\' && c >= ' ') {
+                continue;
+            }
+
+            if (i > start) {
+                out.write(text, start, i - start);
+            }
+            if (c == '"' || c == '\\') {
+                out.write('\\');
+                out.write(c);
+            } else if (c == '\t') {
+                out.write("\\t");
+            } else {
+                out.write("\\u00");
+                out.write(HEX[c >> 4]);
+                out.write(HEX[c & 0xF]);
+            }
+            start = i + 1;
+        }
+
+        if (start < text.length()) {
+            out.write(text, start, text.length() - start);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package output;
+
+import comparison.DifferenceMarker;
+import comparison.LineStore;
+import comparison.RowAligner;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * <p>Writes the difference as JSON Lines: one JSON object per line, UTF-8 encoded.</p>
+ * <p>The first object describes the texts: {@code {"oldLines":3,"newLines":4}}.
+ * Every next object is a row of the side-by-side table:</p>
+ * <pre>
+ * {"old":{"line":2,"marker":"CHANGED","text":"..."},"new":{"line":2,"marker":"CHANGED","text":"..."}}
+ * {"old":null,"new":{"line":3,"marker":"INSERTED","text":"..."}}
+ * </pre>
+ * <p>Line numbers start from 1 and count only non-blank lines, like the comparison does.</p>
+ */
+public class JsonLinesWriter implements DiffWriter {
+    @Override
+    public void write(LineStore oldText, DifferenceMarker[] oldMarkers,
+                      LineStore newText, DifferenceMarker[] newMarkers, OutputStream out) throws IOException {
+        DiffWriter.checkArguments(oldText, oldMarkers, newText, newMarkers, out);
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.write("{\"oldLines\":" + oldMarkers.length + ",\"newLines\":" + newMarkers.length + "}\n");
+
+        RowAligner rows = new RowAligner(oldMarkers, newMarkers);
+        while (rows.next()) {
+            writer.write("{\"old\":");
+            writeLine(writer, oldText, rows.getOldIndex(), rows.getOldMarker());
+            writer.write(",\"new\":");
+            writeLine(writer, newText, rows.getNewIndex(), rows.getNewMarker());
+            writer.write("}\n");
+        }
+        writer.flush();
+    }
+
+    /**
+     * Writes a line as a JSON object, or null if there is no line.
+     */
+    private static void writeLine(Writer out, LineStore text, int index, DifferenceMarker marker) throws IOException {
+        if (index < 0) {
+            out.write("null");
+            return;
+        }
+
+        out.write("{\"line\":" + (index + 1) + ",\"marker\":\"" + marker + "\",\"text\":\"");
+        JsonEscaper.escape(text.getLine(index), out);
+        out.write("\"}");
+    }
+}
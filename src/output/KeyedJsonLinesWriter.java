@@ -0,0 +1,75 @@
+package output;
+
+import comparison.KeyedRecord;
+import comparison.RecordListener;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Objects;
+
+/**
+ * <p>Writes records of keyed texts as JSON Lines, one object per record, as they are found:</p>
+ * <pre>
+ * {"key":"42","marker":"CHANGED","old":{"line":3,"text":"42,a,b"},"new":{"line":7,"text":"42,a,c"},"fields":[2]}
+ * {"key":"43","marker":"INSERTED","old":null,"new":{"line":8,"text":"43,d,e"},"fields":[]}
+ * </pre>
+ * <p>Line numbers start from 1 and count only non-blank lines. Fields are indices of changed fields
+ * of CHANGED records, starting from 0. The writer is not flushed after every record.</p>
+ *
+ * @see comparison.KeyedDiff
+ */
+public class KeyedJsonLinesWriter implements RecordListener {
+    /**
+     * Writer the records are written to.
+     */
+    private final Writer out;
+
+    /**
+     * Creates a new writer of records to the passed writer.
+     *
+     * @throws NullPointerException If out is null.
+     */
+    public KeyedJsonLinesWriter(Writer out) {
+        this.out = Objects.requireNonNull(out, "Writer cannot be null.");
+    }
+
+    @Override
+    public void onRecord(KeyedRecord record) throws IOException {
+        out.write("{\"key\":");
+        if (record.getKey() == null) {
+            out.write("null");
+        } else {
+            out.write('"');
+            JsonEscaper.escape(record.getKey(), out);
+            out.write('"');
+        }
+        out.write(",\"marker\":\"" + record.getMarker() + "\",\"old\":");
+        writeLine(record.getOldIndex(), record.getOldLine());
+        out.write(",\"new\":");
+        writeLine(record.getNewIndex(), record.getNewLine());
+
+        out.write(",\"fields\":[");
+        int[] fields = record.getChangedFields();
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            out.write(Integer.toString(fields[i]));
+        }
+        out.write("]}\n");
+    }
+
+    /**
+     * Writes a line as a JSON object, or null if there is no line.
+     */
+    private void writeLine(long index, String line) throws IOException {
+        if (line == null) {
+            out.write("null");
+            return;
+        }
+
+        out.write("{\"line\":" + (index + 1) + ",\"text\":\"");
+        JsonEscaper.escape(line, out);
+        out.write("\"}");
+    }
+}
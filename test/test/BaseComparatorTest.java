@@ -0,0 +1,110 @@
+package test;
+
+import comparison.BaseComparator;
+import comparison.DiffAlgorithm;
+import comparison.DiffSummary;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BaseComparatorTest {
+    private static List<String> lines(int count) {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            lines.add("line number " + i + (i % 10 == 0 ? "" : " of the text"));
+        }
+        lines.add("line number 5 of the text");
+        return lines;
+    }
+
+    @Test
+    void sameAsPairwiseTest() throws IOException {
+        List<String> base = lines(300);
+        List<List<String>> variants = new ArrayList<>();
+        for (int k = 0; k < 6; k++) {
+            List<String> variant = new ArrayList<>(base);
+            variant.remove(10 + 40 * k);
+            variant.add(20 * k, "inserted line " + k);
+            variant.set(250 - k, variant.get(250 - k) + " changed");
+            variants.add(variant);
+        }
+
+        Path dir = Files.createTempDirectory("variants");
+        Path reports = dir.resolve("reports");
+        try {
+            Path basePath = dir.resolve("base.txt");
+            Files.write(basePath, base, StandardCharsets.UTF_8);
+            List<Path> paths = new ArrayList<>();
+            for (int k = 0; k < variants.size(); k++) {
+                Path path = dir.resolve("variant" + k + ".txt");
+                Files.write(path, variants.get(k), StandardCharsets.UTF_8);
+                paths.add(path);
+            }
+
+            List<DiffSummary> summaries = new BaseComparator(basePath).compareAll(paths, 3, reports);
+
+            for (int k = 0; k < variants.size(); k++) {
+                DiffSummary expected = DiffSummary.of(new DiffAlgorithm(base, variants.get(k)).getMarkers());
+                assertEquals(expected.toString(), summaries.get(k).toString());
+                assertTrue(Files.exists(reports.resolve("variant" + k + ".txt.html")));
+            }
+            assertEquals(variants.size() + 1, Files.readAllLines(reports.resolve(BaseComparator.SUMMARY_FILE)).size());
+        } finally {
+            Fixtures.delete(dir);
+        }
+    }
+
+    @Test
+    void reportFailureTest() throws IOException {
+        Path dir = Files.createTempDirectory("variants");
+        try {
+            Path basePath = Files.write(dir.resolve("base.txt"), lines(10), StandardCharsets.UTF_8);
+            Path variant = Files.write(dir.resolve("variant.txt"), lines(12), StandardCharsets.UTF_8);
+            // The report cannot be written over a directory.
+            Path reports = dir.resolve("reports");
+            Files.createDirectories(reports.resolve("variant.txt.html"));
+
+            assertThrows(IOException.class,
+                    () -> new BaseComparator(basePath).compareAll(List.of(variant), 1, reports));
+            assertFalse(Files.exists(reports.resolve(BaseComparator.SUMMARY_FILE)));
+        } finally {
+            Fixtures.delete(dir);
+        }
+    }
+
+    @Test
+    void reportNamesTest() throws IOException {
+        Path dir = Files.createTempDirectory("variants");
+        try {
+            Path basePath = Files.write(dir.resolve("base.txt"), lines(10), StandardCharsets.UTF_8);
+            // The second report would be named after the third variant.
+            List<String> sources = List.of("d1/a.txt", "d2/a.txt", "d3/a.txt-2");
+            List<Path> variants = new ArrayList<>();
+            for (String name : sources) {
+                List<String> variant = lines(10);
+                variant.add("variant " + name);
+                Path path = dir.resolve(name);
+                Files.createDirectories(path.getParent());
+                variants.add(Files.write(path, variant, StandardCharsets.UTF_8));
+            }
+
+            Path reports = dir.resolve("reports");
+            new BaseComparator(basePath).compareAll(variants, 3, reports);
+
+            List<String> names = List.of("a.txt.html", "a.txt-2.html", "a.txt-2-2.html");
+            for (int k = 0; k < names.size(); k++) {
+                String report = Files.readString(reports.resolve(names.get(k)));
+                assertTrue(report.contains("variant " + sources.get(k)));
+            }
+        } finally {
+            Fixtures.delete(dir);
+        }
+    }
+}
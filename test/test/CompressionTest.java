@@ -0,0 +1,96 @@
+package test;
+
+import comparison.Compression;
+import comparison.LineArena;
+import comparison.Utils;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompressionTest {
+    private static byte[] text() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 50_000; i++) {
+            builder.append("  log line ").append(i).append(i % 7 == 0 ? "\r\n\n" : "\n");
+        }
+        return builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void assertSameLines(Path plain, Path compressed) throws IOException {
+        List<String> expected = Utils.readLines(plain);
+        assertEquals(expected, Utils.readLines(compressed));
+
+        try (LineArena arena = LineArena.read(compressed)) {
+            List<String> lines = new ArrayList<>();
+            for (int i = 0; i < arena.size(); i++) {
+                lines.add(arena.getLine(i));
+            }
+            assertEquals(expected, lines);
+        }
+    }
+
+    @Test
+    void readCompressedTest() throws IOException {
+        byte[] text = text();
+        Path plain = Files.createTempFile("plain", ".txt");
+        Path gzip = Files.createTempFile("gzip", ".gz");
+        Path zlib = Files.createTempFile("zlib", ".z");
+        try {
+            Files.write(plain, text);
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            // Two concatenated gzip members, like in appended log archives.
+            for (int half = 0; half < 2; half++) {
+                try (OutputStream out = new GZIPOutputStream(bytes) {
+                    @Override
+                    public void close() throws IOException {
+                        finish();
+                    }
+                }) {
+                    out.write(text, half * text.length / 2, text.length / 2);
+                }
+            }
+            Files.write(gzip, bytes.toByteArray());
+
+            bytes.reset();
+            try (OutputStream out = new DeflaterOutputStream(bytes)) {
+                out.write(text);
+            }
+            Files.write(zlib, bytes.toByteArray());
+
+            assertFalse(Compression.isCompressed(plain));
+            assertTrue(Compression.isCompressed(gzip));
+            assertTrue(Compression.isCompressed(zlib));
+            assertSameLines(plain, gzip);
+            assertSameLines(plain, zlib);
+        } finally {
+            Files.delete(plain);
+            Files.delete(gzip);
+            Files.delete(zlib);
+        }
+    }
+
+    @Test
+    void plainWithZlibLikeHeaderTest() throws IOException {
+        Path file = Files.createTempFile("plain", ".txt");
+        try {
+            Files.writeString(file, "x^2 + y^2\nsecond line\n", StandardCharsets.UTF_8);
+
+            assertFalse(Compression.isCompressed(file));
+            assertEquals(List.of("x^2 + y^2", "second line"), Utils.readLines(file));
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
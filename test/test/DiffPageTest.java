@@ -0,0 +1,96 @@
+package test;
+
+import comparison.DiffAlgorithm;
+import html.DiffPage;
+import html.Template;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DiffPageTest {
+    @Test
+    void escapingTest() throws IOException {
+        var result = new DiffAlgorithm(Arrays.asList("if (a < b && c > d)"), Arrays.asList("if (a < b && c > d)")).getDiff();
+
+        StringWriter writer = new StringWriter();
+        DiffPage.getBuilder()
+                .addOld(result[0])
+                .addNew(result[1])
+                .setTemplate(Template.compile("<table>${tableDataHere}</table>"))
+                .build()
+                .write(writer);
+
+        assertEquals("<table><tr><td>if (a &lt; b &amp;&amp; c &gt; d)</td><td>if (a &lt; b &amp;&amp; c &gt; d)</td></tr>\n</table>",
+                writer.toString());
+    }
+
+    @Test
+    void templateTest() throws IOException {
+        var result = new DiffAlgorithm(Arrays.asList("qwerty", "line to delete"), Arrays.asList("qwerty")).getDiff();
+
+        Template template = Template.compile("${title}|${tableDataHere}|end");
+        assertTrue(template.hasPlaceholder(Template.TABLE_PLACEHOLDER));
+
+        StringWriter writer = new StringWriter();
+        DiffPage.getBuilder().addOld(result[0]).addNew(result[1]).setTemplate(template).build().write(writer);
+
+        assertEquals("${title}|<tr><td>qwerty</td><td>qwerty</td></tr>\n" +
+                "<tr><td class = \"deleted\">line to delete</td><td></td></tr>\n|end", writer.toString());
+    }
+
+    @Test
+    void templateCacheTest() throws IOException {
+        assertSame(Template.getDefault(), Template.getDefault());
+
+        Path path = Files.createTempFile("template", ".html");
+        path.toFile().deleteOnExit();
+        Files.writeString(path, "${tableDataHere}");
+        Template template = Template.getFile(path);
+        assertSame(template, Template.getFile(path));
+
+        // An edited template is compiled again, even if its size has not changed.
+        Files.writeString(path, "${tableDataThere}");
+        assertFalse(Template.getFile(path).hasPlaceholder(Template.TABLE_PLACEHOLDER));
+    }
+
+    @Test
+    void parallelSaveTest() throws IOException {
+        List<String> oldLines = new ArrayList<>();
+        List<String> newLines = new ArrayList<>();
+        for (int i = 0; i < 30000; i++) {
+            oldLines.add("<line> " + i + " \u00e9t\u00e9");
+            if (i % 7 != 0) {
+                newLines.add(i % 5 == 0 ? "<line> " + i + " \u00e9t\u00e9!" : "<line> " + i + " \u00e9t\u00e9");
+            }
+            if (i % 11 == 0) {
+                newLines.add("inserted & " + i);
+            }
+        }
+        var result = new DiffAlgorithm(oldLines, newLines).getDiff();
+
+        StringWriter writer = new StringWriter();
+        DiffPage.getBuilder().addOld(result[0]).addNew(result[1]).setTokenLevel(true).build().write(writer);
+
+        Path path = Files.createTempFile("page", ".html");
+        path.toFile().deleteOnExit();
+        System.setProperty(DiffPage.RENDER_THREADS_PROPERTY, "4");
+        System.setProperty(DiffPage.PARALLEL_MIN_LINES_PROPERTY, "0");
+        try {
+            DiffPage.getBuilder().addOld(result[0]).addNew(result[1]).setTokenLevel(true).build().save(path);
+        } finally {
+            System.clearProperty(DiffPage.RENDER_THREADS_PROPERTY);
+            System.clearProperty(DiffPage.PARALLEL_MIN_LINES_PROPERTY);
+        }
+
+        assertEquals(writer.toString(), Files.readString(path, StandardCharsets.UTF_8));
+    }
+}
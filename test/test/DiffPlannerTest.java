@@ -0,0 +1,127 @@
+package test;
+
+import comparison.DiffAlgorithm;
+import comparison.DiffEngine;
+import comparison.DifferenceMarker;
+import comparison.RowAligner;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DiffPlannerTest {
+    /**
+     * Checks that EQUAL lines form a common subsequence and markers can be aligned, returns its length.
+     */
+    private static int checkEqualLines(List<String> text1, List<String> text2, DifferenceMarker[][] markers) {
+        int j = 0;
+        int equal = 0;
+        for (int i = 0; i < text1.size(); i++) {
+            if (markers[0][i] != DifferenceMarker.EQUAL) {
+                continue;
+            }
+            while (markers[1][j] != DifferenceMarker.EQUAL) {
+                ++j;
+            }
+            assertEquals(text1.get(i), text2.get(j));
+            ++j;
+            ++equal;
+        }
+
+        RowAligner rows = new RowAligner(markers[0], markers[1]);
+        while (rows.next()) {
+            assertTrue(rows.getOldIndex() >= 0 || rows.getNewIndex() >= 0);
+        }
+        return equal;
+    }
+
+    @Test
+    void enginesTest() {
+        Random random = new Random(34);
+        for (int round = 0; round < 50; round++) {
+            List<String> text1 = Fixtures.randomText(random, random.nextInt(200), 1 + random.nextInt(30));
+            List<String> text2 = Fixtures.randomText(random, random.nextInt(200), 1 + random.nextInt(30));
+
+            int table = checkEqualLines(text1, text2,
+                    Fixtures.compare(text1, text2, DiffEngine.LCS_TABLE).getMarkers());
+            int myers = checkEqualLines(text1, text2,
+                    Fixtures.compare(text1, text2, DiffEngine.MYERS).getMarkers());
+            int anchored = checkEqualLines(text1, text2,
+                    Fixtures.compare(text1, text2, DiffEngine.ANCHORED).getMarkers());
+
+            assertEquals(table, myers);
+            assertTrue(anchored <= table);
+        }
+    }
+
+    @Test
+    void planTest() {
+        Random random = new Random(7);
+        List<String> small = Fixtures.randomText(random, 100, 1000);
+        assertEquals(DiffEngine.LCS_TABLE, Fixtures.compare(small, small, null).getPlan().getEngine());
+
+        List<String> text1 = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            text1.add("line number " + i);
+        }
+        List<String> text2 = new ArrayList<>(text1);
+        text2.set(10, "changed line number 10");
+        text2.remove(15_000);
+
+        var plan = Fixtures.compare(text1, text2, null).getPlan();
+        assertEquals(DiffEngine.MYERS, plan.getEngine());
+        assertEquals(10, plan.getCommonPrefix());
+        assertTrue(plan.getEstimatedCost() > 0);
+    }
+
+    @Test
+    void forcedTableTooBigTest() {
+        List<String> text1 = new ArrayList<>();
+        for (int i = 0; i < 50_000; i++) {
+            text1.add("line number " + i);
+        }
+        List<String> text2 = new ArrayList<>(text1);
+        text2.set(0, "changed first line");
+        text2.set(text2.size() - 1, "changed last line");
+
+        // The table would have more cells than an array can hold.
+        DiffAlgorithm algorithm = Fixtures.compare(text1, text2, DiffEngine.LCS_TABLE);
+        assertNotEquals(DiffEngine.LCS_TABLE, algorithm.getPlan().getEngine());
+        assertEquals(text1.size() - 2, checkEqualLines(text1, text2, algorithm.getMarkers()));
+    }
+
+    @Test
+    void histogramTest() {
+        // A lockfile: most lines of an entry repeat in every entry.
+        List<String> text1 = new ArrayList<>();
+        List<String> text2 = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            for (List<String> text : List.of(text1, text2)) {
+                if (text == text2 && i % 500 == 250) {
+                    text.addAll(List.of("\"added" + i + "\": {", "\"version\": \"1.0.0\",", "},"));
+                }
+                text.addAll(List.of("\"package" + i + "\": {", "\"version\": \"1.0.0\",", "},"));
+            }
+        }
+
+        DiffAlgorithm algorithm = Fixtures.compare(text1, text2, null);
+        assertEquals(DiffEngine.HISTOGRAM, algorithm.getPlan().getEngine());
+
+        DifferenceMarker[][] markers = algorithm.getMarkers();
+        assertEquals(text1.size(), checkEqualLines(text1, text2, markers));
+        // Added entries are whole, not shifted by a line.
+        for (int j = 0; j < text2.size(); j++) {
+            if (text2.get(j).startsWith("\"added")) {
+                for (int k = 0; k < 3; k++) {
+                    assertEquals(DifferenceMarker.INSERTED, markers[1][j + k]);
+                }
+                j += 2;
+            } else {
+                assertEquals(DifferenceMarker.EQUAL, markers[1][j]);
+            }
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package test;
+
+import comparison.DiffAlgorithm;
+import comparison.DiffEngine;
+import comparison.Difference;
+import comparison.DifferenceMarker;
+import comparison.RowAligner;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * <p>Compares random texts with random edits applied and checks properties of the result
+ * instead of exact markers.</p>
+ * <p>Tests tagged {@code performance} check that every engine fits into time and memory budgets,
+ * which are 2-3 times what the comparisons took when the budgets were set. They run with the other tests; to skip them,
+ * exclude the tag, e.g. with {@code --exclude-tag performance} of the JUnit console launcher or the tag
+ * expression {@code !performance} in a run configuration of the IDE. Budgets are multiplied by the
+ * {@code test.budgetScale} system property, for slow machines.</p>
+ */
+class DiffPropertyTest {
+    private static final double BUDGET_SCALE = Double.parseDouble(System.getProperty("test.budgetScale", "1"));
+
+    /**
+     * An old text, a new text made of it by random edits, and the amount of old lines left intact.
+     */
+    private static class Edit {
+        private final List<String> oldText;
+        private final List<String> newText = new ArrayList<>();
+        private int kept;
+
+        private Edit(long seed, int size, int alphabet, double rate) {
+            this(seed, size, alphabet, rate, 0);
+        }
+
+        /**
+         * Makes every entryLength-th line unique, like the first line of an entry of a lockfile,
+         * unless entryLength is 0. Other lines are taken from the alphabet.
+         */
+        private Edit(long seed, int size, int alphabet, double rate, int entryLength) {
+            Random random = new Random(seed);
+            oldText = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                boolean unique = entryLength > 0 && i % entryLength == 0;
+                oldText.add(unique ? "entry " + i : "line " + random.nextInt(alphabet));
+            }
+
+            for (String line : oldText) {
+                if (random.nextDouble() < rate) {
+                    int inserted = 1 + random.nextInt(3);
+                    for (int k = 0; k < inserted; k++) {
+                        newText.add("inserted " + random.nextInt(alphabet));
+                    }
+                }
+                double action = random.nextDouble();
+                if (action < rate) {
+                    continue;
+                }
+                if (action < 2 * rate) {
+                    newText.add(line + " edited");
+                    continue;
+                }
+                newText.add(line);
+                ++kept;
+            }
+        }
+    }
+
+    /**
+     * Checks that every line is marked, markers of each text are of its own kinds, EQUAL lines
+     * form a common subsequence and markers can be aligned into rows.
+     *
+     * @return Amount of EQUAL lines.
+     */
+    private static int checkMarkers(List<String> oldText, List<String> newText, DifferenceMarker[][] markers) {
+        assertEquals(oldText.size(), markers[0].length);
+        assertEquals(newText.size(), markers[1].length);
+
+        int equal = 0;
+        int oldChanged = 0;
+        int newChanged = 0;
+        int j = 0;
+        for (int i = 0; i < markers[0].length; i++) {
+            DifferenceMarker marker = markers[0][i];
+            assertNotNull(marker);
+            assertNotEquals(DifferenceMarker.INSERTED, marker);
+            if (marker == DifferenceMarker.CHANGED) {
+                ++oldChanged;
+            }
+            if (marker != DifferenceMarker.EQUAL) {
+                continue;
+            }
+            while (markers[1][j] != DifferenceMarker.EQUAL) {
+                ++j;
+            }
+            assertEquals(oldText.get(i), newText.get(j));
+            ++j;
+            ++equal;
+        }
+
+        int newEqual = 0;
+        for (DifferenceMarker marker : markers[1]) {
+            assertNotNull(marker);
+            assertNotEquals(DifferenceMarker.DELETED, marker);
+            if (marker == DifferenceMarker.CHANGED) {
+                ++newChanged;
+            } else if (marker == DifferenceMarker.EQUAL) {
+                ++newEqual;
+            }
+        }
+        assertEquals(equal, newEqual);
+        assertEquals(oldChanged, newChanged);
+
+        // Every line gets into exactly one row, in order.
+        int oldNext = 0;
+        int newNext = 0;
+        RowAligner rows = new RowAligner(markers[0], markers[1]);
+        while (rows.next()) {
+            if (rows.getOldIndex() >= 0) {
+                assertEquals(oldNext++, rows.getOldIndex());
+            }
+            if (rows.getNewIndex() >= 0) {
+                assertEquals(newNext++, rows.getNewIndex());
+            }
+        }
+        assertEquals(oldText.size(), oldNext);
+        assertEquals(newText.size(), newNext);
+        return equal;
+    }
+
+    @Test
+    void getDiffTest() {
+        for (long seed = 0; seed < 200; seed++) {
+            Random random = new Random(seed);
+            Edit edit = new Edit(seed, random.nextInt(60), 1 + random.nextInt(10), random.nextDouble() / 2);
+
+            Difference[][] result = new DiffAlgorithm(edit.oldText, edit.newText).getDiff();
+            DifferenceMarker[][] markers = new DifferenceMarker[2][];
+            for (int side = 0; side < 2; side++) {
+                List<String> text = side == 0 ? edit.oldText : edit.newText;
+                markers[side] = new DifferenceMarker[result[side].length];
+                for (int i = 0; i < result[side].length; i++) {
+                    assertEquals(text.get(i), result[side][i].getLine());
+                    markers[side][i] = result[side][i].getMarker();
+                }
+            }
+
+            assertTrue(checkMarkers(edit.oldText, edit.newText, markers) >= edit.kept, "seed " + seed);
+        }
+    }
+
+    /**
+     * Compares the texts of the edit with the passed engine and checks the markers.
+     *
+     * @return Amount of EQUAL lines.
+     */
+    private static int countEqual(Edit edit, DiffEngine engine) {
+        return checkMarkers(edit.oldText, edit.newText,
+                Fixtures.compare(edit.oldText, edit.newText, engine).getMarkers());
+    }
+
+    @Test
+    void enginesTest() {
+        for (long seed = 0; seed < 100; seed++) {
+            Random random = new Random(seed);
+            Edit edit = new Edit(seed, random.nextInt(1500), 1 + random.nextInt(100), random.nextDouble() / 4);
+
+            int table = countEqual(edit, DiffEngine.LCS_TABLE);
+            int myers = countEqual(edit, DiffEngine.MYERS);
+            int anchored = countEqual(edit, DiffEngine.ANCHORED);
+            int histogram = countEqual(edit, DiffEngine.HISTOGRAM);
+
+            // Both exact engines find the longest common subsequence, coarse ones may find less.
+            assertEquals(table, myers, "seed " + seed);
+            assertTrue(table >= edit.kept, "seed " + seed);
+            assertTrue(anchored <= table, "seed " + seed);
+            assertTrue(histogram <= table, "seed " + seed);
+        }
+    }
+
+    /**
+     * Compares a random text with its edited version by the expected engine, checking the result and that
+     * the comparison fits into the time budget and allocates not more than the passed amount of bytes per line
+     * plus 32 MB. Exact engines must keep all intact lines, coarse ones at least the passed share of them.
+     */
+    private static void checkBudget(Edit edit, DiffEngine engine, double keptShare, long millis, long bytesPerLine) {
+        com.sun.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean()
+                instanceof com.sun.management.ThreadMXBean
+                ? (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()
+                : null;
+        boolean countBytes = threads != null && threads.isThreadAllocatedMemorySupported()
+                && threads.isThreadAllocatedMemoryEnabled();
+        long thread = Thread.currentThread().getId();
+
+        long bytes = countBytes ? threads.getThreadAllocatedBytes(thread) : 0;
+        long start = System.nanoTime();
+        DiffAlgorithm algorithm = new DiffAlgorithm(edit.oldText, edit.newText);
+        DifferenceMarker[][] markers = algorithm.getMarkers();
+        long elapsed = (System.nanoTime() - start) / 1_000_000;
+        bytes = countBytes ? threads.getThreadAllocatedBytes(thread) - bytes : 0;
+
+        int size = edit.oldText.size();
+        long lines = edit.oldText.size() + edit.newText.size();
+        assertEquals(engine, algorithm.getPlan().getEngine());
+        assertTrue(checkMarkers(edit.oldText, edit.newText, markers) >= edit.kept * keptShare);
+        assertTrue(elapsed <= millis * BUDGET_SCALE,
+                size + " lines took " + elapsed + " ms, the budget is " + millis + " ms");
+        assertTrue(bytes <= (bytesPerLine * lines + (32L << 20)) * BUDGET_SCALE,
+                size + " lines took " + bytes + " bytes, the budget is " + bytesPerLine + " bytes per line");
+    }
+
+    @Test
+    @Tag("performance")
+    void smallBudgetTest() {
+        checkBudget(new Edit(2_000, 2_000, 2_000, 0.05), DiffEngine.LCS_TABLE, 1, 200, 128);
+    }
+
+    @Test
+    @Tag("performance")
+    void mediumBudgetTest() {
+        checkBudget(new Edit(100_000, 100_000, 100_000, 0.01), DiffEngine.MYERS, 1, 1_000, 128);
+    }
+
+    @Test
+    @Tag("performance")
+    void largeBudgetTest() {
+        checkBudget(new Edit(2_000_000, 2_000_000, 2_000_000, 0.0001), DiffEngine.MYERS, 1, 6_000, 128);
+    }
+
+    @Test
+    @Tag("performance")
+    void anchoredBudgetTest() {
+        checkBudget(new Edit(1, 1_000_000, 1_000_000, 0.02), DiffEngine.ANCHORED, 0.9, 3_000, 128);
+    }
+
+    /**
+     * Entries of four lines, three of them taken from 16 lines, like a lockfile.
+     */
+    @Test
+    @Tag("performance")
+    void repeatedBudgetTest() {
+        checkBudget(new Edit(2, 1_000_000, 16, 0.01, 4), DiffEngine.HISTOGRAM, 0.9, 1_500, 48);
+    }
+}
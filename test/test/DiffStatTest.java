@@ -0,0 +1,84 @@
+package test;
+
+import comparison.DiffStat;
+import comparison.DiffSummary;
+import comparison.TextsComparator;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DiffStatTest {
+    private static Path write(List<String> lines) throws IOException {
+        Path path = Files.createTempFile("stat", ".txt");
+        path.toFile().deleteOnExit();
+        Files.write(path, lines);
+        return path;
+    }
+
+    @Test
+    void identicalTest() throws IOException {
+        List<String> lines = List.of("a", "b", "c");
+        DiffStat stat = DiffStat.of(write(lines), write(lines), true);
+
+        assertTrue(stat.isIdentical());
+        assertFalse(stat.hasDifferences());
+        assertEquals(0, stat.getChanged());
+        assertNull(stat.getPlan());
+        assertEquals("identical", stat.toString());
+    }
+
+    @Test
+    void sameLinesTest() throws IOException {
+        // Blank lines and spaces are ignored, so the texts are equal, though the bytes are not.
+        DiffStat stat = DiffStat.of(write(List.of("a", "", "b")), write(List.of(" a", "b ")), false);
+
+        assertFalse(stat.isIdentical());
+        assertFalse(stat.hasDifferences());
+        assertEquals(2, stat.getEqual());
+        assertEquals(-1, stat.getChanged());
+    }
+
+    @Test
+    void countsTest() throws IOException {
+        Random random = new Random(40);
+        List<String> oldLines = new ArrayList<>();
+        List<String> newLines = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            String line = "line " + i + " of the text";
+            int action = random.nextInt(20);
+            if (action != 0) {
+                oldLines.add(line);
+            }
+            if (action == 1) {
+                newLines.add("inserted " + random.nextLong());
+            } else if (action == 2) {
+                newLines.add(line + "!");
+            } else if (action != 3) {
+                newLines.add(line);
+            }
+        }
+        Path oldPath = write(oldLines);
+        Path newPath = write(newLines);
+
+        DiffSummary summary;
+        try (TextsComparator tc = new TextsComparator(oldPath, newPath)) {
+            summary = DiffSummary.of(tc.getMarkers());
+        }
+        DiffStat counts = DiffStat.of(oldPath, newPath, false);
+        assertEquals(summary.getEqual(), counts.getEqual());
+        assertEquals(summary.getInserted() + summary.getChanged(), counts.getInserted());
+        assertEquals(summary.getDeleted() + summary.getChanged(), counts.getDeleted());
+
+        DiffStat estimate = DiffStat.of(oldPath, newPath, true);
+        assertEquals(counts.getInserted(), estimate.getInserted() + estimate.getChanged());
+        assertTrue(Math.abs(estimate.getChanged() - summary.getChanged()) <= summary.getChanged() / 5,
+                estimate + " vs " + summary);
+    }
+}
@@ -292,4 +292,21 @@ class DiffTest {
         assertEquals("two", result[0][3].getLine());
         assertEquals("two", result[1][2].getLine());
     }
-}
\ No newline at end of file
+
+    @Test
+    void changedAcrossEqualTest() {
+        List<String> text1 = Arrays.asList("qwerty", "this line will be changed", "unchanged line");
+        List<String> text2 = Arrays.asList("qwerty", "unchanged line", "this line was changed");
+
+        DiffAlgorithm diffAlgorithm = new DiffAlgorithm(text1, text2);
+        var result = diffAlgorithm.getDiff();
+
+        assertEquals(DifferenceMarker.EQUAL, result[0][0].getMarker());
+        assertEquals(DifferenceMarker.DELETED, result[0][1].getMarker());
+        assertEquals(DifferenceMarker.EQUAL, result[0][2].getMarker());
+
+        assertEquals(DifferenceMarker.EQUAL, result[1][0].getMarker());
+        assertEquals(DifferenceMarker.EQUAL, result[1][1].getMarker());
+        assertEquals(DifferenceMarker.INSERTED, result[1][2].getMarker());
+    }
+}
@@ -0,0 +1,147 @@
+package test;
+
+import comparison.DiffSummary;
+import comparison.DiffWatcher;
+import comparison.DifferenceMarker;
+import comparison.LineSimilarity;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DiffWatcherTest {
+    /**
+     * Old and new file in a temporary directory, and a watcher of them passing summaries of differences to a queue.
+     * Closing it stops the watching and deletes the directory.
+     */
+    private static final class Watched implements AutoCloseable {
+        final Path directory;
+        final Path oldPath;
+        final Path newPath;
+        final BlockingQueue<DiffSummary> summaries = new LinkedBlockingQueue<>();
+        final DiffWatcher watcher;
+        private Thread thread;
+
+        Watched(List<String> oldText, List<String> newText, long debounce) throws IOException {
+            directory = Files.createTempDirectory("watch");
+            oldPath = Files.write(directory.resolve("old.txt"), oldText);
+            newPath = Files.write(directory.resolve("new.txt"), newText);
+
+            // The watcher reads the property once, when it is created.
+            System.setProperty(DiffWatcher.DEBOUNCE_PROPERTY, Long.toString(debounce));
+            try {
+                watcher = new DiffWatcher(oldPath, newPath, new LineSimilarity(),
+                        (oldLines, oldMarkers, newLines, newMarkers) ->
+                                summaries.add(DiffSummary.of(new DifferenceMarker[][]{oldMarkers, newMarkers})));
+            } finally {
+                System.clearProperty(DiffWatcher.DEBOUNCE_PROPERTY);
+            }
+        }
+
+        /**
+         * Starts watching in a daemon thread.
+         *
+         * @return Summary of the first comparison.
+         */
+        DiffSummary watch() throws InterruptedException {
+            thread = new Thread(() -> {
+                try {
+                    watcher.watch();
+                } catch (IOException | InterruptedException ignored) {
+                }
+            });
+            thread.setDaemon(true);
+            thread.start();
+            return next();
+        }
+
+        /**
+         * Waits for the next comparison.
+         *
+         * @return Its summary.
+         */
+        DiffSummary next() throws InterruptedException {
+            DiffSummary summary = summaries.poll(10, TimeUnit.SECONDS);
+            assertNotNull(summary, "Files were not compared in 10 seconds.");
+            return summary;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (thread != null) {
+                thread.interrupt();
+                try {
+                    // The watch service is closed before its directory is deleted.
+                    thread.join(10_000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            Fixtures.delete(directory);
+        }
+    }
+
+    @Test
+    void compareTest() throws Exception {
+        try (Watched watched = new Watched(List.of("a", "b", "c"), List.of("a", "c"), DiffWatcher.DEFAULT_DEBOUNCE)) {
+            DiffWatcher watcher = watched.watcher;
+            assertTrue(watcher.compare());
+            assertEquals("equal: 2, inserted: 0, deleted: 1, changed: 0", watched.summaries.poll().toString());
+            // Nothing has changed.
+            assertFalse(watcher.compare());
+
+            Files.write(watched.newPath, List.of("a", "b", "c", "d", "e"));
+            assertTrue(watcher.compare());
+            assertEquals("equal: 3, inserted: 2, deleted: 0, changed: 0", watched.summaries.poll().toString());
+
+            // Ids of the new text interned earlier stay valid after the old one is read again.
+            Files.write(watched.oldPath, List.of("e", "a", "b", "c", "d", "e", "x"));
+            assertTrue(watcher.compare());
+            assertEquals("equal: 5, inserted: 0, deleted: 2, changed: 0", watched.summaries.poll().toString());
+        }
+    }
+
+    @Test
+    void watchTest() throws Exception {
+        // The burst below takes milliseconds, far less than files must be quiet for.
+        try (Watched watched = new Watched(List.of("a", "b"), List.of("a", "b"), 1000)) {
+            assertFalse(watched.watch().hasDifferences());
+
+            // A burst of writes causes one comparison, of the last version.
+            Files.write(watched.directory.resolve("other.txt"), List.of("x"));
+            List<String> newText = new ArrayList<>(List.of("a", "b"));
+            for (int i = 0; i < 5; i++) {
+                newText.add("c" + i);
+                Files.write(watched.newPath, newText);
+            }
+            assertEquals("equal: 2, inserted: 5, deleted: 0, changed: 0", watched.next().toString());
+        }
+    }
+
+    @Test
+    void sameSizeEditTest() throws Exception {
+        try (Watched watched = new Watched(List.of("a", "b"), List.of("a", "b"), DiffWatcher.DEFAULT_DEBOUNCE)) {
+            assertFalse(watched.watch().hasDifferences());
+
+            // The same size and time of modification, like on file systems with coarse timestamps.
+            FileTime modified = Files.getLastModifiedTime(watched.newPath);
+            Files.write(watched.newPath, List.of("a", "x"));
+            Files.setLastModifiedTime(watched.newPath, modified);
+
+            // Steps of the write may be compared apart, one of the comparisons must see the edit.
+            DiffSummary summary;
+            do {
+                summary = watched.next();
+            } while (!summary.toString().equals("equal: 1, inserted: 1, deleted: 1, changed: 0"));
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package test;
+
+import comparison.DiffAlgorithm;
+import comparison.ListLineStore;
+import org.junit.jupiter.api.Test;
+import output.BinaryDiffWriter;
+import output.JsonLinesWriter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DiffWriterTest {
+    private final List<String> text1 = Arrays.asList("same", "old \"quoted\" line", "gone", "same too");
+    private final List<String> text2 = Arrays.asList("same", "old \"quoted\" line!", "same too", "new\tline");
+
+    private static int readVarint(ByteArrayInputStream in) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.read();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    private static String readText(ByteArrayInputStream in) {
+        byte[] bytes = new byte[readVarint(in)];
+        in.read(bytes, 0, bytes.length);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void jsonLinesTest() throws IOException {
+        var markers = new DiffAlgorithm(text1, text2).getMarkers();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new JsonLinesWriter().write(new ListLineStore(text1), markers[0], new ListLineStore(text2), markers[1], out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(6, lines.length);
+        assertEquals("{\"oldLines\":4,\"newLines\":4}", lines[0]);
+        assertEquals("{\"old\":{\"line\":2,\"marker\":\"CHANGED\",\"text\":\"old \\\"quoted\\\" line\"},"
+                + "\"new\":{\"line\":2,\"marker\":\"CHANGED\",\"text\":\"old \\\"quoted\\\" line!\"}}", lines[2]);
+        assertEquals("{\"old\":{\"line\":3,\"marker\":\"DELETED\",\"text\":\"gone\"},\"new\":null}", lines[3]);
+        assertEquals("{\"old\":null,\"new\":{\"line\":4,\"marker\":\"INSERTED\",\"text\":\"new\\tline\"}}", lines[5]);
+    }
+
+    @Test
+    void binaryTest() throws IOException {
+        var markers = new DiffAlgorithm(text1, text2).getMarkers();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new BinaryDiffWriter(true).write(new ListLineStore(text1), markers[0], new ListLineStore(text2), markers[1], out);
+
+        ByteArrayInputStream in = new ByteArrayInputStream(out.toByteArray());
+        byte[] magic = new byte[4];
+        in.read(magic, 0, 4);
+        assertArrayEquals("DIFF".getBytes(StandardCharsets.US_ASCII), magic);
+        assertEquals(BinaryDiffWriter.VERSION, in.read());
+        assertEquals(1, in.read());
+        assertEquals(4, readVarint(in));
+        assertEquals(4, readVarint(in));
+
+        assertEquals(BinaryDiffWriter.EQUAL, in.read());
+        assertEquals(1, readVarint(in));
+        assertEquals(BinaryDiffWriter.CHANGED, in.read());
+        assertEquals(1, readVarint(in));
+        assertEquals("old \"quoted\" line", readText(in));
+        assertEquals("old \"quoted\" line!", readText(in));
+        assertEquals(BinaryDiffWriter.DELETED, in.read());
+        assertEquals(1, readVarint(in));
+        assertEquals("gone", readText(in));
+        assertEquals(BinaryDiffWriter.EQUAL, in.read());
+        assertEquals(1, readVarint(in));
+        assertEquals(BinaryDiffWriter.INSERTED, in.read());
+        assertEquals(1, readVarint(in));
+        assertEquals("new\tline", readText(in));
+        assertEquals(BinaryDiffWriter.END, in.read());
+        assertEquals(-1, in.read());
+    }
+}
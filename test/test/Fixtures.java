@@ -0,0 +1,51 @@
+package test;
+
+import comparison.DiffAlgorithm;
+import comparison.DiffEngine;
+import comparison.LineSimilarity;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Texts, comparisons and files shared by tests.
+ */
+final class Fixtures {
+    private Fixtures() {
+    }
+
+    /**
+     * Returns a text of lines drawn from the passed amount of distinct lines.
+     */
+    static List<String> randomText(Random random, int count, int alphabet) {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            lines.add("line " + random.nextInt(alphabet));
+        }
+        return lines;
+    }
+
+    /**
+     * Compares the texts with the passed engine, or the one chosen by the planner if it is null.
+     *
+     * @return The algorithm with the difference found.
+     */
+    static DiffAlgorithm compare(List<String> oldText, List<String> newText, DiffEngine engine) {
+        DiffAlgorithm algorithm = new DiffAlgorithm(oldText, newText, new LineSimilarity(), engine);
+        algorithm.getMarkers();
+        return algorithm;
+    }
+
+    /**
+     * Deletes the directory with everything in it.
+     */
+    static void delete(Path dir) throws IOException {
+        try (var files = Files.walk(dir)) {
+            files.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package test;
+
+import comparison.DiffSummary;
+import comparison.DifferenceMarker;
+import comparison.KeyExtractor;
+import comparison.KeyedDiff;
+import comparison.KeyedRecord;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeyedDiffTest {
+    private static Path write(List<String> lines) throws IOException {
+        Path path = Files.createTempFile("keyed", ".csv");
+        path.toFile().deleteOnExit();
+        Files.write(path, lines);
+        return path;
+    }
+
+    @Test
+    void extractorTest() {
+        KeyExtractor column = KeyExtractor.byColumn(1, ',');
+        assertEquals("b", column.getKey("a,b,c"));
+        assertEquals("", column.getKey("a,,c"));
+        assertNull(column.getKey("abc"));
+        assertArrayEquals(new int[]{1, 3}, column.getChangedFields("a,b,c", "a,x,c,d"));
+        assertArrayEquals(new int[0], column.getChangedFields("a,b", "a,b"));
+        // Delimiters and doubled quotes inside quotes.
+        assertEquals("b,\"x\"", column.getKey("\"a,1\",\"b,\"\"x\"\"\",c"));
+        assertEquals("c", KeyExtractor.byColumn(2, ',').getKey("\"a,1\",\"b,\"\"x\"\"\",c"));
+        assertNull(column.getKey("\"a,b\""));
+        assertArrayEquals(new int[]{2}, column.getChangedFields("\"a,1\",b,c", "\"a,1\",b,d"));
+
+        KeyExtractor pattern = KeyExtractor.byPattern("id=(\\d+)", ' ');
+        assertEquals("17", pattern.getKey("level=INFO id=17 ok"));
+        assertNull(pattern.getKey("level=INFO"));
+        assertThrows(IllegalArgumentException.class, () -> KeyExtractor.byColumn(-1, ','));
+    }
+
+    @Test
+    void hashJoinTest() throws IOException {
+        Path oldPath = write(List.of("id,name,price", "1,apple,10", "2,pear,20", "3,plum,30", "3,plum,31"));
+        Path newPath = write(List.of("id,name,price", "3,plum,30", "4,kiwi,40", "1,apple,15", "3,plum,31"));
+
+        List<KeyedRecord> records = new ArrayList<>();
+        DiffSummary summary = new KeyedDiff(KeyExtractor.byColumn(0, ',')).hashJoin(oldPath, newPath, records::add);
+
+        assertEquals(6, records.size());
+        // The header is a record with the key "id".
+        assertEquals(DifferenceMarker.EQUAL, records.get(0).getMarker());
+        assertEquals(DifferenceMarker.EQUAL, records.get(1).getMarker());
+        assertEquals(3, records.get(1).getOldIndex());
+        assertEquals(DifferenceMarker.INSERTED, records.get(2).getMarker());
+        assertEquals(-1, records.get(2).getOldIndex());
+        assertEquals(DifferenceMarker.CHANGED, records.get(3).getMarker());
+        assertArrayEquals(new int[]{2}, records.get(3).getChangedFields());
+        assertEquals(4, records.get(4).getOldIndex());
+        assertEquals(DifferenceMarker.DELETED, records.get(5).getMarker());
+        assertEquals("2", records.get(5).getKey());
+
+        assertEquals(3, summary.getEqual());
+        assertEquals(1, summary.getChanged());
+        assertEquals(1, summary.getInserted());
+        assertEquals(1, summary.getDeleted());
+    }
+
+    @Test
+    void mergeJoinTest() throws IOException {
+        Random random = new Random(38);
+        List<String> oldLines = new ArrayList<>(List.of("# export"));
+        List<String> newLines = new ArrayList<>(List.of("# export v2"));
+        for (int key = 1000; key < 3000; key++) {
+            int action = random.nextInt(10);
+            if (action != 0) {
+                oldLines.add("key=" + key + " value=" + key);
+            }
+            if (action != 1) {
+                newLines.add("key=" + key + " value=" + (action == 2 ? -key : key));
+            }
+        }
+
+        KeyedDiff keyedDiff = new KeyedDiff(KeyExtractor.byPattern("key=(\\d+)", ' '));
+        List<KeyedRecord> merged = new ArrayList<>();
+        DiffSummary summary = keyedDiff.mergeJoin(write(oldLines), write(newLines), merged::add);
+        List<KeyedRecord> hashed = new ArrayList<>();
+        assertEquals(summary.toString(), keyedDiff.hashJoin(write(oldLines), write(newLines), hashed::add).toString());
+
+        assertNull(merged.get(0).getKey());
+        assertEquals(DifferenceMarker.CHANGED, merged.get(0).getMarker());
+        for (int i = 2; i < merged.size(); i++) {
+            assertTrue(merged.get(i - 1).getKey().compareTo(merged.get(i).getKey()) < 0);
+        }
+        for (KeyedRecord record : merged) {
+            if (record.getMarker() == DifferenceMarker.CHANGED && record.getKey() != null) {
+                assertArrayEquals(new int[]{1}, record.getChangedFields());
+            }
+        }
+    }
+
+    @Test
+    void unsortedTest() throws IOException {
+        Path oldPath = write(List.of("1,a", "3,c", "2,b"));
+        Path newPath = write(List.of("1,a", "2,b", "3,c"));
+
+        KeyedDiff keyedDiff = new KeyedDiff(KeyExtractor.byColumn(0, ','));
+        assertThrows(IllegalArgumentException.class, () -> keyedDiff.mergeJoin(oldPath, newPath, record -> {
+        }));
+        assertFalse(keyedDiff.hashJoin(oldPath, newPath, record -> {
+        }).hasDifferences());
+    }
+}
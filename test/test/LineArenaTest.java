@@ -0,0 +1,66 @@
+package test;
+
+import comparison.DiffAlgorithm;
+import comparison.DifferenceMarker;
+import comparison.LineArena;
+import comparison.LineSimilarity;
+import comparison.ListLineStore;
+import comparison.Utils;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LineArenaTest {
+    @Test
+    void readTest() throws IOException {
+        Path file = Files.createTempFile("arena", ".txt");
+        try {
+            Files.writeString(file, "  first line \r\n\n   \n\tсекунда\rthird\n\n", StandardCharsets.UTF_8);
+
+            try (LineArena arena = LineArena.read(file)) {
+                var expected = Utils.readLines(file);
+                assertEquals(expected.size(), arena.size());
+                for (int i = 0; i < arena.size(); i++) {
+                    assertEquals(expected.get(i), arena.getLine(i));
+                }
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void diffTest() {
+        var text1 = Arrays.asList("some unchanged line", "this line will be changed", "qwerty", "some old line");
+        var text2 = Arrays.asList("some new line", "some unchanged line", "this line was changed", "qwerty");
+
+        var expected = new DiffAlgorithm(text1, text2).getMarkers();
+
+        try (LineArena arena1 = new LineArena(); LineArena arena2 = new LineArena()) {
+            text1.forEach(arena1::add);
+            text2.forEach(arena2::add);
+
+            var result = new DiffAlgorithm(arena1, arena2, new LineSimilarity()).getMarkers();
+            assertArrayEquals(expected[0], result[0]);
+            assertArrayEquals(expected[1], result[1]);
+            assertEquals(DifferenceMarker.CHANGED, result[0][1]);
+        }
+    }
+
+    @Test
+    void closedTest() {
+        LineArena arena = new LineArena();
+        arena.add("qwerty");
+        arena.close();
+
+        assertThrows(IllegalStateException.class, () -> arena.getLine(0));
+        assertThrows(IllegalArgumentException.class,
+                () -> new DiffAlgorithm(arena, new ListLineStore(Arrays.asList("qwerty")), new LineSimilarity()));
+    }
+}
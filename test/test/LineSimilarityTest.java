@@ -0,0 +1,75 @@
+package test;
+
+import comparison.DiffAlgorithm;
+import comparison.DifferenceMarker;
+import comparison.LineSimilarity;
+import comparison.SimilarityStrategy;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LineSimilarityTest {
+    private static String randomLine(Random random, int length) {
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append((char) ('!' + random.nextInt(90)));
+        }
+        return builder.toString();
+    }
+
+    private static String edit(Random random, String line, int edits) {
+        StringBuilder builder = new StringBuilder(line);
+        for (int i = 0; i < edits; i++) {
+            builder.setCharAt(random.nextInt(builder.length()), '#');
+        }
+        return builder.toString();
+    }
+
+    @Test
+    void exactTest() {
+        LineSimilarity similarity = new LineSimilarity();
+
+        assertTrue(similarity.areSimilar("this line will be changed", "this line was changed"));
+        assertFalse(similarity.areSimilar("qwerty", "some inserted text"));
+        assertEquals(Set.of(SimilarityStrategy.EXACT), similarity.getUsedStrategies());
+    }
+
+    @Test
+    void chunkedTest() {
+        Random random = new Random(1);
+        String line = randomLine(random, 20_000);
+        LineSimilarity similarity = new LineSimilarity(1000, 1_000_000);
+
+        assertTrue(similarity.areSimilar(line, edit(random, line, 20)));
+        assertFalse(similarity.areSimilar(line, randomLine(random, 20_000)));
+        assertEquals(Set.of(SimilarityStrategy.CHUNKED), similarity.getUsedStrategies());
+    }
+
+    @Test
+    void minHashTest() {
+        Random random = new Random(2);
+        String line = randomLine(random, 200_000);
+        LineSimilarity similarity = new LineSimilarity(1000, 10_000);
+
+        assertTrue(similarity.areSimilar(line, edit(random, line, 100)));
+        assertFalse(similarity.areSimilar(line, randomLine(random, 200_000)));
+        assertEquals(Set.of(SimilarityStrategy.MIN_HASH), similarity.getUsedStrategies());
+    }
+
+    @Test
+    void hugeSingleLineTest() {
+        Random random = new Random(3);
+        String line = randomLine(random, 500_000);
+
+        DiffAlgorithm diffAlgorithm = new DiffAlgorithm(List.of(line), List.of(edit(random, line, 50)));
+        var result = diffAlgorithm.getDiff();
+
+        assertEquals(DifferenceMarker.CHANGED, result[0][0].getMarker());
+        assertEquals(DifferenceMarker.CHANGED, result[1][0].getMarker());
+        assertFalse(diffAlgorithm.getUsedStrategies().contains(SimilarityStrategy.EXACT));
+    }
+}
@@ -0,0 +1,119 @@
+package test;
+
+import comparison.DiffAlgorithm;
+import comparison.DiffEngine;
+import comparison.DiffResult;
+import comparison.LineSimilarity;
+import comparison.TextDiffer;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TextDifferTest {
+    @Test
+    void sameAsAlgorithmTest() {
+        Random random = new Random(36);
+
+        // Big texts go first, so smaller ones are compared in dirty pooled arrays.
+        for (int size : new int[]{3000, 5, 700, 0, 40, 1500, 1}) {
+            var text1 = Fixtures.randomText(random, size, 30);
+            var text2 = Fixtures.randomText(random, size + random.nextInt(20), 30);
+            for (DiffEngine engine : new DiffEngine[]{null, DiffEngine.MYERS, DiffEngine.ANCHORED}) {
+                DiffResult result = new TextDiffer(new LineSimilarity(), engine).diff(text1, text2);
+                DiffAlgorithm algorithm = Fixtures.compare(text1, text2, engine);
+                assertArrayEquals(algorithm.getMarkers(), result.getMarkers());
+                assertEquals(algorithm.getPlan().getEngine(), result.getPlan().getEngine());
+                assertEquals(text1.size(), result.getOldSize());
+            }
+        }
+    }
+
+    @Test
+    void concurrentTest() throws Exception {
+        TextDiffer differ = new TextDiffer();
+        Random random = new Random(360);
+        List<List<String>> texts = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            texts.add(Fixtures.randomText(random, 50 + random.nextInt(400), 20));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<DiffResult>> futures = new ArrayList<>();
+            for (int round = 0; round < 4; round++) {
+                for (int i = 0; i < texts.size(); i++) {
+                    var text1 = texts.get(i);
+                    var text2 = texts.get((i + 1) % texts.size());
+                    futures.add(executor.submit(() -> differ.diff(text1, text2)));
+                }
+            }
+
+            for (int k = 0; k < futures.size(); k++) {
+                int i = k % texts.size();
+                var expected = new DiffAlgorithm(texts.get(i), texts.get((i + 1) % texts.size())).getMarkers();
+                assertArrayEquals(expected, futures.get(k).get().getMarkers());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void allocationTest() {
+        com.sun.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean()
+                instanceof com.sun.management.ThreadMXBean
+                ? (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()
+                : null;
+        if (threads == null || !threads.isThreadAllocatedMemorySupported()
+                || !threads.isThreadAllocatedMemoryEnabled()) {
+            return;
+        }
+        long thread = Thread.currentThread().getId();
+
+        Random random = new Random(100);
+        List<String> text1 = Fixtures.randomText(random, 100_000, 1_000_000);
+        List<String> text2 = new ArrayList<>(text1);
+        for (int k = 0; k < 1000; k++) {
+            int index = random.nextInt(text2.size());
+            if (k % 2 == 0) {
+                text2.remove(index);
+            } else {
+                text2.add(index, "inserted " + k);
+            }
+        }
+
+        TextDiffer differ = new TextDiffer(new LineSimilarity(), DiffEngine.MYERS);
+        // The first comparisons fill the workspace.
+        for (int i = 0; i < 3; i++) {
+            differ.diff(text1, text2);
+        }
+
+        long bytes = threads.getThreadAllocatedBytes(thread);
+        DiffResult result = differ.diff(text1, text2);
+        bytes = threads.getThreadAllocatedBytes(thread) - bytes;
+
+        // Markers take 4 or 8 bytes per line, depending on the size of references.
+        long lines = text1.size() + text2.size();
+        assertTrue(bytes <= 8 * lines + (64 << 10), "The comparison took " + bytes + " bytes");
+        assertTrue(result.getSummary().hasDifferences());
+    }
+
+    @Test
+    void immutableResultTest() {
+        DiffResult result = new TextDiffer().diff(List.of("a", "b"), List.of("a", "c"));
+        result.getMarkers()[0][0] = null;
+
+        assertNotNull(result.getOldMarker(0));
+        assertTrue(result.getSummary().hasDifferences());
+        assertThrows(UnsupportedOperationException.class, () -> result.getUsedStrategies().clear());
+        assertThrows(NullPointerException.class, () -> new TextDiffer().diff(null, List.of("a")));
+    }
+}
@@ -0,0 +1,104 @@
+package test;
+
+import comparison.DifferenceMarker;
+import comparison.TextsComparator;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TextsComparatorTest {
+    private static List<String> randomLines(Random random, int count) {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            StringBuilder builder = new StringBuilder("line " + i + " ");
+            for (int k = 0; k < 40 + random.nextInt(80); k++) {
+                builder.append((char) ('a' + random.nextInt(8)));
+            }
+            lines.add(builder.toString());
+        }
+        return lines;
+    }
+
+    private static int[] count(DifferenceMarker[] markers) {
+        int[] counts = new int[DifferenceMarker.values().length];
+        for (DifferenceMarker marker : markers) {
+            ++counts[marker.ordinal()];
+        }
+        return counts;
+    }
+
+    private static DifferenceMarker[][] getMarkers(Path old, Path neu, long blockMinSize) throws IOException {
+        try {
+            System.setProperty(TextsComparator.BLOCK_MATCHING_MIN_SIZE_PROPERTY, String.valueOf(blockMinSize));
+            try (TextsComparator tc = new TextsComparator(old, neu)) {
+                return tc.getMarkers();
+            }
+        } finally {
+            System.clearProperty(TextsComparator.BLOCK_MATCHING_MIN_SIZE_PROPERTY);
+        }
+    }
+
+    @Test
+    void blockMatchingTest() throws IOException {
+        Random random = new Random(5);
+        List<String> text1 = randomLines(random, 3000);
+        List<String> text2 = new ArrayList<>(text1);
+        text2.remove(100);
+        text2.add(1500, "some inserted text");
+        text2.set(2500, text2.get(2500) + "!");
+
+        Path old = Files.createTempFile("old", ".txt");
+        Path neu = Files.createTempFile("new", ".txt");
+        try {
+            Files.write(old, text1, StandardCharsets.UTF_8);
+            Files.write(neu, text2, StandardCharsets.UTF_8);
+
+            var withBlocks = getMarkers(old, neu, 0);
+            var withoutBlocks = getMarkers(old, neu, Long.MAX_VALUE);
+
+            assertArrayEquals(count(withoutBlocks[0]), count(withBlocks[0]));
+            assertArrayEquals(count(withoutBlocks[1]), count(withBlocks[1]));
+            assertEquals(1, count(withBlocks[1])[DifferenceMarker.CHANGED.ordinal()]);
+        } finally {
+            Files.delete(old);
+            Files.delete(neu);
+        }
+    }
+
+    @Test
+    void hashCollisionTest() throws IOException {
+        // Both strings have the same 64-bit FNV-1a hash, so the first chunks of the files have it too.
+        String line = " and the rest of the first line, long enough for the chunk boundaries to be the same";
+        List<String> text1 = new ArrayList<>(List.of("c5bde799c2362419" + line));
+        List<String> text2 = new ArrayList<>(List.of("a1a9a9bf38687075" + line));
+        List<String> rest = randomLines(new Random(30), 1000);
+        text1.addAll(rest);
+        text2.addAll(rest);
+
+        Path old = Files.createTempFile("old", ".txt");
+        Path neu = Files.createTempFile("new", ".txt");
+        try {
+            Files.write(old, text1, StandardCharsets.UTF_8);
+            Files.write(neu, text2, StandardCharsets.UTF_8);
+
+            var withBlocks = getMarkers(old, neu, 0);
+            var withoutBlocks = getMarkers(old, neu, Long.MAX_VALUE);
+
+            assertNotEquals(DifferenceMarker.EQUAL, withBlocks[0][0]);
+            assertNotEquals(DifferenceMarker.EQUAL, withBlocks[1][0]);
+            assertArrayEquals(withoutBlocks[0], withBlocks[0]);
+            assertArrayEquals(withoutBlocks[1], withBlocks[1]);
+        } finally {
+            Files.delete(old);
+            Files.delete(neu);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package test;
+
+import comparison.DiffAlgorithm;
+import comparison.DifferenceMarker;
+import comparison.LineSimilarity;
+import comparison.ListLineStore;
+import comparison.TokenDiff;
+import html.DiffPage;
+import html.Template;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenDiffTest {
+    @Test
+    void changesTest() {
+        TokenDiff diff = TokenDiff.of("The quick brown fox, jumps over the dog.", "The quick red fox jumps over the lazy dog!");
+
+        assertEquals(10, diff.getOldTokenCount());
+        assertEquals(10, diff.getNewTokenCount());
+        assertEquals(7, diff.getEqualTokenCount());
+        assertTrue(diff.isSimilar());
+        // "brown", ",", "."
+        assertArrayEquals(new int[]{10, 15, 19, 20, 39, 40}, diff.getOldChanges());
+        // "red", "lazy", "!"
+        assertArrayEquals(new int[]{10, 13, 33, 37, 41, 42}, diff.getNewChanges());
+    }
+
+    @Test
+    void pageTest() throws IOException {
+        List<String> text1 = List.of("first paragraph stays", "a <long> paragraph with one word edited");
+        List<String> text2 = List.of("first paragraph stays", "a <long> paragraph with one term edited");
+        LineSimilarity similarity = LineSimilarity.byTokens();
+        var markers = new DiffAlgorithm(text1, text2, similarity).getMarkers();
+        assertEquals(DifferenceMarker.CHANGED, markers[0][1]);
+
+        for (boolean kept : new boolean[]{false, true}) {
+            DiffPage.Builder builder = DiffPage.getBuilder()
+                    .addOld(new ListLineStore(text1), markers[0])
+                    .addNew(new ListLineStore(text2), markers[1])
+                    .setTemplate(Template.compile("${tableDataHere}"));
+            StringWriter writer = new StringWriter();
+            (kept ? builder.setTokenLevel(similarity) : builder.setTokenLevel(true)).build().write(writer);
+
+            assertTrue(writer.toString().contains("<td class = \"changed\">a &lt;long&gt; paragraph with one "
+                    + "<span class = \"token\">word</span> edited</td>"));
+        }
+    }
+
+    @Test
+    void keptTokenDiffTest() {
+        String oldLine = "a paragraph with one word edited";
+        String newLine = "a paragraph with one term edited";
+        String otherLine = "something else entirely, not related";
+
+        LineSimilarity similarity = LineSimilarity.byTokens();
+        assertTrue(similarity.areSimilar(oldLine, newLine));
+        assertFalse(similarity.areSimilar(oldLine, otherLine));
+        // Similar lines are not compared again, other ones are.
+        assertSame(similarity.getTokenDiff(oldLine, newLine), similarity.getTokenDiff(oldLine, newLine));
+        assertNotSame(similarity.getTokenDiff(oldLine, otherLine), similarity.getTokenDiff(oldLine, otherLine));
+
+        System.setProperty(LineSimilarity.TOKEN_CACHE_CHARS_PROPERTY, String.valueOf(oldLine.length() * 3));
+        try {
+            similarity = LineSimilarity.byTokens();
+        } finally {
+            System.clearProperty(LineSimilarity.TOKEN_CACHE_CHARS_PROPERTY);
+        }
+        assertTrue(similarity.areSimilar(oldLine, newLine));
+        assertTrue(similarity.areSimilar(newLine, oldLine));
+        // Only the last pair fits the limit.
+        assertNotSame(similarity.getTokenDiff(oldLine, newLine), similarity.getTokenDiff(oldLine, newLine));
+        assertSame(similarity.getTokenDiff(newLine, oldLine), similarity.getTokenDiff(newLine, oldLine));
+    }
+
+    @Test
+    void hugeParagraphTest() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 300_000; i++) {
+            builder.append("word").append(i % 1000).append(i % 17 == 0 ? ", " : " ");
+        }
+        String oldLine = builder.toString();
+        String newLine = builder.insert(100_000, "inserted words here ").replace(2_000_000, 2_000_006, "edited").toString();
+
+        TokenDiff diff = TokenDiff.of(oldLine, newLine);
+        assertTrue(diff.isSimilar());
+        assertTrue(diff.getEqualTokenCount() >= diff.getOldTokenCount() - 3);
+    }
+}
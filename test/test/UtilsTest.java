@@ -0,0 +1,76 @@
+package test;
+
+import comparison.Utils;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UtilsTest {
+    private static String randomString(Random random, int length, int alphabet) {
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append((char) ('a' + random.nextInt(alphabet)));
+        }
+        return builder.toString();
+    }
+
+    @Test
+    void lcsLengthMatchesTableTest() {
+        Random random = new Random(42);
+
+        for (int i = 0; i < 200; i++) {
+            String x = randomString(random, random.nextInt(300), 1 + random.nextInt(26));
+            String y = randomString(random, random.nextInt(300), 1 + random.nextInt(26));
+
+            int expected = Utils.getLCSTable(x, y)[x.length()][y.length()];
+            assertEquals(expected, Utils.getLCSLength(x, y));
+        }
+    }
+
+    @Test
+    void lcsLengthKernelsTest() {
+        Random random = new Random(7);
+        String x = randomString(random, 1000, 4) + "Жж €";
+        String y = randomString(random, 700, 4) + "€ ж";
+
+        int scalar = Utils.getLCSLength(x, y, "scalar");
+        int bitParallel = Utils.getLCSLength(x, y, "bitparallel");
+
+        assertEquals(Utils.getLCSTable(x, y)[x.length()][y.length()], scalar);
+        assertEquals(scalar, bitParallel);
+    }
+
+    /**
+     * The bit-parallel kernel is expected to be at least 10 times faster than the scalar one on long lines.
+     */
+    @Test
+    @Tag("performance")
+    void lcsLengthKernelsSpeedTest() {
+        Random random = new Random(26);
+        String x = randomString(random, 10_000, 26);
+        String y = randomString(random, 10_000, 26);
+
+        long[] nanos = new long[2];
+        String[] kernels = {"scalar", "bitparallel"};
+        for (int round = 0; round < 3; round++) {
+            for (int k = 0; k < kernels.length; k++) {
+                long start = System.nanoTime();
+                Utils.getLCSLength(x, y, kernels[k]);
+                // The first round only warms up the kernels.
+                nanos[k] = round == 0 ? 0 : nanos[k] + System.nanoTime() - start;
+            }
+        }
+        assertTrue(nanos[1] * 10 <= nanos[0],
+                "scalar: " + nanos[0] / 2_000_000 + " ms, bit-parallel: " + nanos[1] / 2_000_000 + " ms");
+    }
+
+    @Test
+    void lcsLengthEmptyTest() {
+        assertEquals(0, Utils.getLCSLength("", "qwerty"));
+        assertEquals(0, Utils.getLCSLength("qwerty", ""));
+        assertEquals(6, Utils.getLCSLength("qwerty", "qwerty"));
+    }
+}